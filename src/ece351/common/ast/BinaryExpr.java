@@ -33,11 +33,21 @@ public abstract class BinaryExpr extends Expr {
 
 	public final Expr left, right;
 	
+	/**
+	 * Children are immutable, so compute the hash code once. It mixes in
+	 * the class, so that a and b, a or b, a xor b, ... do not collide.
+	 */
+	private final int hash;
+	
 	public abstract BinaryExpr newBinaryExpr(final Expr left, final Expr right);
 	
 	public BinaryExpr(final Expr left, final Expr right){
 		this.left = left;
 		this.right = right;
+		int h = 17 + getClass().getName().hashCode();
+		h = h * 13 + (left == null ? 0 : left.hashCode());
+		h = h * 13 + (right == null ? 0 : right.hashCode());
+		this.hash = h;
 	}
 	
 	public BinaryExpr varyLeft(final Expr newLeft) {
@@ -64,9 +74,6 @@ public abstract class BinaryExpr extends Expr {
 	}
 	
 	public final int hashCode() {
-		int hash = 17;
-		hash = hash * 13 + left.hashCode();
-		hash = hash * 13 + right.hashCode();
 		return hash;
 	}
 	
@@ -75,8 +82,28 @@ public abstract class BinaryExpr extends Expr {
 	 */
 	@Override
 	public final boolean equals(final Object obj) {
+		if (identityDecides(obj)) return this == obj;
+		if (obj == null || obj.hashCode() != hash) return false;
 		return examine(Examiner.Equals, obj);
 	}
+	
+	@Override
+	final int compareSameType(final Expr e) {
+		final int h = compareHash(this, e);
+		if (h != 0) return h;
+		// hash collision: compare children
+		final BinaryExpr that = (BinaryExpr) e;
+		final int c = this.left.compareTo(that.left);
+		if (c != 0) return c;
+		return this.right.compareTo(that.right);
+	}
+	
+	@Override
+	final Expr internChildren() {
+		final Expr l = left.intern();
+		final Expr r = right.intern();
+		return (l != left || r != right) ? newBinaryExpr(l, r) : this;
+	}
 
 	/**
 	 * Subclasses may override this if order can be changed.
@@ -76,6 +76,12 @@ public final class ConstantExpr extends Expr {
 		return "Const";
 	}
 
+	/** False before true. */
+	@Override
+	final int compareSameType(final Expr e) {
+		return this.b.compareTo(((ConstantExpr) e).b);
+	}
+	
 	@Override
 	public int hashCode() {
 		return Boolean.valueOf(b).hashCode();
@@ -36,6 +36,12 @@ public abstract class Expr implements Comparable<Expr>, Examinable {
 	private static final AtomicInteger counter = new AtomicInteger();
 	private final int serialNumber;
 	
+	/**
+	 * Set once this object has been entered into the UniqueTable.
+	 * Two distinct interned objects are never structurally equal.
+	 */
+	boolean interned = false;
+	
 	public Expr() {
 		serialNumber = counter.getAndIncrement();
 	}
@@ -56,10 +62,11 @@ public abstract class Expr implements Comparable<Expr>, Examinable {
 	 * @return
 	 */
 	final public Expr simplify() {
-		Expr e = this;
+		Expr e = this.intern();
 		while (true) { // loop forever?
-			final Expr simplified = e.simplifyOnce();
-			if (simplified.equals(e)) {
+			// interned, so equality is just reference comparison
+			final Expr simplified = e.simplifyOnce().intern();
+			if (simplified == e) {
 				// we're done: nothing changed
 				return simplified;
 			} else {
@@ -69,20 +76,67 @@ public abstract class Expr implements Comparable<Expr>, Examinable {
 		}
 	}
 	
+	/**
+	 * Return the canonical object that is structurally equal to this one.
+	 * Structurally equal interned expressions are the same object, so
+	 * shared subterms are stored once.
+	 * @see UniqueTable
+	 */
+	public final Expr intern() {
+		return UniqueTable.intern(this);
+	}
+	
+	/**
+	 * Rebuild this node with interned children.
+	 * Default implementation is for leaves: nothing to do.
+	 * @return this, or a new node of the same type if any child changed
+	 */
+	Expr internChildren() {
+		return this;
+	}
+	
+	/**
+	 * True if reference comparison alone decides equals(obj): either
+	 * obj is this object, or both are interned (and so canonical).
+	 */
+	protected final boolean identityDecides(final Object obj) {
+		if (this == obj) return true;
+		return interned && obj instanceof Expr && ((Expr)obj).interned;
+	}
+	
 	public final String serialNumber(){ return operator() + serialNumber; };
 	public abstract Expr accept(final ExprVisitor exprVisitor);
 
 	
+	/**
+	 * Total order used to sort NaryExpr children. Nodes of different types
+	 * are ordered by class name. Nodes of the same type are ordered by
+	 * compareSameType(), which does not allocate: composite nodes compare
+	 * their cached hash codes first and only walk their children to break
+	 * a tie. Returns zero exactly when the two are equals().
+	 */
 	@Override
 	public final int compareTo(final Expr e) {
+		if (this == e) return 0;
 		if (getClass().equals(e.getClass())) {
 			// same type
-			return toString().compareTo(e.toString());
+			return compareSameType(e);
 		} else {
 			// different types
 			return getClass().getName().compareTo(e.getClass().getName());
 		}
 	}
+	
+	/**
+	 * Compare with another node of exactly the same class.
+	 * @see #compareTo(Expr)
+	 */
+	abstract int compareSameType(final Expr e);
+	
+	/** Order by cached hash code, as a cheap first approximation. */
+	static int compareHash(final Expr a, final Expr b) {
+		return Integer.compare(a.hashCode(), b.hashCode());
+	}
 
 	public abstract String operator();
 	
@@ -29,9 +29,11 @@ package ece351.common.ast;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.parboiled.common.ImmutableList;
 
@@ -44,20 +46,28 @@ import ece351.util.Examiner;
 public abstract class NaryExpr extends Expr {
 
 	public final ImmutableList<Expr> children;
+	
+	/**
+	 * Children are immutable, so compute the hash code once. It mixes in
+	 * the class, so that the and and the or of the same children differ.
+	 */
+	private final int hash;
+	
+	/** Hash index of the children, built on the first membership query. */
+	private volatile Set<Expr> index;
 
 	public NaryExpr(final Expr... exprs) {
-		Arrays.sort(exprs);
-		ImmutableList<Expr> c = ImmutableList.of();
-		for (final Expr e : exprs) {
-			c = c.append(e);
-		}
-    	this.children = c;
+		final Expr[] a = exprs.clone();
+		Arrays.sort(a);
+		this.children = ImmutableList.of(a);
+		this.hash = (17 + getClass().getName().hashCode()) * 31 + children.hashCode();
 	}
 	
 	public NaryExpr(final List<Expr> children) {
 		final ArrayList<Expr> a = new ArrayList<Expr>(children);
 		Collections.sort(a);
 		this.children = ImmutableList.copyOf(a);
+		this.hash = (17 + getClass().getName().hashCode()) * 31 + this.children.hashCode();
 	}
 
 	/**
@@ -158,15 +168,46 @@ public abstract class NaryExpr extends Expr {
 
 	@Override
 	public final int hashCode() {
-		return 17 + children.hashCode();
+		return hash;
 	}
 
 	@Override
 	public final boolean equals(final Object obj) {
+		if (identityDecides(obj)) return this == obj;
 		if (!(obj instanceof Examinable)) return false;
+		if (obj.hashCode() != hash) return false;
 		return examine(Examiner.Equals, (Examinable)obj);
 	}
 	
+	@Override
+	final int compareSameType(final Expr e) {
+		final int h = compareHash(this, e);
+		if (h != 0) return h;
+		// hash collision: compare children lexicographically
+		final NaryExpr that = (NaryExpr) e;
+		final int size = this.children.size();
+		if (size != that.children.size()) {
+			return Integer.compare(size, that.children.size());
+		}
+		for (int i = 0; i < size; i++) {
+			final int c = this.children.get(i).compareTo(that.children.get(i));
+			if (c != 0) return c;
+		}
+		return 0;
+	}
+	
+	@Override
+	final Expr internChildren() {
+		final List<Expr> list = new ArrayList<Expr>(children.size());
+		boolean change = false;
+		for (final Expr c1 : children) {
+			final Expr c2 = c1.intern();
+			list.add(c2);
+			if (c2 != c1) { change = true; }
+		}
+		return change ? newNaryExpr(list) : this;
+	}
+	
 	@Override
 	public final boolean isomorphic(final Examinable obj) {
 		return examine(Examiner.Isomorphic, obj);
@@ -202,12 +243,7 @@ public abstract class NaryExpr extends Expr {
 	protected final Expr simplifyOnce() {
 		assert repOk();
 		final Expr result = 
-				simplifyChildren().
-				mergeGrandchildren().
-				foldIdentityElements().
-				foldAbsorbingElements().
-				foldComplements().
-				removeDuplicates().
+				fold().
 				simpleAbsorption().
 				subsetAbsorption().
 				singletonify();
@@ -216,206 +252,126 @@ public abstract class NaryExpr extends Expr {
 	}
 	
 	/**
-	 * Call simplify() on each of the children.
+	 * Simplify the children and apply the local rewrites in a single pass:
+	 * merge grandchildren of our own type, drop identity elements, stop at
+	 * an absorbing element or a complementary pair (!x op x), and remove
+	 * duplicates. All children go into one buffer, which is sorted once,
+	 * so only one new NaryExpr is built per level.
 	 */
-	private NaryExpr simplifyChildren() {
-		// note: we do not assert repOk() here because the rep might not be ok
-		// the result might contain duplicate children, and the children
-		// might be out of order
-		List<Expr> list = new ArrayList<Expr>();
+	private NaryExpr fold() {
+		// note: the result might have only one child, so we do not assert repOk()
+		final ConstantExpr identity = getIdentityElement();
+		final ConstantExpr absorbing = getAbsorbingElement();
+		final List<Expr> buffer = new ArrayList<Expr>(children.size());
+		boolean change = false;
 		
-		for (Expr child : children) {
-			list.add(child.simplify());
+		for (final Expr child : children) {
+			final Expr c = child.simplify();
+			if (c != child) { change = true; }
+			if (c.getClass().equals(this.getClass())) {
+				// merge grandchildren: (x.y).z = x.y.z
+				change = true;
+				for (final Expr g : ((NaryExpr) c).children) {
+					if (g.equals(absorbing)) return singleton(absorbing);
+					if (!g.equals(identity)) { buffer.add(g); }
+				}
+			} else if (c.equals(absorbing)) {
+				// absorbing element: 0.x=0 and 1+x=1
+				return singleton(absorbing);
+			} else if (c.equals(identity)) {
+				// identity element: 1.x=x and 0+x=x
+				change = true;
+			} else {
+				buffer.add(c);
+			}
 		}
 		
-		return newNaryExpr(list);
-//		return this; // TODO: replace this stub
-	}
-
-	
-	private NaryExpr mergeGrandchildren() {
-		
-		// extract children to merge using filter (because they are the same type as us)
-			// if no children to merge, then return this (i.e., no change)
-			// use filter to get the other children, which will be kept in the result unchanged
-			// merge in the grandchildren
-			// assert result.repOk():  this operation should always leave the AST in a legal state
-		
-		NaryExpr match = this.filter(this.getClass(), true);
+		// all children were identity elements
+		if (buffer.isEmpty()) return singleton(identity);
 		
-		if (match.children.size() < 1) { 
-			return this; 
+		// sort once; duplicates are now adjacent: x.x=x and x+x=x
+		Collections.sort(buffer);
+		int n = 1;
+		for (int i = 1; i < buffer.size(); i++) {
+			final Expr e = buffer.get(i);
+			if (e.compareTo(buffer.get(n - 1)) != 0) {
+				buffer.set(n++, e);
+			}
 		}
-
-		NaryExpr newChildren = this.filter(this.getClass(), false);
-		ArrayList<Expr> list = new ArrayList<Expr>();
-
-		for (Expr child : match.children) {
-			list.addAll(((NaryExpr)child).children);
+		if (n != buffer.size()) {
+			buffer.subList(n, buffer.size()).clear();
+			change = true;
 		}
 		
-		newChildren = newChildren.appendAll(list);
+		// complements: !x.x=0 and !x+x=1
+		// compareTo is consistent with equals, so binary search the sorted buffer
+		for (final Expr e : buffer) {
+			if (e instanceof NotExpr
+					&& Collections.binarySearch(buffer, ((NotExpr) e).expr) >= 0) {
+				return singleton(absorbing);
+			}
+		}
 		
-//		assert newChildren.repOk();
-		return newChildren;
-//		return this; // TODO: replace this stub
+		return change ? newNaryExpr(buffer) : this;
 	}
-
-
-    private NaryExpr foldIdentityElements() {
-    	// if we have only one child stop now and return self
-    	// we have multiple children, remove the identity elements
-    		// all children were identity elements, so now our working list is empty
-    		// return a new list with a single identity element
-    		// normal return
-    	if (this.children.size() == 1) {
-			return this;
-		}
-
-		NaryExpr result = this.filter(this.getIdentityElement(), Examiner.Equals, false);
-
-		if (result.children.size() < 1) {
-			result = result.append(getIdentityElement());
-		}
-
-		// normal return
-    	// do not assert repOk(): this fold might leave the AST in an illegal state (with only one child)
-		return result; // TODO: replace this stub
-    }
-
-    private NaryExpr foldAbsorbingElements() {
-		// absorbing element: 0.x=0 and 1+x=1
-			// absorbing element is present: return it
-			// not so fast! what is the return type of this method? why does it have to be that way?
-			// no absorbing element present, do nothing
-    	
-    	if(this.contains(this.getAbsorbingElement(), Examiner.Equals)) {
-    		return newNaryExpr(ImmutableList.of((Expr)this.getAbsorbingElement()));
-    	}
-
-		return this; // TODO: replace this stub
-    	// do not assert repOk(): this fold might leave the AST in an illegal state (with only one child)
+	
+	/** An NaryExpr with a single child: only legal until singletonify(). */
+	private NaryExpr singleton(final Expr e) {
+		return newNaryExpr(ImmutableList.of(e));
 	}
 
-	private NaryExpr foldComplements() {
-		// collapse complements
-		// !x . x . ... = 0 and !x + x + ... = 1
-		// x op !x = absorbing element
-		// find all negations
-		NaryExpr negations = this.filter(NotExpr.class, true);
-
-		for (Expr notExpr : negations.children) {
-			if (this.contains(((NotExpr)notExpr).expr, Examiner.Equals)) {
-				return newNaryExpr(ImmutableList.of((Expr)this.getAbsorbingElement()));
-			}
+	private NaryExpr simpleAbsorption() {
+		// (x.y) + x ... = x ...
+		final Class<? extends Expr> inner;
+		if (this.getClass().equals(NaryOrExpr.class)) {
+			inner = NaryAndExpr.class;
+		} else if (this.getClass().equals(NaryAndExpr.class)) {
+			inner = NaryOrExpr.class;
+		} else {
+			return this;
 		}
-
-		// no complements to fold
-    	// do not assert repOk(): this fold might leave the AST in an illegal state (with only one child)
-		return this; // TODO: replace this stub
-	}
-
-	private NaryExpr removeDuplicates() {
-		ArrayList<Expr> list = new ArrayList<Expr>();
 		
-		for(int i = 0; i < this.children.size(); i++) {
-			if(!list.contains(this.children.get(i))) {
-				list.add(this.children.get(i));
+		// a term is absorbed if any of its children is also one of ours
+		final List<Expr> absorbed = new ArrayList<Expr>();
+		for (final Expr term : this.children) {
+			if (term.getClass().equals(inner)) {
+				for (final Expr e : ((NaryExpr) term).children) {
+					if (this.contains(e, Examiner.Equals)) {
+						absorbed.add(term);
+						break;
+					}
+				}
 			}
 		}
+		return this.removeAll(absorbed, Examiner.Equals);
 		
-		// remove duplicate children: x.x=x and x+x=x
-		// since children are sorted this is fairly easy
-			// no changes
-			// removed some duplicates
-		if (list.size() != this.children.size()) {
-			return newNaryExpr(list);
-		}
-		
-		return this; // TODO: replace this stub
-    	// do not assert repOk(): this fold might leave the AST in an illegal state (with only one child)
-	}
-
-	private NaryExpr simpleAbsorption() {
-		// (x.y) + x ... = x ...
-    	if(this.getClass().equals(NaryOrExpr.class))
-    	{
-    		for(Expr expr: this.children)
-    		{
-    			if(expr.getClass().equals(NaryAndExpr.class))
-    			{
-    				NaryExpr result = this.filter(expr, Examiner.Equivalent, false);
-    				for(Expr e: ((NaryAndExpr) expr).children) {
-    					if(result.children.contains(e))
-    					{
-    						return result;
-    					}
-    				}
-    			}
-    		}
-    	}
-    	else if(this.getClass().equals(NaryAndExpr.class))
-    	{
-    		for(Expr expr: this.children)
-    		{
-    			if(expr.getClass().equals(NaryOrExpr.class))
-    			{
-    				NaryExpr result = this.filter(expr, Examiner.Equivalent, false);
-    				for(Expr e: ((NaryOrExpr) expr).children) {
-    					if(result.children.contains(e))
-    					{
-    						return result;
-    					}
-    				}
-    			}
-    		}
-    	}
-    	return this;
-//		return this; // TODO: replace this stub
-    	// do not assert repOk(): this operation might leave the AST in an illegal state (with only one child)
+		// do not assert repOk(): this operation might leave the AST in an illegal state (with only one child)
 	}
 
 	private NaryExpr subsetAbsorption() {
 		// check if there are any conjunctions that are supersets of others
 		// e.g., ( a . b . c ) + ( a . b ) = a . b
 		
-		NaryExpr result = this;
-    	NaryExpr children = this;
-    	
-    	if(this.getClass().equals(NaryOrExpr.class))
-    	{
-    		result = this.filter(NaryAndExpr.class, true);
-    		
-    		for(int i = 0; i < result.children.size(); i++)
-    		{
-    			for(int j = i + 1; j < result.children.size(); j++) {
-    				if(((NaryExpr)this.children.get(i)).children.containsAll(((NaryExpr)this.children.get(j)).children))
-    				{
-    					children = this.filter(result.children.get(i), Examiner.Equivalent, false);
-    				}
-    			}
-    		}
-    		return children;
-    	}
-    	else if(this.getClass().equals(NaryAndExpr.class))
-    	{
-    		result = this.filter(NaryOrExpr.class, true);
-    		
-    		for(int i = 0; i < result.children.size(); i++)
-    		{
-    			for(int j = i + 1; j < result.children.size(); j++) {
-       				if(((NaryExpr)this.children.get(i)).children.containsAll(((NaryExpr)this.children.get(j)).children))
-    				{
-    					children = this.filter(result.children.get(i), Examiner.Equivalent, false);
-    				}
-    			}
-    		}
-    		return children;
-    	}
-		return this;
+		final Class<? extends Expr> inner;
+		if (this.getClass().equals(NaryOrExpr.class)) {
+			inner = NaryAndExpr.class;
+		} else if (this.getClass().equals(NaryAndExpr.class)) {
+			inner = NaryOrExpr.class;
+		} else {
+			return this;
+		}
 		
-//		return this; // TODO: replace this stub
-    	// do not assert repOk(): this operation might leave the AST in an illegal state (with only one child)
+		// find all of the absorbed terms at once
+		final List<NaryExpr> terms = new ArrayList<NaryExpr>();
+		for (final Expr child : this.children) {
+			if (child.getClass().equals(inner)) {
+				terms.add((NaryExpr) child);
+			}
+		}
+		final List<Expr> absorbed = SubsumptionIndex.absorbed(terms);
+		return this.removeAll(absorbed, Examiner.Equals);
+		
+		// do not assert repOk(): this operation might leave the AST in an illegal state (with only one child)
 	}
 
 	/**
@@ -472,6 +428,16 @@ public abstract class NaryExpr extends Expr {
 	}
 
 	public final NaryExpr removeAll(final List<Expr> toRemove, final Examiner examiner) {
+		if (toRemove.isEmpty()) return this;
+		if (examiner == Examiner.Equals) {
+			// one pass, with hashed lookups
+			final Set<Expr> remove = new HashSet<Expr>(toRemove);
+			final List<Expr> keep = new ArrayList<Expr>(children.size());
+			for (final Expr child : children) {
+				if (!remove.contains(child)) { keep.add(child); }
+			}
+			return newNaryExpr(keep);
+		}
 		NaryExpr result = this;
 		for (final Expr e : toRemove) {
 			result = result.filter(e, examiner, false);
@@ -480,6 +446,9 @@ public abstract class NaryExpr extends Expr {
 	}
 
 	public final boolean contains(final Expr expr, final Examiner examiner) {
+		if (examiner == Examiner.Equals) {
+			return index().contains(expr);
+		}
 		for (final Expr child : children) {
 			if (examiner.examine(child, expr)) {
 				return true;
@@ -488,4 +457,17 @@ public abstract class NaryExpr extends Expr {
 		return false;
 	}
 
+	/**
+	 * Hash index of the children. The children never change, so
+	 * the index is built once and then shared by all queries.
+	 */
+	private Set<Expr> index() {
+		Set<Expr> result = index;
+		if (result == null) {
+			result = Collections.unmodifiableSet(new HashSet<Expr>(children));
+			index = result;
+		}
+		return result;
+	}
+
 }
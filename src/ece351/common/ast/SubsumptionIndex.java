@@ -0,0 +1,146 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.common.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the terms of a sum-of-products (or product-of-sums) that are
+ * absorbed by another term: ( a . b . c ) + ( a . b ) = a . b
+ * 
+ * Each distinct literal is numbered, and each term becomes a BitSet of
+ * its literals plus a 64-bit signature (literal number mod 64). Terms
+ * are visited in order of increasing size, so any term that can absorb
+ * the current one has already been seen. Surviving terms are filed under
+ * their least frequent literal. A candidate is found through the buckets
+ * of the current term's literals and rejected cheaply by signature
+ * before the exact subset test. All absorbed terms are found in one call.
+ */
+final class SubsumptionIndex {
+
+	private SubsumptionIndex() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/**
+	 * @param terms NaryExprs whose children are the literals of each term
+	 * @return the terms that are strict supersets of some other term
+	 */
+	static List<Expr> absorbed(final List<? extends NaryExpr> terms) {
+		final List<Expr> result = new ArrayList<Expr>();
+		final int k = terms.size();
+		if (k < 2) return result;
+		
+		// number the literals and encode each term
+		final Map<Expr,Integer> ids = new HashMap<Expr,Integer>();
+		final BitSet[] sets = new BitSet[k];
+		final long[] sigs = new long[k];
+		final int[] sizes = new int[k];
+		for (int i = 0; i < k; i++) {
+			final BitSet set = new BitSet();
+			for (final Expr literal : terms.get(i).children) {
+				Integer id = ids.get(literal);
+				if (id == null) {
+					id = ids.size();
+					ids.put(literal, id);
+				}
+				set.set(id);
+				sigs[i] |= 1L << (id & 63);
+			}
+			sets[i] = set;
+			sizes[i] = set.cardinality();
+		}
+		
+		// how many terms each literal occurs in
+		final int[] frequency = new int[ids.size()];
+		for (final BitSet set : sets) {
+			for (int x = set.nextSetBit(0); x >= 0; x = set.nextSetBit(x + 1)) {
+				frequency[x]++;
+			}
+		}
+		
+		// smallest terms first
+		final Integer[] order = new Integer[k];
+		for (int i = 0; i < k; i++) { order[i] = i; }
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Integer.compare(sizes[a], sizes[b]);
+			}
+		});
+		
+		final List<List<Integer>> buckets = new ArrayList<List<Integer>>(
+				Collections.<List<Integer>>nCopies(ids.size(), null));
+		for (final int i : order) {
+			if (isAbsorbed(i, sets, sigs, sizes, buckets)) {
+				result.add(terms.get(i));
+			} else {
+				// file under the least frequent literal, to keep buckets short
+				int rarest = -1;
+				final BitSet set = sets[i];
+				for (int x = set.nextSetBit(0); x >= 0; x = set.nextSetBit(x + 1)) {
+					if (rarest < 0 || frequency[x] < frequency[rarest]) { rarest = x; }
+				}
+				if (rarest < 0) continue; // empty term
+				if (buckets.get(rarest) == null) { buckets.set(rarest, new ArrayList<Integer>()); }
+				buckets.get(rarest).add(i);
+			}
+		}
+		return result;
+	}
+
+	private static boolean isAbsorbed(final int i, final BitSet[] sets, final long[] sigs, final int[] sizes, final List<List<Integer>> buckets) {
+		final BitSet set = sets[i];
+		for (int x = set.nextSetBit(0); x >= 0; x = set.nextSetBit(x + 1)) {
+			final List<Integer> bucket = buckets.get(x);
+			if (bucket == null) continue;
+			for (final int j : bucket) {
+				if (sizes[j] < sizes[i]
+						&& (sigs[j] & ~sigs[i]) == 0
+						&& subset(sets[j], set)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/** Is a a subset of b? */
+	private static boolean subset(final BitSet a, final BitSet b) {
+		for (int x = a.nextSetBit(0); x >= 0; x = a.nextSetBit(x + 1)) {
+			if (!b.get(x)) return false;
+		}
+		return true;
+	}
+}
@@ -31,9 +31,13 @@ import ece351.util.Examiner;
 
 public abstract class UnaryExpr extends Expr {
 	public final Expr expr;
+	
+	/** Child is immutable, so compute the hash code once. */
+	private final int hash;
 
     public UnaryExpr(final Expr e) { 
     	this.expr = e; 
+    	this.hash = 17 + (e == null ? 0 : e.hashCode());
     }
 
     public UnaryExpr varyExpr(final Expr e) {
@@ -62,14 +66,30 @@ public abstract class UnaryExpr extends Expr {
     
     @Override
     public final int hashCode() {
-    	return 17 + expr.hashCode();
+    	return hash;
     }
 
 	@Override
 	public final boolean equals(final Object obj) {
+		if (identityDecides(obj)) return this == obj;
 		if (!(obj instanceof Examinable)) return false;
+		if (obj.hashCode() != hash) return false;
 		return examine(Examiner.Equals, (Examinable)obj);
 	}
+	
+	@Override
+	final int compareSameType(final Expr e) {
+		final int h = compareHash(this, e);
+		if (h != 0) return h;
+		// hash collision: compare children
+		return this.expr.compareTo(((UnaryExpr) e).expr);
+	}
+	
+	@Override
+	final Expr internChildren() {
+		final Expr e = expr.intern();
+		return (e != expr) ? newUnaryExpr(e) : this;
+	}
 
 	@Override
 	public final boolean isomorphic(final Examinable obj) {
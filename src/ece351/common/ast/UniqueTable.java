@@ -0,0 +1,81 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.common.ast;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Hash-consing table for Expr objects. Each structurally distinct
+ * expression is represented by exactly one canonical object, so the
+ * AST becomes a DAG in which shared subterms are stored once.
+ * 
+ * Children are interned before their parents, so when a candidate is
+ * looked up its children are already canonical and equals() on them
+ * is a reference comparison. The lookup therefore costs time proportional
+ * to the number of children, not the size of the subtree.
+ * 
+ * Both keys and values are weak, so entries disappear once no client
+ * holds a reference to the canonical object.
+ */
+final class UniqueTable {
+
+	private UniqueTable() {
+		throw new UnsupportedOperationException();
+	}
+	
+	private static final Map<Expr,WeakReference<Expr>> table = new WeakHashMap<Expr,WeakReference<Expr>>();
+	
+	static Expr intern(final Expr e) {
+		if (e.interned) {
+			// already canonical
+			return e;
+		}
+		// bottom up: make the children canonical first
+		final Expr candidate = e.internChildren();
+		synchronized (table) {
+			final WeakReference<Expr> ref = table.get(candidate);
+			if (ref != null) {
+				final Expr canonical = ref.get();
+				if (canonical != null) {
+					return canonical;
+				}
+			}
+			candidate.interned = true;
+			table.put(candidate, new WeakReference<Expr>(candidate));
+			return candidate;
+		}
+	}
+	
+	/** Number of live canonical objects. For testing and diagnostics. */
+	static int size() {
+		synchronized (table) {
+			return table.size();
+		}
+	}
+}
@@ -31,7 +31,7 @@ import ece351.util.Examinable;
 
 public final class VarExpr extends Expr {
 	
-	public String identifier;
+	public final String identifier;
 	
 	public VarExpr(final String name){
 		this.identifier = name;
@@ -65,6 +65,7 @@ public final class VarExpr extends Expr {
 	@Override
 	public boolean equals(final Object obj) {
 		// basics
+		if (identityDecides(obj)) return this == obj;
 		if (obj == null) return false;
 		if (!getClass().equals(obj.getClass())) return false;
 		final VarExpr that = (VarExpr) obj;
@@ -79,6 +80,12 @@ public final class VarExpr extends Expr {
 		return equals(obj);
 	}
 
+	/** Alphabetical, so that printed output stays readable. */
+	@Override
+	final int compareSameType(final Expr e) {
+		return this.identifier.compareTo(((VarExpr) e).identifier);
+	}
+	
 	public String operator() {
 		return "var";
 	}
@@ -0,0 +1,355 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.VarExpr;
+import ece351.f.ast.FProgram;
+
+/**
+ * An And-Inverter Graph: every node is the constant false, an input, or
+ * the conjunction of two other nodes, and negation is free because it is
+ * a bit on the edge. This is the compact representation of logic that
+ * whole-design passes work on: a node costs two ints (plus its fanout
+ * count and a slot in the hash table), where an Expr costs an object with
+ * a list of children.
+ * 
+ * Edges are int literals: literal 2n refers to node n and literal 2n+1 to
+ * its complement, so FALSE is 0 and TRUE is 1. Nodes live in parallel
+ * int arrays in creation order, which is a topological order. and()
+ * applies the trivial identities and then looks the pair of fanins up in
+ * a structural hash table (open addressing), so no two and nodes have the
+ * same fanins. Each node counts its fanouts (the and nodes and outputs
+ * that refer to it) and knows its level.
+ * 
+ * Outputs are named literals. fromFProgram() and toFProgram() convert
+ * to and from FPrograms, with one output per formula.
+ */
+public final class AIG {
+
+	public static final int FALSE = 0;
+	public static final int TRUE = 1;
+
+	/** Fanin literals of and nodes; fanin0 is -1 for the constant and inputs. */
+	private int[] fanin0 = new int[1024];
+	/** Fanin literals of and nodes; for inputs, the index of the input. */
+	private int[] fanin1 = new int[1024];
+	/** Number of references to each node from and nodes and outputs. */
+	private int[] fanouts = new int[1024];
+	/** Length of the longest path from an input: 0 for inputs, 1 + max for and nodes. */
+	private int[] levels = new int[1024];
+	/** Number of nodes, including the constant node 0. */
+	private int size = 1;
+
+	/** Structural hash table of and nodes, 0 for an empty slot. */
+	private int[] table = new int[2048];
+	private int andCount = 0;
+
+	private final List<String> inputNames = new ArrayList<String>();
+	private final Map<String,Integer> inputs = new HashMap<String,Integer>();
+	private final List<String> outputNames = new ArrayList<String>();
+	private int[] outputs = new int[16];
+
+	public AIG() {
+		fanin0[0] = -1;
+		fanin1[0] = -1;
+	}
+
+	public static int node(final int literal) { return literal >>> 1; }
+	public static boolean isComplemented(final int literal) { return (literal & 1) != 0; }
+	public static int literal(final int node, final boolean complemented) { return 2 * node + (complemented ? 1 : 0); }
+	public static int not(final int literal) { return literal ^ 1; }
+
+	/** Number of nodes, including the constant node. */
+	public int size() { return size; }
+	public int andCount() { return andCount; }
+	public int inputCount() { return inputNames.size(); }
+
+	public int fanout(final int node) { return fanouts[node]; }
+	public int level(final int node) { return levels[node]; }
+
+	/** The largest level of an output. */
+	public int depth() {
+		int depth = 0;
+		for (int i = 0; i < outputCount(); i++) {
+			depth = Math.max(depth, levels[node(outputs[i])]);
+		}
+		return depth;
+	}
+
+	public boolean isAnd(final int node) { return fanin0[node] >= 0; }
+	public boolean isInput(final int node) { return node > 0 && fanin0[node] < 0; }
+	public int fanin0(final int node) { return fanin0[node]; }
+	public int fanin1(final int node) { return fanin1[node]; }
+
+	/** Name of an input node. */
+	public String inputName(final int node) {
+		assert isInput(node);
+		return inputNames.get(fanin1[node]);
+	}
+
+	/** Names of the inputs, in order of creation. */
+	public List<String> inputNames() {
+		return inputNames;
+	}
+
+	/** The literal of the named input, created if necessary. */
+	public int input(final String name) {
+		final Integer existing = inputs.get(name);
+		if (existing != null) return existing;
+		final int n = newNode(-1, inputNames.size());
+		inputNames.add(name);
+		final int lit = literal(n, false);
+		inputs.put(name, lit);
+		return lit;
+	}
+
+	public int outputCount() { return outputNames.size(); }
+	public String outputName(final int i) { return outputNames.get(i); }
+	public int output(final int i) { return outputs[i]; }
+
+	/** Add an output with the given name and literal. */
+	public void addOutput(final String name, final int literal) {
+		final int i = outputNames.size();
+		if (i == outputs.length) outputs = Arrays.copyOf(outputs, 2 * i);
+		outputs[i] = literal;
+		outputNames.add(name);
+		fanouts[node(literal)]++;
+	}
+
+	public int and(final int a, final int b) {
+		final int found = find(a, b);
+		if (found >= 0) return found;
+		final int lo = Math.min(a, b);
+		final int hi = Math.max(a, b);
+		final int mask = table.length - 1;
+		int slot = hash(lo, hi) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		final int n = newNode(lo, hi);
+		table[slot] = n;
+		andCount++;
+		if (2 * andCount > table.length) rehash();
+		return literal(n, false);
+	}
+
+	/**
+	 * What and(a, b) would return, without creating a node.
+	 * @return the literal, or -1 if and(a, b) would need a new node
+	 */
+	int find(int a, int b) {
+		if (a > b) {
+			final int t = a;
+			a = b;
+			b = t;
+		}
+		// trivial cases
+		if (a == FALSE) return FALSE;
+		if (a == TRUE) return b;
+		if (a == b) return a;
+		if (a == not(b)) return FALSE;
+		
+		// structural hashing
+		final int mask = table.length - 1;
+		int slot = hash(a, b) & mask;
+		while (table[slot] != 0) {
+			final int n = table[slot];
+			if (fanin0[n] == a && fanin1[n] == b) return literal(n, false);
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int or(final int a, final int b) { return not(and(not(a), not(b))); }
+	public int xor(final int a, final int b) { return or(and(a, not(b)), and(not(a), b)); }
+	public int xnor(final int a, final int b) { return not(xor(a, b)); }
+
+	private int newNode(final int f0, final int f1) {
+		if (size == fanin0.length) {
+			fanin0 = Arrays.copyOf(fanin0, 2 * size);
+			fanin1 = Arrays.copyOf(fanin1, 2 * size);
+			fanouts = Arrays.copyOf(fanouts, 2 * size);
+			levels = Arrays.copyOf(levels, 2 * size);
+		}
+		fanin0[size] = f0;
+		fanin1[size] = f1;
+		if (f0 >= 0) {
+			fanouts[node(f0)]++;
+			fanouts[node(f1)]++;
+			levels[size] = 1 + Math.max(levels[node(f0)], levels[node(f1)]);
+		}
+		return size++;
+	}
+
+	private static int hash(final int a, final int b) {
+		return (a * 12582917) ^ (b * 4256249);
+	}
+
+	private void rehash() {
+		table = new int[2 * table.length];
+		final int mask = table.length - 1;
+		for (int n = 1; n < size; n++) {
+			if (!isAnd(n)) continue;
+			int slot = hash(fanin0[n], fanin1[n]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = n;
+		}
+	}
+
+	/**
+	 * A copy with only the nodes reachable from the outputs, and all the
+	 * inputs in the same order.
+	 */
+	public AIG cleanup() {
+		final AIG copy = new AIG();
+		final int[] map = new int[size];
+		for (final String name : inputNames) {
+			copy.input(name);
+		}
+		final boolean[] live = new boolean[size];
+		for (int i = 0; i < outputCount(); i++) {
+			live[node(outputs[i])] = true;
+		}
+		for (int n = size - 1; n > 0; n--) {
+			if (live[n] && isAnd(n)) {
+				live[node(fanin0[n])] = true;
+				live[node(fanin1[n])] = true;
+			}
+		}
+		for (int n = 1; n < size; n++) {
+			if (isInput(n)) {
+				map[n] = copy.input(inputName(n));
+			} else if (live[n]) {
+				map[n] = copy.and(map[node(fanin0[n])] ^ (fanin0[n] & 1), map[node(fanin1[n])] ^ (fanin1[n] & 1));
+			}
+		}
+		for (int i = 0; i < outputCount(); i++) {
+			copy.addOutput(outputName(i), map[node(outputs[i])] ^ (outputs[i] & 1));
+		}
+		return copy;
+	}
+
+	/** The AIG of p, with one output per formula. */
+	public static AIG fromFProgram(final FProgram p) {
+		final AIG aig = new AIG();
+		final ExprToAIG builder = new ExprToAIG(aig);
+		for (final AssignmentStatement f : p.formulas) {
+			aig.addOutput(f.outputVar.identifier, builder.build(f.expr));
+		}
+		return aig;
+	}
+
+	/**
+	 * An FProgram with one formula per output. Trees of and nodes that are
+	 * not shared become n-ary conjunctions, or n-ary disjunctions if the
+	 * tree is complemented, so a sum of products comes back as one.
+	 */
+	public FProgram toFProgram() {
+		return toFProgram(true);
+	}
+
+	/**
+	 * An FProgram with one formula per output. If flatten is false, every
+	 * and node becomes a conjunction (or disjunction) of two, so the depth
+	 * of the graph, which Balance reduces, is kept: fromFProgram() gives
+	 * back the same structure.
+	 */
+	public FProgram toFProgram(final boolean flatten) {
+		final Expr[] memo = new Expr[2 * size];
+		final List<AssignmentStatement> formulas = new ArrayList<AssignmentStatement>(outputCount());
+		for (int i = 0; i < outputCount(); i++) {
+			formulas.add(new AssignmentStatement(new VarExpr(outputName(i)), expr(output(i), flatten, memo)));
+		}
+		return new FProgram(formulas);
+	}
+
+	private Expr expr(final int lit, final boolean flatten, final Expr[] memo) {
+		if (memo[lit] != null) return memo[lit];
+		final int n = node(lit);
+		final boolean negated = isComplemented(lit);
+		final Expr e;
+		if (n == 0) {
+			e = negated ? ConstantExpr.TrueExpr : ConstantExpr.FalseExpr;
+		} else if (isInput(n)) {
+			final VarExpr v = new VarExpr(inputName(n));
+			e = negated ? new NotExpr(v) : v;
+		} else {
+			final List<Integer> leaves = new ArrayList<Integer>();
+			if (flatten) {
+				collectLeaves(fanin0[n], leaves);
+				collectLeaves(fanin1[n], leaves);
+			} else {
+				leaves.add(fanin0[n]);
+				leaves.add(fanin1[n]);
+			}
+			final List<Expr> children = new ArrayList<Expr>(leaves.size());
+			for (final int leaf : leaves) {
+				// not (a and b) = not a or not b
+				children.add(expr(negated ? not(leaf) : leaf, flatten, memo));
+			}
+			e = negated ? new NaryOrExpr(children) : new NaryAndExpr(children);
+		}
+		memo[lit] = e;
+		return e;
+	}
+
+	/**
+	 * Leaves of the tree of unshared, uncomplemented and nodes under lit,
+	 * left to right. The tree of an n-ary node is a chain as long as the
+	 * node is wide, so it is walked with an explicit stack.
+	 */
+	void collectLeaves(final int lit, final List<Integer> leaves) {
+		final Deque<Integer> stack = new ArrayDeque<Integer>();
+		stack.push(lit);
+		while (!stack.isEmpty()) {
+			final int l = stack.pop();
+			final int n = node(l);
+			if (!isComplemented(l) && isAnd(n) && fanouts[n] == 1) {
+				stack.push(fanin1[n]);
+				stack.push(fanin0[n]);
+			} else {
+				leaves.add(l);
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * AND-tree balancing: reduces the depth of an AIG without adding logic.
+ * 
+ * Each and node is the root of a supergate: the tree of unshared,
+ * uncomplemented and nodes under it, with some leaves. The leaves are
+ * balanced first, and then combined two at a time, always the two with
+ * the lowest level, so that the deepest leaf ends up nearest the root.
+ * A chain of n ands becomes a tree of depth log n.
+ */
+public final class Balance {
+
+	private final AIG aig;
+	private final AIG balanced = new AIG();
+	/** Literal in the balanced graph of each node, or -1 if not yet balanced. */
+	private final int[] map;
+
+	private Balance(final AIG aig) {
+		this.aig = aig;
+		this.map = new int[aig.size()];
+		Arrays.fill(map, -1);
+		map[0] = AIG.FALSE;
+		for (final String name : aig.inputNames()) {
+			balanced.input(name);
+		}
+	}
+
+	/** A balanced copy of aig. */
+	public static AIG balance(final AIG aig) {
+		final Balance b = new Balance(aig);
+		for (int i = 0; i < aig.outputCount(); i++) {
+			final int lit = aig.output(i);
+			b.balanced.addOutput(aig.outputName(i), b.node(AIG.node(lit)) ^ (lit & 1));
+		}
+		return b.balanced;
+	}
+
+	private int node(final int n) {
+		if (map[n] >= 0) return map[n];
+		final int result;
+		if (aig.isInput(n)) {
+			result = balanced.input(aig.inputName(n));
+		} else {
+			final List<Integer> leaves = new ArrayList<Integer>();
+			aig.collectLeaves(aig.fanin0(n), leaves);
+			aig.collectLeaves(aig.fanin1(n), leaves);
+			// balance the leaves first
+			for (int i = 0; i < leaves.size(); i++) {
+				final int lit = leaves.get(i);
+				leaves.set(i, node(AIG.node(lit)) ^ (lit & 1));
+			}
+			result = combine(leaves);
+		}
+		map[n] = result;
+		return result;
+	}
+
+	/** The conjunction of the leaves, lowest levels first. */
+	private int combine(final List<Integer> leaves) {
+		final Set<Integer> seen = new HashSet<Integer>();
+		final PriorityQueue<Integer> queue = new PriorityQueue<Integer>(leaves.size(), new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer x, final Integer y) {
+				return Integer.compare(balanced.level(AIG.node(x)), balanced.level(AIG.node(y)));
+			}
+		});
+		for (final int leaf : leaves) {
+			if (leaf == AIG.FALSE || seen.contains(AIG.not(leaf))) return AIG.FALSE;
+			if (leaf == AIG.TRUE || !seen.add(leaf)) continue;
+			queue.add(leaf);
+		}
+		if (queue.isEmpty()) return AIG.TRUE;
+		while (queue.size() > 1) {
+			final int x = queue.poll();
+			final int y = queue.poll();
+			queue.add(balanced.and(x, y));
+		}
+		return queue.poll();
+	}
+}
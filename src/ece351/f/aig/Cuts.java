@@ -0,0 +1,213 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The k-feasible cuts of every node of an AIG, with their truth tables.
+ * 
+ * A cut of node n is a set of nodes (the leaves) such that every path
+ * from an input to n goes through a leaf, so n is a function of the
+ * leaves. Cuts are enumerated bottom-up: the cuts of an and node are the
+ * unions of a cut of each fanin, keeping those with at most cutSize
+ * leaves that are not dominated by (a superset of) another cut. When
+ * there are more than maxCuts, the ones whose leaves are lowest in the
+ * graph are kept: they cover the most logic. Truth tables are over at
+ * most four variables, as 16-bit ints: leaf i is VARS[i].
+ */
+public final class Cuts {
+
+	/** Truth tables of the four cut variables. */
+	public static final int[] VARS = { 0xAAAA, 0xCCCC, 0xF0F0, 0xFF00 };
+
+	/** A cut: some leaf nodes, sorted, and the function of the root in terms of them. */
+	public static final class Cut {
+		public final int[] leaves;
+		public final int truth;
+
+		Cut(final int[] leaves, final int truth) {
+			this.leaves = leaves;
+			this.truth = truth;
+		}
+
+		/** Does the function depend on leaf i? */
+		public boolean dependsOn(final int i) {
+			final int shift = 1 << i;
+			return ((truth & VARS[i]) >>> shift) != (truth & ~VARS[i] & 0xFFFF);
+		}
+
+		/** This cut without the leaves the function does not depend on. */
+		public Cut support() {
+			int count = 0;
+			for (int i = 0; i < leaves.length; i++) {
+				if (dependsOn(i)) count++;
+			}
+			if (count == leaves.length) return this;
+			final int[] kept = new int[count];
+			int k = 0;
+			for (int i = 0; i < leaves.length; i++) {
+				if (dependsOn(i)) kept[k++] = leaves[i];
+			}
+			return new Cut(kept, expand(truth, leaves, kept));
+		}
+	}
+
+	private final AIG aig;
+	private final int cutSize;
+	private final int maxCuts;
+	/** The cuts of each node, with the trivial cut last. */
+	private final List<List<Cut>> cuts;
+
+	public Cuts(final AIG aig, final int cutSize, final int maxCuts) {
+		if (cutSize < 2 || cutSize > VARS.length) {
+			throw new IllegalArgumentException("cut size must be between 2 and " + VARS.length + ": " + cutSize);
+		}
+		this.aig = aig;
+		this.cutSize = cutSize;
+		this.maxCuts = maxCuts;
+		this.cuts = new ArrayList<List<Cut>>(aig.size());
+		cuts.add(new ArrayList<Cut>());
+		for (int n = 1; n < aig.size(); n++) {
+			final List<Cut> cs = aig.isInput(n) ? new ArrayList<Cut>(1) : enumerate(n);
+			// the trivial cut is only for the fanouts
+			cs.add(new Cut(new int[] { n }, VARS[0]));
+			cuts.add(cs);
+		}
+	}
+
+	/** The non-trivial cuts of node n: none for the constant and the inputs. */
+	public List<Cut> of(final int n) {
+		final List<Cut> cs = cuts.get(n);
+		return cs.isEmpty() ? cs : Collections.unmodifiableList(cs.subList(0, cs.size() - 1));
+	}
+
+	/** The non-trivial cuts of and node n, from the cuts of its fanins. */
+	private List<Cut> enumerate(final int n) {
+		final List<Cut> result = new ArrayList<Cut>();
+		final int f0 = aig.fanin0(n);
+		final int f1 = aig.fanin1(n);
+		for (final Cut c0 : cuts.get(AIG.node(f0))) {
+			for (final Cut c1 : cuts.get(AIG.node(f1))) {
+				final int[] leaves = union(c0.leaves, c1.leaves);
+				if (leaves == null || dominated(result, leaves)) continue;
+				int t0 = expand(c0.truth, c0.leaves, leaves);
+				int t1 = expand(c1.truth, c1.leaves, leaves);
+				if (AIG.isComplemented(f0)) t0 = ~t0 & 0xFFFF;
+				if (AIG.isComplemented(f1)) t1 = ~t1 & 0xFFFF;
+				result.add(new Cut(leaves, t0 & t1));
+			}
+		}
+		// keep the ones that reach deepest: they cover the most logic
+		if (result.size() > maxCuts) {
+			final Cut[] a = result.toArray(new Cut[result.size()]);
+			Arrays.sort(a, new Comparator<Cut>() {
+				@Override
+				public int compare(final Cut x, final Cut y) {
+					final int c = Integer.compare(height(x), height(y));
+					return c != 0 ? c : Integer.compare(x.leaves.length, y.leaves.length);
+				}
+			});
+			result.clear();
+			result.addAll(Arrays.asList(a).subList(0, maxCuts));
+		}
+		return result;
+	}
+
+	/** Total level of the leaves of a cut. */
+	private int height(final Cut c) {
+		int h = 0;
+		for (final int leaf : c.leaves) {
+			h += aig.level(leaf);
+		}
+		return h;
+	}
+
+	/** Sorted union of two sorted leaf sets, or null if it is too big. */
+	private int[] union(final int[] a, final int[] b) {
+		final int[] u = new int[cutSize];
+		int i = 0, j = 0, k = 0;
+		while (i < a.length || j < b.length) {
+			if (k == cutSize) return null;
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				u[k++] = a[i++];
+			} else if (i == a.length || b[j] < a[i]) {
+				u[k++] = b[j++];
+			} else {
+				u[k++] = a[i++];
+				j++;
+			}
+		}
+		return Arrays.copyOf(u, k);
+	}
+
+	/**
+	 * Is some cut in the list a subset of leaves? Cuts in the list that
+	 * are supersets of leaves are removed.
+	 */
+	private static boolean dominated(final List<Cut> cuts, final int[] leaves) {
+		for (int i = cuts.size() - 1; i >= 0; i--) {
+			final int[] other = cuts.get(i).leaves;
+			if (subset(other, leaves)) return true;
+			if (subset(leaves, other)) cuts.remove(i);
+		}
+		return false;
+	}
+
+	private static boolean subset(final int[] a, final int[] b) {
+		int j = 0;
+		for (final int x : a) {
+			while (j < b.length && b[j] < x) j++;
+			if (j == b.length || b[j] != x) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Re-express a truth table over the leaves from in terms of the leaves
+	 * to. Leaves of from that are not in to must not matter.
+	 */
+	private static int expand(final int truth, final int[] from, final int[] to) {
+		final int[] position = new int[from.length];
+		for (int j = 0; j < from.length; j++) {
+			position[j] = Arrays.binarySearch(to, from[j]);
+		}
+		int result = 0;
+		for (int m = 0; m < 16; m++) {
+			int index = 0;
+			for (int j = 0; j < from.length; j++) {
+				if (position[j] >= 0 && ((m >> position[j]) & 1) != 0) index |= 1 << j;
+			}
+			if (((truth >> index) & 1) != 0) result |= 1 << m;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,99 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.BinaryExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+
+/**
+ * Builds the AIG of an Expr. Input variables become AIG inputs of the
+ * same name. Results are memoized by object identity, so a shared
+ * (interned) subexpression is only translated once; structurally equal
+ * logic is shared anyway by the AIG's structural hashing.
+ */
+public final class ExprToAIG {
+
+	private final AIG aig;
+	private final Map<Expr,Integer> memo = new IdentityHashMap<Expr,Integer>();
+
+	public ExprToAIG(final AIG aig) {
+		this.aig = aig;
+	}
+
+	/** @return the literal of e */
+	public int build(final Expr e) {
+		final Integer cached = memo.get(e);
+		if (cached != null) return cached;
+		final int r = translate(e);
+		memo.put(e, r);
+		return r;
+	}
+
+	private int translate(final Expr e) {
+		if (e instanceof ConstantExpr) {
+			return ((ConstantExpr) e).b ? AIG.TRUE : AIG.FALSE;
+		} else if (e instanceof VarExpr) {
+			return aig.input(((VarExpr) e).identifier);
+		} else if (e instanceof NotExpr) {
+			return AIG.not(build(((NotExpr) e).expr));
+		} else if (e instanceof BinaryExpr) {
+			final int l = build(((BinaryExpr) e).left);
+			final int r = build(((BinaryExpr) e).right);
+			if (e instanceof AndExpr) return aig.and(l, r);
+			if (e instanceof OrExpr) return aig.or(l, r);
+			if (e instanceof XOrExpr) return aig.xor(l, r);
+			if (e instanceof NAndExpr) return AIG.not(aig.and(l, r));
+			if (e instanceof NOrExpr) return AIG.not(aig.or(l, r));
+			if (e instanceof XNOrExpr || e instanceof EqualExpr) return aig.xnor(l, r);
+		} else if (e instanceof NaryAndExpr || e instanceof NaryOrExpr) {
+			final boolean and = e instanceof NaryAndExpr;
+			int acc = and ? AIG.TRUE : AIG.FALSE;
+			for (final Expr child : ((NaryExpr) e).children) {
+				final int c = build(child);
+				acc = and ? aig.and(acc, c) : aig.or(acc, c);
+			}
+			return acc;
+		}
+		throw new IllegalArgumentException("unexpected expression type: " + e.getClass().getName());
+	}
+}
@@ -0,0 +1,324 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.f.ast.FProgram;
+import ece351.f.sat.SATEquivalence;
+import ece351.f.sat.TseitinEncoder;
+
+/**
+ * SAT sweeping (fraiging) of an AIG: proves internal nodes equivalent and
+ * merges them, so that the final question about the outputs is asked of a
+ * much smaller graph in which most of the two designs is already shared.
+ * 
+ * Every node is first simulated on random patterns. Nodes with the same
+ * simulation signature, up to complement, are candidates for being
+ * equivalent. The nodes are then visited in topological order and copied
+ * into a reduced AIG, in terms of the copies of their fanins. If a node
+ * has a candidate among the nodes visited before it, a SAT call on the
+ * reduced graph decides whether they are equal: if so the node is merged
+ * into the candidate, and if not the counterexample is added to the
+ * simulation patterns, which separates the two for good.
+ * 
+ * Kodkod's SATSolver cannot solve under assumptions, so each query gets a
+ * fresh CNF (built with TseitinEncoder, solved by SATEquivalence) of just
+ * the cones of the two nodes in the reduced graph. Those cones are small
+ * because everything below them has already been merged.
+ */
+public final class Fraig {
+
+	/** Random simulation words (64 patterns each) per node. */
+	public static final int RANDOM_WORDS = 16;
+
+	private final AIG aig;
+	private final AIG reduced = new AIG();
+	/** Literal in the reduced graph of each node of aig. */
+	private final int[] map;
+	/** Simulation words; each word holds the values of all nodes. */
+	private final List<long[]> words = new ArrayList<long[]>();
+	/** Patterns from counterexamples in the last word so far. */
+	private int patterns = 64;
+	/** Representative of each signature among the nodes visited. */
+	private final Map<Signature,Integer> classes = new HashMap<Signature,Integer>();
+	private final List<Integer> representatives = new ArrayList<Integer>();
+	private int merges = 0;
+	private int satCalls = 0;
+
+	/** Sweep aig. */
+	public Fraig(final AIG aig) {
+		this.aig = aig;
+		this.map = new int[aig.size()];
+		for (final String name : aig.inputNames()) {
+			reduced.input(name);
+		}
+		final Random random = new Random(351L);
+		for (int w = 0; w < RANDOM_WORDS; w++) {
+			final long[] word = new long[aig.size()];
+			for (int n = 1; n < aig.size(); n++) {
+				if (aig.isInput(n)) word[n] = random.nextLong();
+			}
+			simulate(word);
+			words.add(word);
+		}
+		sweep();
+	}
+
+	/** The literal in the reduced graph corresponding to a literal of aig. */
+	public int literal(final int lit) {
+		return map[AIG.node(lit)] ^ (lit & 1);
+	}
+
+	public AIG reduced() { return reduced; }
+
+	/** Number of nodes merged by a SAT proof. */
+	public int merges() { return merges; }
+
+	public int satCalls() { return satCalls; }
+
+	/**
+	 * @return an input assignment on which literals a and b of aig differ,
+	 *   or null if they are equivalent
+	 */
+	public SortedMap<String,Boolean> distinguish(final int a, final int b) {
+		final boolean[] cex = solve(literal(a), literal(b));
+		if (cex == null) return null;
+		final SortedMap<String,Boolean> witness = new TreeMap<String,Boolean>();
+		for (int i = 0; i < cex.length; i++) {
+			witness.put(aig.inputNames().get(i), cex[i]);
+		}
+		return witness;
+	}
+
+	/**
+	 * Decides the equivalence of two FPrograms by sweeping a miter of them.
+	 * @return an input on which some output differs, or null if none does
+	 * @throws IllegalArgumentException if b lacks one of a's outputs
+	 */
+	public static SortedMap<String,Boolean> counterexample(final FProgram a, final FProgram b) {
+		final Map<String,AssignmentStatement> outputs = new HashMap<String,AssignmentStatement>();
+		for (final AssignmentStatement g : b.formulas) {
+			outputs.put(g.outputVar.identifier, g);
+		}
+		final AIG aig = new AIG();
+		final ExprToAIG builder = new ExprToAIG(aig);
+		final int[] x = new int[a.formulas.size()];
+		final int[] y = new int[a.formulas.size()];
+		for (int i = 0; i < x.length; i++) {
+			final AssignmentStatement f = a.formulas.get(i);
+			final AssignmentStatement g = outputs.get(f.outputVar.identifier);
+			if (g == null) throw new IllegalArgumentException("no output " + f.outputVar + " in " + b);
+			x[i] = builder.build(f.expr);
+			y[i] = builder.build(g.expr);
+		}
+		final Fraig fraig = new Fraig(aig);
+		for (int i = 0; i < x.length; i++) {
+			final SortedMap<String,Boolean> witness = fraig.distinguish(x[i], y[i]);
+			if (witness != null) return witness;
+		}
+		return null;
+	}
+
+	private void sweep() {
+		map[0] = AIG.FALSE;
+		register(0);
+		for (int n = 1; n < aig.size(); n++) {
+			if (aig.isInput(n)) {
+				map[n] = reduced.input(aig.inputName(n));
+				register(n);
+				continue;
+			}
+			final int lit = reduced.and(literal(aig.fanin0(n)), literal(aig.fanin1(n)));
+			while (true) {
+				final Signature s = new Signature(n);
+				final Integer candidate = classes.get(s);
+				if (candidate == null) {
+					map[n] = lit;
+					register(n);
+					break;
+				}
+				final int target = map[candidate] ^ (s.phase == new Signature(candidate).phase ? 0 : 1);
+				if (lit == target) {
+					// structurally the same in the reduced graph
+					map[n] = target;
+					break;
+				}
+				final boolean[] cex = solve(lit, target);
+				if (cex == null) {
+					map[n] = target;
+					merges++;
+					break;
+				}
+				refine(cex);
+			}
+		}
+	}
+
+	private void register(final int n) {
+		final Signature s = new Signature(n);
+		if (!classes.containsKey(s)) {
+			classes.put(s, n);
+			representatives.add(n);
+		}
+	}
+
+	/** Simulate the and nodes of one word, given its inputs. */
+	private void simulate(final long[] word) {
+		for (int n = 1; n < aig.size(); n++) {
+			if (aig.isAnd(n)) {
+				word[n] = value(word, aig.fanin0(n)) & value(word, aig.fanin1(n));
+			}
+		}
+	}
+
+	private static long value(final long[] word, final int lit) {
+		final long v = word[AIG.node(lit)];
+		return AIG.isComplemented(lit) ? ~v : v;
+	}
+
+	/** Add a counterexample to the patterns and reclassify the representatives. */
+	private void refine(final boolean[] cex) {
+		if (patterns == 64) {
+			words.add(new long[aig.size()]);
+			patterns = 0;
+		}
+		final long[] word = words.get(words.size() - 1);
+		final long bit = 1L << patterns++;
+		for (int n = 1; n < aig.size(); n++) {
+			if (aig.isInput(n) && cex[aig.fanin1(n)]) word[n] |= bit;
+		}
+		simulate(word);
+		classes.clear();
+		for (final int r : representatives) {
+			final Signature s = new Signature(r);
+			if (!classes.containsKey(s)) classes.put(s, r);
+		}
+	}
+
+	/**
+	 * Are literals x and y of the reduced graph different on some input?
+	 * The cones of x and y are Tseitin-encoded, each and node with the
+	 * three clauses of TseitinEncoder.and, and the CNF with x != y goes to
+	 * SATEquivalence's solver.
+	 * @return the values of the inputs on which they differ, or null
+	 */
+	private boolean[] solve(final int x, final int y) {
+		satCalls++;
+		// find the nodes in the cones of x and y
+		final boolean[] inCone = new boolean[reduced.size()];
+		// a node is pushed at most once per edge into it
+		final int[] stack = new int[2 * reduced.size() + 2];
+		int top = 0;
+		stack[top++] = AIG.node(x);
+		stack[top++] = AIG.node(y);
+		while (top > 0) {
+			final int n = stack[--top];
+			if (inCone[n]) continue;
+			inCone[n] = true;
+			if (reduced.isAnd(n)) {
+				stack[top++] = AIG.node(reduced.fanin0(n));
+				stack[top++] = AIG.node(reduced.fanin1(n));
+			}
+		}
+		
+		// encode them in topological order: fanins first
+		final TseitinEncoder encoder = new TseitinEncoder();
+		final int[] var = new int[reduced.size()];
+		for (int n = 0; n < reduced.size(); n++) {
+			if (!inCone[n]) continue;
+			if (n == 0) {
+				var[n] = encoder.constant(false);
+			} else if (reduced.isInput(n)) {
+				var[n] = encoder.input(reduced.inputName(n));
+			} else {
+				var[n] = encoder.and(satLiteral(var, reduced.fanin0(n)), satLiteral(var, reduced.fanin1(n)));
+			}
+		}
+		// x != y
+		final int sx = satLiteral(var, x);
+		final int sy = satLiteral(var, y);
+		encoder.clause(sx, sy);
+		encoder.clause(-sx, -sy);
+		final boolean[] model = SATEquivalence.model(encoder);
+		if (model == null) return null;
+		
+		final boolean[] cex = new boolean[aig.inputCount()];
+		for (int n = 1; n < reduced.size(); n++) {
+			if (inCone[n] && reduced.isInput(n)) cex[reduced.fanin1(n)] = model[var[n]];
+		}
+		return cex;
+	}
+
+	/** The SAT literal of an AIG literal, given the variable of each node. */
+	private static int satLiteral(final int[] var, final int lit) {
+		final int v = var[AIG.node(lit)];
+		return AIG.isComplemented(lit) ? -v : v;
+	}
+
+	/**
+	 * The simulation values of a node, complemented if need be so that the
+	 * first pattern is 0: a node and its complement have equal signatures.
+	 */
+	private final class Signature {
+		final long[] values;
+		/** Was the node complemented? */
+		final boolean phase;
+		final int hash;
+
+		Signature(final int n) {
+			values = new long[words.size()];
+			phase = (words.get(0)[n] & 1L) != 0;
+			for (int w = 0; w < values.length; w++) {
+				values[w] = phase ? ~words.get(w)[n] : words.get(w)[n];
+			}
+			// unused pattern bits of the last word are zero: mask them
+			if (patterns < 64) {
+				values[values.length - 1] &= (1L << patterns) - 1;
+			}
+			hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof Signature && Arrays.equals(values, ((Signature) obj).values);
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * A small AIG over four leaves: the library entry that Rewrite puts in
+ * place of a cut.
+ * 
+ * Steps are and nodes over local literals: node 0 is the constant, nodes
+ * 1 to 4 are the leaves, and node 5 + i is step i; literal 2n + c refers
+ * to node n, complemented if c is 1.
+ * 
+ * best() gives the smallest implementation it can find of each 4-input
+ * function, by dynamic programming over its decompositions: on a single
+ * variable (and, or, xor, or a multiplexer on the two cofactors), and
+ * into two functions of disjoint inputs (and, or, xor). A function and its
+ * complement share one entry. Entries are computed on first use and then
+ * kept, so that the library fills in with the functions that occur.
+ */
+final class Recipe {
+
+	static final int LEAVES = 4;
+	private static final Recipe[] LIBRARY = new Recipe[1 << 16];
+
+	/** Pairs of fanin literals, one pair per step. */
+	private final int[] steps;
+	private final int out;
+
+	private Recipe(final int[] steps, final int out) {
+		this.steps = steps;
+		this.out = out;
+	}
+
+	int size() { return steps.length / 2; }
+
+	/**
+	 * Number of and nodes that build() would add to aig, counting the
+	 * nodes in ignore as if they did not exist.
+	 */
+	int count(final AIG aig, final int[] leaves, final Set<Integer> ignore) {
+		final int[] value = values(leaves);
+		int count = 0;
+		for (int i = 0; i < size(); i++) {
+			final int a = value(value, steps[2 * i]);
+			final int b = value(value, steps[2 * i + 1]);
+			int r = (a < 0 || b < 0) ? -1 : aig.find(a, b);
+			if (r >= 0 && ignore.contains(AIG.node(r))) r = -1;
+			if (r < 0) count++;
+			value[1 + LEAVES + i] = r;
+		}
+		return count;
+	}
+
+	/** Instantiate in aig over the given leaf literals; returns the literal of the output. */
+	int build(final AIG aig, final int[] leaves) {
+		final int[] value = values(leaves);
+		for (int i = 0; i < size(); i++) {
+			value[1 + LEAVES + i] = aig.and(value(value, steps[2 * i]), value(value, steps[2 * i + 1]));
+		}
+		return value(value, out);
+	}
+
+	/** Literal of each local node; -1 for unknown. */
+	private int[] values(final int[] leaves) {
+		final int[] value = new int[1 + LEAVES + size()];
+		Arrays.fill(value, -1);
+		value[0] = AIG.FALSE;
+		for (int v = 0; v < leaves.length; v++) {
+			value[1 + v] = leaves[v];
+		}
+		return value;
+	}
+
+	private static int value(final int[] value, final int local) {
+		final int v = value[local >>> 1];
+		return v < 0 ? -1 : v ^ (local & 1);
+	}
+
+	// construction
+
+	static Recipe constant(final boolean b) { return new Recipe(new int[0], b ? 1 : 0); }
+	static Recipe leaf(final int v) { return new Recipe(new int[0], 2 * (1 + v)); }
+	Recipe not() { return new Recipe(steps, out ^ 1); }
+
+	static Recipe and(final Recipe x, final Recipe y) {
+		final Builder b = new Builder();
+		return b.finish(b.and(b.add(x), b.add(y)));
+	}
+
+	static Recipe or(final Recipe x, final Recipe y) {
+		return and(x.not(), y.not()).not();
+	}
+
+	static Recipe xor(final Recipe x, final Recipe y) {
+		final Builder b = new Builder();
+		final int lx = b.add(x);
+		final int ly = b.add(y);
+		return b.finish(b.or(b.and(lx, ly ^ 1), b.and(lx ^ 1, ly)));
+	}
+
+	/** v ? x : y */
+	static Recipe mux(final int v, final Recipe x, final Recipe y) {
+		final Builder b = new Builder();
+		final int lv = 2 * (1 + v);
+		final int lx = b.add(x);
+		final int ly = b.add(y);
+		return b.finish(b.or(b.and(lv, lx), b.and(lv ^ 1, ly)));
+	}
+
+	/** Concatenates recipes, renumbering their steps. */
+	private static final class Builder {
+		private int[] steps = new int[16];
+		private int size = 0;
+
+		int add(final Recipe r) {
+			final int offset = size;
+			for (int i = 0; i < r.size(); i++) {
+				step(shift(r.steps[2 * i], offset), shift(r.steps[2 * i + 1], offset));
+			}
+			return shift(r.out, offset);
+		}
+
+		int and(final int a, final int b) {
+			step(a, b);
+			return 2 * (LEAVES + size);
+		}
+
+		int or(final int a, final int b) {
+			return and(a ^ 1, b ^ 1) ^ 1;
+		}
+
+		Recipe finish(final int out) {
+			return new Recipe(Arrays.copyOf(steps, 2 * size), out);
+		}
+
+		private void step(final int a, final int b) {
+			if (2 * size == steps.length) steps = Arrays.copyOf(steps, 2 * steps.length);
+			steps[2 * size] = a;
+			steps[2 * size + 1] = b;
+			size++;
+		}
+
+		private static int shift(final int local, final int offset) {
+			return (local >>> 1) > LEAVES ? local + 2 * offset : local;
+		}
+	}
+
+	// the library
+
+	/** The smallest implementation found of the 4-input function truth. */
+	static synchronized Recipe best(int truth) {
+		truth &= 0xFFFF;
+		if (LIBRARY[truth] != null) return LIBRARY[truth];
+		final int complement = ~truth & 0xFFFF;
+		final Recipe r;
+		if (truth > complement) {
+			r = best(complement).not();
+		} else {
+			r = search(truth);
+		}
+		LIBRARY[truth] = r;
+		return r;
+	}
+
+	private static Recipe search(final int t) {
+		if (t == 0) return constant(false);
+		int support = 0;
+		for (int v = 0; v < LEAVES; v++) {
+			if (t == Cuts.VARS[v]) return leaf(v);
+			if (t == (~Cuts.VARS[v] & 0xFFFF)) return leaf(v).not();
+			if (cofactor(t, v, false) != cofactor(t, v, true)) support |= 1 << v;
+		}
+		
+		Recipe best = null;
+		// decompose on one variable
+		for (int v = 0; v < LEAVES; v++) {
+			if ((support & (1 << v)) == 0) continue;
+			final int c0 = cofactor(t, v, false);
+			final int c1 = cofactor(t, v, true);
+			final Recipe r;
+			if (c0 == 0) {
+				r = and(leaf(v), best(c1));
+			} else if (c1 == 0) {
+				r = and(leaf(v).not(), best(c0));
+			} else if (c0 == 0xFFFF) {
+				r = or(leaf(v).not(), best(c1));
+			} else if (c1 == 0xFFFF) {
+				r = or(leaf(v), best(c0));
+			} else if (c1 == (~c0 & 0xFFFF)) {
+				r = xor(leaf(v), best(c0));
+			} else {
+				r = mux(v, best(c1), best(c0));
+			}
+			best = smaller(best, r);
+		}
+		
+		// decompose into functions of disjoint inputs
+		for (int s = (support - 1) & support; s > 0; s = (s - 1) & support) {
+			final int rest = support & ~s;
+			if (s > rest) continue;
+			final int g1 = quantify(t, rest, true);
+			final int h1 = quantify(t, s, true);
+			if ((g1 & h1) == t) best = smaller(best, and(best(g1), best(h1)));
+			final int g2 = quantify(t, rest, false);
+			final int h2 = quantify(t, s, false);
+			if ((g2 | h2) == t) best = smaller(best, or(best(g2), best(h2)));
+			final int c = (t & 1) != 0 ? 0xFFFF : 0;
+			final int g3 = restrict(t, rest);
+			final int h3 = restrict(t, s) ^ c;
+			if ((g3 ^ h3) == t) best = smaller(best, xor(best(g3), best(h3)));
+		}
+		return best;
+	}
+
+	private static Recipe smaller(final Recipe a, final Recipe b) {
+		return a == null || b.size() < a.size() ? b : a;
+	}
+
+	/** The cofactor of t with variable v fixed, as a function of all four. */
+	static int cofactor(final int t, final int v, final boolean value) {
+		final int mask = Cuts.VARS[v];
+		final int shift = 1 << v;
+		if (value) {
+			final int x = t & mask;
+			return x | (x >>> shift);
+		} else {
+			final int x = t & ~mask & 0xFFFF;
+			return x | (x << shift) & 0xFFFF;
+		}
+	}
+
+	/** Existential (or universal) quantification of the variables in vars. */
+	private static int quantify(int t, final int vars, final boolean exists) {
+		for (int v = 0; v < LEAVES; v++) {
+			if ((vars & (1 << v)) == 0) continue;
+			final int c0 = cofactor(t, v, false);
+			final int c1 = cofactor(t, v, true);
+			t = exists ? (c0 | c1) : (c0 & c1);
+		}
+		return t;
+	}
+
+	/** t with the variables in vars set to false. */
+	private static int restrict(int t, final int vars) {
+		for (int v = 0; v < LEAVES; v++) {
+			if ((vars & (1 << v)) != 0) t = cofactor(t, v, false);
+		}
+		return t;
+	}
+}
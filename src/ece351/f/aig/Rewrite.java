@@ -0,0 +1,165 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * DAG-aware rewriting of an AIG with 4-input cuts.
+ * 
+ * For every and node, the cuts of at most four leaves are enumerated
+ * bottom-up together with their truth tables (see Cuts). For each cut,
+ * the best known implementation of its function is looked up in the
+ * library (see Recipe.best), and the gain of using it is computed the way it matters
+ * for the whole graph: the nodes that would become dead (the root's
+ * maximum fanout-free cone above the leaves) minus the nodes the new
+ * implementation would add (nodes that already exist are shared through
+ * structural hashing and cost nothing). The best replacement with a
+ * positive gain is taken. Passes are repeated while the graph shrinks.
+ */
+public final class Rewrite {
+
+	public static final int CUT_SIZE = 4;
+	/** Cuts kept per node, besides the trivial one. */
+	public static final int MAX_CUTS = 8;
+	public static final int MAX_PASSES = 3;
+
+	private final AIG aig;
+	private final AIG out = new AIG();
+	/** Literal in out of each node of aig. */
+	private final int[] map;
+	private final Cuts cuts;
+	/** Scratch fanout counts of aig, for measuring fanout-free cones. */
+	private final int[] refs;
+
+	private Rewrite(final AIG aig) {
+		this.aig = aig;
+		this.map = new int[aig.size()];
+		this.cuts = new Cuts(aig, CUT_SIZE, MAX_CUTS);
+		this.refs = new int[aig.size()];
+		for (int n = 0; n < aig.size(); n++) {
+			refs[n] = aig.fanout(n);
+		}
+		for (final String name : aig.inputNames()) {
+			out.input(name);
+		}
+	}
+
+	/** A rewritten copy of aig, never larger than aig. */
+	public static AIG rewrite(AIG aig) {
+		aig = aig.cleanup();
+		for (int pass = 0; pass < MAX_PASSES; pass++) {
+			final AIG result = new Rewrite(aig).pass().cleanup();
+			if (result.andCount() >= aig.andCount()) break;
+			aig = result;
+		}
+		return aig;
+	}
+
+	private AIG pass() {
+		map[0] = AIG.FALSE;
+		for (int n = 1; n < aig.size(); n++) {
+			if (aig.isInput(n)) {
+				map[n] = out.input(aig.inputName(n));
+			} else {
+				map[n] = rewriteNode(n, cuts.of(n));
+			}
+		}
+		for (int i = 0; i < aig.outputCount(); i++) {
+			out.addOutput(aig.outputName(i), literal(aig.output(i)));
+		}
+		return out;
+	}
+
+	private int literal(final int lit) {
+		return map[AIG.node(lit)] ^ (lit & 1);
+	}
+
+	/** The literal in out of and node n, rewritten over one of its cuts if that pays. */
+	private int rewriteNode(final int n, final List<Cuts.Cut> cs) {
+		Cuts.Cut best = null;
+		int bestGain = 0;
+		for (final Cuts.Cut c : cs) {
+			// the images of the cone that dies cannot be reused
+			final Set<Integer> dying = new HashSet<Integer>();
+			final int freed = mffc(n, c.leaves, dying);
+			final int added = Recipe.best(c.truth).count(out, leaves(c), dying);
+			final int gain = freed - added;
+			if (gain > bestGain) {
+				best = c;
+				bestGain = gain;
+			}
+		}
+		if (best == null) {
+			return out.and(literal(aig.fanin0(n)), literal(aig.fanin1(n)));
+		}
+		return Recipe.best(best.truth).build(out, leaves(best));
+	}
+
+	/** The literals in out of the leaves of a cut. */
+	private int[] leaves(final Cuts.Cut c) {
+		final int[] leaves = new int[c.leaves.length];
+		for (int i = 0; i < leaves.length; i++) {
+			leaves[i] = map[c.leaves[i]];
+		}
+		return leaves;
+	}
+
+	/**
+	 * Number of nodes that die if n is no longer needed, stopping at the
+	 * leaves. The nodes of out that are their images are added to dying.
+	 */
+	private int mffc(final int n, final int[] leaves, final Set<Integer> dying) {
+		final int count = deref(n, leaves, dying);
+		ref(n, leaves);
+		return count;
+	}
+
+	private int deref(final int n, final int[] leaves, final Set<Integer> dying) {
+		int count = 1;
+		if (map[n] != 0) dying.add(AIG.node(map[n]));
+		for (final int f : new int[] { aig.fanin0(n), aig.fanin1(n) }) {
+			final int m = AIG.node(f);
+			if (--refs[m] == 0 && aig.isAnd(m) && Arrays.binarySearch(leaves, m) < 0) {
+				count += deref(m, leaves, dying);
+			}
+		}
+		return count;
+	}
+
+	private void ref(final int n, final int[] leaves) {
+		for (final int f : new int[] { aig.fanin0(n), aig.fanin1(n) }) {
+			final int m = AIG.node(f);
+			if (refs[m]++ == 0 && aig.isAnd(m) && Arrays.binarySearch(leaves, m) < 0) {
+				ref(m, leaves);
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.f.ast.FProgram;
+import ece351.f.bdd.BDDEquivalence;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+import ece351.util.CommandLine;
+import ece351.util.TestInputs351;
+
+public class TestAIG extends BaseTest351 {
+
+	@Test
+	public void testStructuralHashing() {
+		final AIG aig = new AIG();
+		final int a = aig.input("a");
+		final int b = aig.input("b");
+		assertEquals(a, aig.input("a"));
+		assertEquals(aig.and(a, b), aig.and(b, a));
+		assertEquals(AIG.FALSE, aig.and(a, AIG.not(a)));
+		assertEquals(a, aig.and(a, a));
+		assertEquals(a, aig.and(AIG.TRUE, a));
+		assertEquals(AIG.FALSE, aig.and(AIG.FALSE, b));
+		assertEquals(1, aig.andCount());
+		assertEquals(aig.or(a, b), aig.or(b, a));
+		assertEquals(2, aig.andCount());
+		
+		// many nodes: the table grows and still finds them all
+		int acc = a;
+		for (int i = 0; i < 5000; i++) {
+			acc = aig.and(acc, aig.input("x" + i));
+		}
+		final int size = aig.size();
+		acc = a;
+		for (int i = 0; i < 5000; i++) {
+			acc = aig.and(acc, aig.input("x" + i));
+		}
+		assertEquals(size, aig.size());
+	}
+
+	@Test
+	public void testFanouts() {
+		final FProgram p = FRecursiveDescentParser.parse("x <= a and b; y <= (a and b) or c;");
+		final AIG aig = AIG.fromFProgram(p);
+		assertEquals(2, aig.outputCount());
+		assertEquals("x", aig.outputName(0));
+		final int ab = AIG.node(aig.output(0));
+		// output x and the or of y
+		assertEquals(2, aig.fanout(ab));
+		assertEquals(1, aig.fanout(AIG.node(aig.output(1))));
+		assertEquals(2, aig.andCount());
+	}
+
+	@Test
+	public void testRoundTrip() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final CommandLine c = new CommandLine("-h", f.getAbsolutePath());
+			final FProgram original = FRecursiveDescentParser.parse(c.readInputSpec());
+			final FProgram converted = AIG.fromFProgram(original).toFProgram();
+			assertTrue(f.getName(), converted.repOk());
+			assertEquals(f.getName(), original.outputVars(), converted.outputVars());
+			assertTrue(f.getName(), BDDEquivalence.equivalent(original, converted));
+		}
+	}
+
+	@Test
+	public void testSumOfProducts() {
+		final FProgram p = FRecursiveDescentParser.parse("x <= (a and b) or (not a and c) or d;");
+		final Expr e = AIG.fromFProgram(p).toFProgram().formulas.get(0).expr;
+		// comes back as one disjunction of two products and d
+		assertTrue(e instanceof NaryOrExpr);
+		assertEquals(3, ((NaryOrExpr) e).children.size());
+		assertTrue(((NaryOrExpr) e).children.contains(new VarExpr("d")));
+	}
+}
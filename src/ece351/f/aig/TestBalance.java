@@ -0,0 +1,122 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.VarExpr;
+import ece351.f.ast.FProgram;
+import ece351.f.bdd.BDDEquivalence;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.f.techmapper.CellLibrary;
+import ece351.f.techmapper.CutMapper;
+import ece351.util.BaseTest351;
+import ece351.util.CommandLine;
+import ece351.util.TestInputs351;
+
+public class TestBalance extends BaseTest351 {
+
+	@Test
+	public void testChain() {
+		// ((((x0 and x1) and x2) and x3) ... and x15)
+		final AIG aig = new AIG();
+		int acc = aig.input("x0");
+		for (int i = 1; i < 16; i++) {
+			acc = aig.and(acc, aig.input("x" + i));
+		}
+		aig.addOutput("y", acc);
+		assertEquals(15, aig.depth());
+		final AIG balanced = Balance.balance(aig);
+		assertEquals(4, balanced.depth());
+		assertEquals(15, balanced.andCount());
+	}
+
+	@Test
+	public void testChainProgram() {
+		// -o7 keeps the balanced tree in the FProgram, where -o6 flattens it
+		final List<Expr> vars = new ArrayList<Expr>();
+		for (int i = 0; i < 16; i++) {
+			vars.add(new VarExpr("x" + i));
+		}
+		final FProgram p = new FProgram(Arrays.asList(new AssignmentStatement("y", new NaryAndExpr(vars))));
+		final FProgram rewritten = p.simplify(new CommandLine("-o6").simplifierOpts);
+		final FProgram balanced = p.simplify(new CommandLine("-o7").simplifierOpts);
+		assertEquals(p.simplify(), rewritten);
+		assertTrue(BDDEquivalence.equivalent(p, balanced));
+		assertEquals(15, AIG.fromFProgram(rewritten).depth());
+		assertEquals(4, AIG.fromFProgram(balanced).depth());
+		
+		// and so the mapped circuit is faster
+		final CutMapper chain = new CutMapper(AIG.fromFProgram(rewritten), CellLibrary.DEFAULT, CutMapper.Goal.DELAY);
+		final CutMapper tree = new CutMapper(AIG.fromFProgram(balanced), CellLibrary.DEFAULT, CutMapper.Goal.DELAY);
+		assertTrue(tree.delay() < chain.delay());
+	}
+
+	@Test
+	public void testSharedLeaves() {
+		// the shared node is a leaf of both supergates, not duplicated
+		final AIG aig = new AIG();
+		final int ab = aig.and(aig.input("a"), aig.input("b"));
+		aig.addOutput("x", aig.and(aig.and(ab, aig.input("c")), aig.input("d")));
+		aig.addOutput("y", aig.and(ab, AIG.not(aig.input("a"))));
+		final AIG balanced = Balance.balance(aig);
+		// a and b, c and d, and the two outputs
+		assertEquals(4, balanced.andCount());
+		assertEquals(2, balanced.depth());
+	}
+
+	@Test
+	public void testFormulaFiles() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final CommandLine c = new CommandLine("-h", f.getAbsolutePath());
+			final FProgram original = FRecursiveDescentParser.parse(c.readInputSpec());
+			final AIG aig = AIG.fromFProgram(original);
+			final AIG balanced = Balance.balance(aig);
+			assertTrue(f.getName(), balanced.depth() <= aig.depth());
+			assertTrue(f.getName(), BDDEquivalence.equivalent(original, balanced.toFProgram()));
+			
+			// the optimization levels that go through the AIG
+			final CommandLine o7 = new CommandLine("-h", "-o7", f.getAbsolutePath());
+			final FProgram optimized = original.simplify(o7.simplifierOpts);
+			assertTrue(f.getName(), BDDEquivalence.equivalent(original, optimized));
+			assertTrue(f.getName(), AIG.fromFProgram(optimized).depth()
+					<= AIG.fromFProgram(original.simplify()).depth());
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+import ece351.util.TestInputs351;
+import ece351.util.TestPrograms351;
+
+public class TestFraig extends BaseTest351 {
+
+	@Test
+	public void testFormulaFiles() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final FProgram original = TestPrograms351.parse(f);
+			assertNull(f.getName(), Fraig.counterexample(original, original.simplify()));
+
+			final FProgram negated = TestPrograms351.negateFirstOutput(original);
+			final SortedMap<String,Boolean> w = Fraig.counterexample(original, negated);
+			assertNotNull(f.getName(), w);
+			assertTrue(f.getName(), TestPrograms351.distinguishes(w, original, negated));
+		}
+	}
+
+	/**
+	 * A parity of n terms, each written as a and (b or c) on one side and
+	 * (a and b) or (a and c) on the other. Structural hashing cannot see
+	 * that the terms are equal, but sweeping merges them one by one.
+	 */
+	@Test
+	public void testInternalEquivalences() {
+		final int n = 24;
+		Expr x = null;
+		Expr y = null;
+		for (int i = 0; i < n; i++) {
+			final VarExpr a = new VarExpr("a" + i);
+			final VarExpr b = new VarExpr("b" + i);
+			final VarExpr c = new VarExpr("c" + i);
+			final Expr t = new AndExpr(a, new OrExpr(b, c));
+			final Expr u = new OrExpr(new AndExpr(a, b), new AndExpr(a, c));
+			x = x == null ? t : new XOrExpr(x, t);
+			y = y == null ? u : new XOrExpr(y, u);
+		}
+		final AIG aig = new AIG();
+		final ExprToAIG builder = new ExprToAIG(aig);
+		final int lx = builder.build(x);
+		final int ly = builder.build(y);
+		final Fraig fraig = new Fraig(aig);
+		assertEquals(fraig.literal(lx), fraig.literal(ly));
+		assertTrue(fraig.merges() >= n);
+		assertNull(fraig.distinguish(lx, ly));
+		assertTrue(fraig.reduced().andCount() < aig.andCount());
+		
+		// and a difference deep inside is still found
+		final Expr z = new XOrExpr(y, new AndExpr(new VarExpr("a0"), new VarExpr("b1")));
+		final int lz = builder.build(z);
+		final SortedMap<String,Boolean> w = new Fraig(aig).distinguish(lx, lz);
+		assertNotNull(w);
+		assertTrue(w.get("a0") && w.get("b1"));
+	}
+
+	@Test
+	public void testConstant() {
+		// a and not a, hidden behind a little structure
+		final FProgram p = FRecursiveDescentParser.parse("x <= (a and b) and not (a or c);");
+		final FProgram q = FRecursiveDescentParser.parse("x <= '0';");
+		assertNull(Fraig.counterexample(p, q));
+		final FProgram r = FRecursiveDescentParser.parse("x <= b and not a and not c;");
+		assertNotNull(Fraig.counterexample(p, r));
+	}
+}
@@ -0,0 +1,104 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.aig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import ece351.f.ast.FProgram;
+import ece351.f.bdd.BDDEquivalence;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+import ece351.util.CommandLine;
+import ece351.util.TestInputs351;
+
+public class TestRewrite extends BaseTest351 {
+
+	/** Every library entry computes its function. */
+	@Test
+	public void testLibrary() {
+		int maxSize = 0;
+		for (int t = 0; t < (1 << 16); t++) {
+			final AIG aig = new AIG();
+			final int[] leaves = new int[Recipe.LEAVES];
+			for (int v = 0; v < leaves.length; v++) {
+				leaves[v] = aig.input("x" + v);
+			}
+			final Recipe r = Recipe.best(t);
+			assertEquals(Integer.toHexString(t), t, truth(aig, r.build(aig, leaves)));
+			maxSize = Math.max(maxSize, r.size());
+		}
+		// the parity of four inputs takes 9 and nodes
+		assertEquals(9, Recipe.best(0x6996).size());
+		assertTrue(maxSize < 20);
+	}
+
+	/** Truth table of a literal over the first four inputs. */
+	private static int truth(final AIG aig, final int lit) {
+		final int[] t = new int[aig.size()];
+		for (int n = 1; n < aig.size(); n++) {
+			if (aig.isInput(n)) {
+				t[n] = Cuts.VARS[n - 1];
+			} else {
+				t[n] = value(t, aig.fanin0(n)) & value(t, aig.fanin1(n));
+			}
+		}
+		return value(t, lit);
+	}
+
+	private static int value(final int[] t, final int lit) {
+		return AIG.isComplemented(lit) ? ~t[AIG.node(lit)] & 0xFFFF : t[AIG.node(lit)];
+	}
+
+	@Test
+	public void testFactoring() {
+		final FProgram p = FRecursiveDescentParser.parse("x <= (a and b) or (a and c) or (a and d);");
+		final AIG aig = AIG.fromFProgram(p);
+		final AIG rewritten = Rewrite.rewrite(aig);
+		assertEquals(5, aig.andCount());
+		// a and (b or c or d)
+		assertEquals(3, rewritten.andCount());
+		assertTrue(BDDEquivalence.equivalent(p, rewritten.toFProgram()));
+	}
+
+	@Test
+	public void testFormulaFiles() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final CommandLine c = new CommandLine("-h", f.getAbsolutePath());
+			final FProgram original = FRecursiveDescentParser.parse(c.readInputSpec());
+			final AIG aig = AIG.fromFProgram(original);
+			final AIG rewritten = Rewrite.rewrite(aig);
+			assertTrue(f.getName(), rewritten.andCount() <= aig.andCount());
+			assertTrue(f.getName(), BDDEquivalence.equivalent(original, rewritten.toFProgram()));
+		}
+	}
+}
@@ -44,30 +44,33 @@ public class DepthCounter {
 	 * Dispatch to appropriate measure method. 
 	 */
 	public final int measureExpr(final Expr e, final int depth) {
-			// NaryExpr case
-			// BinaryExpr case
-			// UnaryExpr case
-			// nothing more to measure
-// TODO: longer code snippet
-throw new ece351.util.Todo351Exception();
+		// NaryExpr case
+		if (e instanceof NaryExpr) return measureNaryExpr((NaryExpr) e, depth);
+		// BinaryExpr case
+		if (e instanceof BinaryExpr) return measureBinaryExpr((BinaryExpr) e, depth);
+		// UnaryExpr case
+		if (e instanceof UnaryExpr) return measureUnaryExpr((UnaryExpr) e, depth);
+		// nothing more to measure
+		return depth;
 	}
 	
 	/** Return the depth of the deepest child. */
 	public int measureNaryExpr(final NaryExpr e, final int depth) {
-// TODO: short code snippet
-throw new ece351.util.Todo351Exception();
+		int max = depth;
+		for (final Expr c : e.children) {
+			max = Math.max(max, measureExpr(c, depth + 1));
+		}
+		return max;
 	}
 	
 	/** Return the depth of the deepest child. */
 	public int measureBinaryExpr(final BinaryExpr e, final int depth) {
-// TODO: short code snippet
-throw new ece351.util.Todo351Exception();
+		return Math.max(measureExpr(e.left, depth + 1), measureExpr(e.right, depth + 1));
 	}
 	
 	/** Return the depth of the child. */
 	public int measureUnaryExpr(final UnaryExpr e, final int depth) {
-// TODO: short code snippet
-throw new ece351.util.Todo351Exception();
+		return measureExpr(e.expr, depth + 1);
 	}
 
 	/** Return the depth of the deepest formula in this FProgram. */
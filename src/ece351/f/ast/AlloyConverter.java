@@ -26,8 +26,12 @@
 
 package ece351.f.ast;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import ece351.common.ast.AndExpr;
 import ece351.common.ast.AssignmentStatement;
@@ -49,6 +53,8 @@ import ece351.common.ast.XOrExpr;
 import ece351.common.visitor.ExprVisitor;
 import ece351.f.analysis.DetermineInputVars;
 import ece351.util.Debug;
+import ece351.util.RunAlloy351;
+import ece351.util.Tuple;
 
 public final class AlloyConverter extends ExprVisitor {
 
@@ -140,6 +146,26 @@ public final class AlloyConverter extends ExprVisitor {
 		return m.toString();
 	}
 
+	/**
+	 * Check many pairs of FPrograms for equivalence with Alloy on
+	 * RunAlloy351's worker pool, where each worker has its own copy of
+	 * Alloy, so the checks run in parallel. Each future yields true if its
+	 * pair is equivalent; the futures are in the same order as the pairs.
+	 */
+	public static List<Future<Boolean>> equivalentAll(final List<Tuple<FProgram,FProgram>> pairs) {
+		final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(pairs.size());
+		for (final Tuple<FProgram,FProgram> pair : pairs) {
+			results.add(RunAlloy351.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					// a counterexample to the assertion means not equivalent
+					return !RunAlloy351.check(convert(pair.x, pair.y));
+				}
+			}));
+		}
+		return results;
+	}
+
 	private static String sanitize(final VarExpr v) {
 		return sanitize(v.identifier);
 	}
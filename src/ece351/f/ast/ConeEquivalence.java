@@ -0,0 +1,183 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.f.aig.Fraig;
+import ece351.f.analysis.DetermineInputVars;
+import ece351.f.bdd.BDD;
+import ece351.f.bdd.BDDEquivalence;
+import ece351.f.sim.RandomSimulation;
+
+/**
+ * Decides the equivalence of two FPrograms one output at a time. An
+ * output only depends on the inputs in its cone of influence (as found by
+ * DetermineInputVars), so each check is bounded to the logic of that one
+ * output and a hard output does not slow down the easy ones. The checks
+ * run in parallel on the common fork-join pool, largest cones first.
+ * 
+ * Outputs whose cones are structurally identical (see StructuralHash)
+ * are equal without further ado. Each remaining cone is decided by
+ * simulation, then BDDs, then SAT sweeping (Fraig), and its verdict goes
+ * through the EquivalenceCache on its own, so an output that did not
+ * change since the last check is not decided again.
+ */
+public final class ConeEquivalence {
+
+	private ConeEquivalence() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return for each output of a, whether b computes the same function
+	 *   for it (false if b lacks that output)
+	 */
+	public static SortedMap<String,Boolean> verdicts(final FProgram a, final FProgram b) {
+		final SortedMap<String,Boolean> verdicts = new TreeMap<String,Boolean>();
+		for (final Map.Entry<String,SortedMap<String,Boolean>> e : witnesses(a, b).entrySet()) {
+			verdicts.put(e.getKey(), e.getValue() == null);
+		}
+		return verdicts;
+	}
+
+	/** Are all outputs equivalent? */
+	public static boolean equivalent(final FProgram a, final FProgram b) {
+		return counterexample(a, b) == null;
+	}
+
+	/**
+	 * @return an input on which the first differing output (in order of
+	 *   name) differs, or null if all outputs are equivalent
+	 */
+	public static SortedMap<String,Boolean> counterexample(final FProgram a, final FProgram b) {
+		for (final SortedMap<String,Boolean> w : witnesses(a, b).values()) {
+			if (w != null) return w;
+		}
+		return null;
+	}
+
+	/**
+	 * For each output of a, an input of its cone on which a and b differ,
+	 * or null if they agree on that output. The witness for an output that
+	 * b lacks is empty: any input will do.
+	 */
+	private static SortedMap<String,SortedMap<String,Boolean>> witnesses(final FProgram a, final FProgram b) {
+		final Map<String,AssignmentStatement> outputs = new HashMap<String,AssignmentStatement>();
+		for (final AssignmentStatement g : b.formulas) {
+			outputs.put(g.outputVar.identifier, g);
+		}
+		final SortedMap<String,SortedMap<String,Boolean>> witnesses = new TreeMap<String,SortedMap<String,Boolean>>();
+		
+		// structurally identical cones are equal: no need to ask anyone
+		final StructuralHash hash = new StructuralHash();
+		final List<Cone> cones = new ArrayList<Cone>(a.formulas.size());
+		for (final AssignmentStatement f : a.formulas) {
+			final AssignmentStatement g = outputs.get(f.outputVar.identifier);
+			if (g == null) {
+				witnesses.put(f.outputVar.identifier, new TreeMap<String,Boolean>());
+			} else if (hash.canonical(f.expr) == hash.canonical(g.expr)) {
+				witnesses.put(f.outputVar.identifier, null);
+			} else {
+				cones.add(new Cone(f, g));
+			}
+		}
+		
+		// decide the rest, starting the big ones first so that they do not
+		// finish last
+		Collections.sort(cones, new Comparator<Cone>() {
+			@Override
+			public int compare(final Cone x, final Cone y) {
+				return Integer.compare(y.size, x.size);
+			}
+		});
+		ForkJoinTask.invokeAll(cones);
+		for (final Cone c : cones) {
+			witnesses.put(c.f.outputVar.identifier, c.join());
+		}
+		return witnesses;
+	}
+
+	/** The check of one output: computes a witness, or null if equal. */
+	private static final class Cone extends RecursiveTask<SortedMap<String,Boolean>> {
+		private static final long serialVersionUID = 1L;
+
+		final AssignmentStatement f;
+		final AssignmentStatement g;
+		final int size;
+
+		Cone(final AssignmentStatement f, final AssignmentStatement g) {
+			this.f = f;
+			this.g = g;
+			this.size = DetermineInputVars.inputVars(f).size() + DetermineInputVars.inputVars(g).size();
+		}
+
+		@Override
+		protected SortedMap<String,Boolean> compute() {
+			final FProgram a = new FProgram(Collections.singletonList(f));
+			final FProgram b = new FProgram(Collections.singletonList(g));
+			
+			final EquivalenceCache cache = EquivalenceCache.get();
+			final EquivalenceCache.Verdict cached = cache.lookup(a, b);
+			if (cached != null) {
+				if (cached.equivalent) return null;
+				if (cached.counterexample != null) return EquivalenceResult.parse(cached.counterexample);
+				// no witness was kept: decide again to get one
+			}
+			
+			SortedMap<String,Boolean> witness = RandomSimulation.counterexample(a, b);
+			if (witness == null) witness = decide(a, b);
+			cache.record(a, b, new EquivalenceCache.Verdict(witness == null,
+					witness == null ? null : EquivalenceResult.describe(witness)));
+			return witness;
+		}
+	}
+
+	/** An input on which a and b differ, or null if they are equivalent. */
+	static SortedMap<String,Boolean> decide(final FProgram a, final FProgram b) {
+		// try BDDs first: usually milliseconds
+		try {
+			return BDDEquivalence.counterexample(a, b);
+		} catch (final BDD.NodeLimitException e) {
+			// too big: fall back to SAT
+		}
+		
+		// now the hard part ...
+		// sweep the two with SAT, merging internal equivalences on the way
+		return Fraig.counterexample(a, b);
+	}
+}
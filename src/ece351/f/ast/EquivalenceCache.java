@@ -0,0 +1,270 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.ast;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ece351.common.ast.AssignmentStatement;
+
+/**
+ * Content-addressed cache of equivalence verdicts.
+ * 
+ * The key of a pair of FPrograms is the SHA-256 of their canonical text:
+ * each formula with its expression interned and printed (so n-ary
+ * children are in their sorted order), formulas sorted by output name,
+ * and the two programs in lexicographic order so that the question is
+ * symmetric. Entries are evicted in least-recently-used order once
+ * there are more than the capacity.
+ * 
+ * The cache always lives in memory. If the system property
+ * ece351.equivalence.cache names a file, the cache is also loaded from
+ * and appended to that file, so verdicts survive across runs. The file is
+ * compacted when it has grown to twice the capacity. The capacity can be
+ * set with ece351.equivalence.cache.size.
+ * 
+ * The file is only an optimization, so trouble with it never fails a
+ * check: a file with damaged lines is rewritten with the entries that
+ * could be read, and an unreadable or unwritable file leaves the cache in
+ * memory only. The first such problem is reported on System.err.
+ */
+public final class EquivalenceCache {
+
+	/** A cached answer, with a counterexample if the programs differ. */
+	public static final class Verdict {
+		public final boolean equivalent;
+		/** Inputs on which the programs differ, e.g. "a=1 b=0"; may be null. */
+		public final String counterexample;
+
+		public Verdict(final boolean equivalent, final String counterexample) {
+			this.equivalent = equivalent;
+			this.counterexample = counterexample;
+		}
+	}
+
+	public static final String FILE_PROPERTY = "ece351.equivalence.cache";
+	public static final String SIZE_PROPERTY = "ece351.equivalence.cache.size";
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	private static EquivalenceCache instance = null;
+
+	private final int capacity;
+	private final File file;
+	private final LinkedHashMap<String,Verdict> entries;
+	/** Number of lines in the file, including superseded ones. */
+	private int fileLines = 0;
+	/** Has a problem with the file been reported? */
+	private boolean warned = false;
+
+	EquivalenceCache(final File file, final int capacity) {
+		this.file = file;
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String,Verdict>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String,Verdict> eldest) {
+				return size() > EquivalenceCache.this.capacity;
+			}
+		};
+		if (file != null && file.isFile()) {
+			load();
+		}
+	}
+
+	/** The cache configured by the system properties. */
+	public static synchronized EquivalenceCache get() {
+		if (instance == null) {
+			final String path = System.getProperty(FILE_PROPERTY);
+			final int size = Integer.getInteger(SIZE_PROPERTY, DEFAULT_CAPACITY);
+			instance = new EquivalenceCache(path == null ? null : new File(path), size);
+		}
+		return instance;
+	}
+
+	/** The cached verdict for this pair, or null. */
+	public synchronized Verdict lookup(final FProgram a, final FProgram b) {
+		return entries.get(key(a, b));
+	}
+
+	public synchronized void record(final FProgram a, final FProgram b, final Verdict v) {
+		final String k = key(a, b);
+		entries.put(k, v);
+		if (file != null) {
+			append(k, v);
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/*
+	 * Keys.
+	 */
+
+	static String key(final FProgram a, final FProgram b) {
+		final String x = canonical(a);
+		final String y = canonical(b);
+		final String pair = x.compareTo(y) <= 0 ? x + "\n=?\n" + y : y + "\n=?\n" + x;
+		return sha256(pair);
+	}
+
+	static String canonical(final FProgram p) {
+		final List<String> lines = new ArrayList<String>(p.formulas.size());
+		for (final AssignmentStatement f : p.formulas) {
+			lines.add(f.outputVar.identifier + "<=" + f.expr.intern());
+		}
+		Collections.sort(lines);
+		final StringBuilder b = new StringBuilder();
+		for (final String line : lines) {
+			b.append(line);
+			b.append('\n');
+		}
+		return b.toString();
+	}
+
+	private static String sha256(final String s) {
+		try {
+			final byte[] d = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+			final StringBuilder b = new StringBuilder(2 * d.length);
+			for (final byte x : d) {
+				b.append(Character.forDigit((x >> 4) & 0xf, 16));
+				b.append(Character.forDigit(x & 0xf, 16));
+			}
+			return b.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * Persistence: one entry per line, "key verdict [counterexample]".
+	 * Later lines supersede earlier ones for the same key.
+	 */
+
+	private void load() {
+		boolean damaged = false;
+		try {
+			final BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+			try {
+				String line;
+				while ((line = r.readLine()) != null) {
+					fileLines++;
+					final String[] parts = line.split(" ", 3);
+					if (parts.length < 2 || !isKey(parts[0]) || !parts[1].matches("[01]")) {
+						damaged = true;
+						continue;
+					}
+					final boolean equivalent = parts[1].equals("1");
+					entries.put(parts[0], new Verdict(equivalent, parts.length > 2 ? parts[2] : null));
+				}
+			} finally {
+				r.close();
+			}
+		} catch (final IOException e) {
+			// an unreadable cache is just an empty cache
+			warn("cannot read it: " + e.getMessage());
+			entries.clear();
+			damaged = true;
+		}
+		if (damaged) {
+			warn("damaged; rewriting it with the " + entries.size() + " entries that could be read");
+			compact();
+		}
+	}
+
+	private void append(final String k, final Verdict v) {
+		if (fileLines >= 2 * capacity) {
+			compact();
+			return;
+		}
+		try {
+			final PrintWriter w = writer(file, true);
+			w.println(line(k, v));
+			w.close();
+			fileLines++;
+		} catch (final IOException e) {
+			// persistence is best effort
+			warn("cannot write it: " + e.getMessage());
+		}
+	}
+
+	/** Rewrite the file with only the live entries, oldest first. */
+	private void compact() {
+		try {
+			final File tmp = new File(file.getPath() + ".tmp");
+			final PrintWriter w = writer(tmp, false);
+			for (final Map.Entry<String,Verdict> e : entries.entrySet()) {
+				w.println(line(e.getKey(), e.getValue()));
+			}
+			w.close();
+			if (!tmp.renameTo(file)) {
+				file.delete();
+				if (!tmp.renameTo(file)) throw new IOException("cannot replace it with " + tmp);
+			}
+			fileLines = entries.size();
+		} catch (final IOException e) {
+			// persistence is best effort
+			warn("cannot rewrite it: " + e.getMessage());
+		}
+	}
+
+	/** Report the first problem with the file. */
+	private void warn(final String problem) {
+		if (warned) return;
+		warned = true;
+		System.err.println("equivalence cache " + file + ": " + problem + "; verdicts may not be kept");
+	}
+
+	/** Is s a key, as made by key()? */
+	private static boolean isKey(final String s) {
+		return s.matches("[0-9a-f]{64}");
+	}
+
+	private static PrintWriter writer(final File f, final boolean append) throws IOException {
+		if (f.getParentFile() != null) { f.getParentFile().mkdirs(); }
+		return new PrintWriter(new OutputStreamWriter(new FileOutputStream(f, append), StandardCharsets.UTF_8));
+	}
+
+	private static String line(final String k, final Verdict v) {
+		return k + " " + (v.equivalent ? "1" : "0") + (v.counterexample == null ? "" : " " + v.counterexample);
+	}
+}
@@ -0,0 +1,166 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.ast;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.parboiled.common.ImmutableList;
+
+import ece351.common.ast.VarExpr;
+import ece351.f.analysis.DetermineInputVars;
+import ece351.f.sim.BitParallelSimulator;
+import ece351.w.ast.WProgram;
+import ece351.w.ast.Waveform;
+
+/**
+ * The answer to an equivalence question about two FPrograms. When they
+ * differ, it holds an input on which they differ and the outputs that
+ * differ on it. The input can be emitted as a WProgram of one time step,
+ * to replay the failure in the simulator or to keep it as a regression
+ * input.
+ */
+public final class EquivalenceResult {
+
+	public static final EquivalenceResult EQUIVALENT = new EquivalenceResult(true, null, new TreeSet<String>());
+
+	public final boolean equivalent;
+	/**
+	 * A value for every input of either program on which they differ. Null
+	 * if the programs are equivalent, or if they have different outputs.
+	 */
+	public final SortedMap<String,Boolean> inputs;
+	/**
+	 * The outputs that differ on the inputs, or that only one of the
+	 * programs has. Empty if the programs are equivalent.
+	 */
+	public final SortedSet<String> differingOutputs;
+
+	private EquivalenceResult(final boolean equivalent, final SortedMap<String,Boolean> inputs,
+			final SortedSet<String> differingOutputs) {
+		this.equivalent = equivalent;
+		this.inputs = inputs == null ? null : Collections.unmodifiableSortedMap(inputs);
+		this.differingOutputs = Collections.unmodifiableSortedSet(differingOutputs);
+	}
+
+	/** The programs do not even have the same outputs. */
+	static EquivalenceResult differentOutputs(final FProgram a, final FProgram b) {
+		final Set<VarExpr> x = a.outputVars();
+		final Set<VarExpr> y = b.outputVars();
+		final SortedSet<String> differing = new TreeSet<String>();
+		for (final VarExpr v : x) {
+			if (!y.contains(v)) differing.add(v.identifier);
+		}
+		for (final VarExpr v : y) {
+			if (!x.contains(v)) differing.add(v.identifier);
+		}
+		return new EquivalenceResult(false, null, differing);
+	}
+
+	/**
+	 * The programs differ on the given witness. Inputs it does not mention
+	 * are taken to be false. The programs must have the same outputs.
+	 */
+	static EquivalenceResult counterexample(final FProgram a, final FProgram b, final Map<String,Boolean> witness) {
+		final SortedMap<String,Boolean> inputs = new TreeMap<String,Boolean>();
+		for (final String v : DetermineInputVars.inputVars(a)) {
+			inputs.put(v, Boolean.TRUE.equals(witness.get(v)));
+		}
+		for (final String v : DetermineInputVars.inputVars(b)) {
+			inputs.put(v, Boolean.TRUE.equals(witness.get(v)));
+		}
+		
+		// evaluate every output on the one vector
+		final Map<String,Long> words = new HashMap<String,Long>();
+		for (final Map.Entry<String,Boolean> e : inputs.entrySet()) {
+			words.put(e.getKey(), e.getValue() ? -1L : 0L);
+		}
+		final BitParallelSimulator simA = new BitParallelSimulator(a);
+		final BitParallelSimulator simB = new BitParallelSimulator(b);
+		final long[] x = simA.evaluate(words);
+		final long[] y = simB.evaluate(words);
+		final Map<String,Long> values = new HashMap<String,Long>();
+		for (int o = 0; o < y.length; o++) {
+			values.put(simB.outputs().get(o), y[o]);
+		}
+		final SortedSet<String> differing = new TreeSet<String>();
+		for (int o = 0; o < x.length; o++) {
+			final Long other = values.get(simA.outputs().get(o));
+			if (other == null || other != x[o]) {
+				differing.add(simA.outputs().get(o));
+			}
+		}
+		return new EquivalenceResult(false, inputs, differing);
+	}
+
+	/**
+	 * The distinguishing input, as one waveform of one time step per input.
+	 * @throws IllegalStateException if there is no distinguishing input
+	 */
+	public WProgram toWProgram() {
+		if (inputs == null) throw new IllegalStateException("no distinguishing input: " + this);
+		WProgram w = new WProgram();
+		for (final Map.Entry<String,Boolean> e : inputs.entrySet()) {
+			w = w.append(new Waveform(ImmutableList.of(e.getValue() ? "1" : "0"), e.getKey()));
+		}
+		return w;
+	}
+
+	@Override
+	public String toString() {
+		if (equivalent) return "equivalent";
+		if (inputs == null) return "different outputs: " + differingOutputs;
+		return "outputs " + differingOutputs + " differ on " + describe(inputs);
+	}
+
+	/** e.g. "a=1 b=0" */
+	static String describe(final Map<String,Boolean> assignment) {
+		final StringBuilder b = new StringBuilder();
+		for (final Map.Entry<String,Boolean> e : assignment.entrySet()) {
+			if (b.length() > 0) b.append(' ');
+			b.append(e.getKey()).append('=').append(e.getValue() ? '1' : '0');
+		}
+		return b.toString();
+	}
+
+	/** Inverse of describe(). */
+	static SortedMap<String,Boolean> parse(final String assignment) {
+		final SortedMap<String,Boolean> m = new TreeMap<String,Boolean>();
+		for (final String s : assignment.split(" ")) {
+			if (s.isEmpty()) continue;
+			final int eq = s.lastIndexOf('=');
+			m.put(s.substring(0, eq), s.charAt(eq + 1) == '1');
+		}
+		return m;
+	}
+}
@@ -29,15 +29,24 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeSet;
 
 import org.parboiled.common.ImmutableList;
 
 import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.Expr;
 import ece351.common.ast.VarExpr;
+import ece351.f.aig.AIG;
+import ece351.f.aig.Balance;
+import ece351.f.aig.Rewrite;
+import ece351.f.analysis.DepthCounter;
+import ece351.f.sim.RandomSimulation;
+import ece351.f.simplifier.Cover;
+import ece351.f.simplifier.Espresso;
+import ece351.util.CommandLine.FSimplifierOptions;
 import ece351.util.Examinable;
 import ece351.util.Examiner;
-import ece351.util.RunAlloy351;
 
 
 public final class FProgram implements Examinable {
@@ -107,14 +116,73 @@ public final class FProgram implements Examinable {
 		return new FProgram(result);
 	}
 
+    /**
+     * Simplify each formula. Formulas that are already in two-level
+     * (sum-of-products) form first have their two-level rewrites applied
+     * on a bitset Cover, which is much cheaper than on the AST;
+     * Expr.simplify() then finishes the job.
+     */
     public FProgram simplify() {
     	final List<AssignmentStatement> newformulas = new ArrayList<AssignmentStatement>(formulas.size());
     	for (final AssignmentStatement f : formulas) {
-    		newformulas.add(f.simplify());
+    		final Cover cover = Cover.fromExpr(f.expr);
+    		if (cover != null) {
+    			final Expr e = cover.removeContained().toExpr();
+    			newformulas.add(new AssignmentStatement(f.outputVar, e).simplify());
+    		} else {
+    			newformulas.add(f.simplify());
+    		}
     	}
     	return new FProgram(newformulas);
     }
     
+    /**
+     * Simplify according to the optimization level selected on the command
+     * line. With MINIMIZATION (-o5), each formula that is in two-level form
+     * after simplify() is further minimized by Espresso. With REWRITING
+     * (-o6) the program goes through an AIG that is rewritten to fewer
+     * nodes, and the result is only kept if it is no deeper, as measured by
+     * DepthCounter. With BALANCING (-o7) the AIG is also balanced for depth
+     * and comes back as nested two-input ands and ors, which DepthCounter
+     * would count as deeper than one wide gate: that result is kept if its
+     * AIG is no deeper than the AIG of the program, which is what
+     * TechnologyMapper maps.
+     */
+    public FProgram simplify(final Set<FSimplifierOptions> opts) {
+    	FProgram p = simplify();
+    	if (opts.contains(FSimplifierOptions.MINIMIZATION)) p = p.minimize();
+    	if (opts.contains(FSimplifierOptions.REWRITING) || opts.contains(FSimplifierOptions.BALANCING)) {
+    		AIG aig = AIG.fromFProgram(p);
+    		if (opts.contains(FSimplifierOptions.REWRITING)) aig = Rewrite.rewrite(aig);
+    		if (opts.contains(FSimplifierOptions.BALANCING)) {
+    			aig = Balance.balance(aig);
+    			if (aig.depth() <= AIG.fromFProgram(p).depth()) p = aig.toFProgram(false);
+    		} else {
+    			final FProgram q = aig.toFProgram();
+    			if (DepthCounter.measureFProgram(q) <= DepthCounter.measureFProgram(p)) p = q;
+    		}
+    	}
+    	return p;
+    }
+
+    /**
+     * Run the two-level minimizer on every formula that is a sum of
+     * products; other formulas are left as they are.
+     */
+    public FProgram minimize() {
+    	final List<AssignmentStatement> newformulas = new ArrayList<AssignmentStatement>(formulas.size());
+    	for (final AssignmentStatement f : formulas) {
+    		final Cover cover = Cover.fromExpr(f.expr);
+    		if (cover != null) {
+    			final Expr e = Espresso.minimize(cover).toExpr();
+    			newformulas.add(new AssignmentStatement(f.outputVar, e).simplify());
+    		} else {
+    			newformulas.add(f);
+    		}
+    	}
+    	return new FProgram(newformulas);
+    }
+
     public Set<VarExpr> outputVars() {
     	final Set<VarExpr> vars = new TreeSet<VarExpr>();
     	for (final AssignmentStatement f : formulas) {
@@ -168,8 +236,15 @@ public final class FProgram implements Examinable {
 	}
 
 	/**
-	 * Check that two FPrograms are equivalent by translating them to SAT
-	 * and asking a SAT solver to compute the answer.
+	 * Check that two FPrograms are equivalent. First both programs are
+	 * simulated on a few thousand input vectors, which is enough to tell
+	 * most different programs apart. Otherwise each output is decided on
+	 * its own cone of influence, in parallel, by ConeEquivalence: with
+	 * BDDs if they stay small, and by SAT sweeping an AIG of the two if
+	 * not. Verdicts are remembered in the EquivalenceCache.
+	 * Use check() to learn where the programs differ.
+	 * (AlloyConverter and RunAlloy351 remain available for checking the
+	 * same question through Alloy.)
 	 */
 	@Override
 	public boolean equivalent(final Examinable obj) {
@@ -192,14 +267,38 @@ public final class FProgram implements Examinable {
 		// of them might be effectively do not care
 		// so do not need to check input vars
 		
-		// generate the Alloy specification
-		// (will be translated to SAT in the next step)
-		final String alloy = AlloyConverter.convert(this, that);
-
-		// now the hard part ...
-		// ask a SAT solver if these two FPrograms are equivalent
-		final boolean result = !RunAlloy351.check(alloy);
-		return result;
+		return check(that).equivalent;
+	}
+	
+	/**
+	 * Like equivalent(), but when the programs differ the result says on
+	 * which input and on which outputs.
+	 */
+	public EquivalenceResult check(final FProgram that) {
+		if (!this.outputVars().equals(that.outputVars())) {
+			return EquivalenceResult.differentOutputs(this, that);
+		}
+		
+		// asked before?
+		final EquivalenceCache cache = EquivalenceCache.get();
+		final EquivalenceCache.Verdict cached = cache.lookup(this, that);
+		if (cached != null) {
+			if (cached.equivalent) return EquivalenceResult.EQUIVALENT;
+			if (cached.counterexample != null) {
+				return EquivalenceResult.counterexample(this, that, EquivalenceResult.parse(cached.counterexample));
+			}
+			// no witness was kept: decide again to get one
+		}
+		
+		// cheap search for a distinguishing input first
+		SortedMap<String,Boolean> witness = RandomSimulation.counterexample(this, that);
+		if (witness == null) witness = ConeEquivalence.counterexample(this, that);
+		if (witness == null) {
+			cache.record(this, that, new EquivalenceCache.Verdict(true, null));
+			return EquivalenceResult.EQUIVALENT;
+		}
+		cache.record(this, that, new EquivalenceCache.Verdict(false, EquivalenceResult.describe(witness)));
+		return EquivalenceResult.counterexample(this, that, witness);
 	}
 
 }
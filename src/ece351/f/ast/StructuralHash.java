@@ -0,0 +1,126 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.ast;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.BinaryExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+
+/**
+ * Puts expressions into a structural normal form and interns them, so
+ * that two cones written the same way up to operand order and grouping
+ * end up as the same object, and can be proved equal by comparing
+ * references. Only rewrites that are obviously sound are applied, and
+ * nothing is simplified:
+ * <ul>
+ * <li>binary and/or become n-ary, nested n-ary nodes of the same
+ *     operator are flattened, and n-ary children are sorted;</li>
+ * <li>nand/nor become the negation of n-ary and/or, and = becomes xnor;</li>
+ * <li>the operands of xor and xnor are put in sorted order;</li>
+ * <li>double negations are removed.</li>
+ * </ul>
+ * Results are memoized by identity, so one instance should be used for
+ * both sides of a comparison.
+ */
+final class StructuralHash {
+
+	private final Map<Expr,Expr> memo = new IdentityHashMap<Expr,Expr>();
+
+	Expr canonical(final Expr e) {
+		final Expr cached = memo.get(e);
+		if (cached != null) return cached;
+		final Expr r = normalize(e).intern();
+		memo.put(e, r);
+		return r;
+	}
+
+	private Expr normalize(final Expr e) {
+		if (e instanceof NotExpr) {
+			final Expr c = canonical(((NotExpr) e).expr);
+			if (c instanceof NotExpr) return ((NotExpr) c).expr;
+			return new NotExpr(c);
+		} else if (e instanceof AndExpr || e instanceof NaryAndExpr) {
+			return new NaryAndExpr(flatten(e, NaryAndExpr.class));
+		} else if (e instanceof OrExpr || e instanceof NaryOrExpr) {
+			return new NaryOrExpr(flatten(e, NaryOrExpr.class));
+		} else if (e instanceof NAndExpr) {
+			return new NotExpr(new NaryAndExpr(flatten(e, NaryAndExpr.class)).intern());
+		} else if (e instanceof NOrExpr) {
+			return new NotExpr(new NaryOrExpr(flatten(e, NaryOrExpr.class)).intern());
+		} else if (e instanceof XOrExpr || e instanceof XNOrExpr || e instanceof EqualExpr) {
+			final BinaryExpr b = (BinaryExpr) e;
+			Expr l = canonical(b.left);
+			Expr r = canonical(b.right);
+			if (l.compareTo(r) > 0) {
+				final Expr t = l;
+				l = r;
+				r = t;
+			}
+			return e instanceof XOrExpr ? new XOrExpr(l, r) : new XNOrExpr(l, r);
+		} else {
+			// variables and constants
+			return e;
+		}
+	}
+
+	/** Canonical operands of e, with nested nodes of the given class spliced in. */
+	private List<Expr> flatten(final Expr e, final Class<? extends NaryExpr> op) {
+		final List<Expr> operands = new ArrayList<Expr>();
+		if (e instanceof BinaryExpr) {
+			operands.add(canonical(((BinaryExpr) e).left));
+			operands.add(canonical(((BinaryExpr) e).right));
+		} else {
+			for (final Expr c : ((NaryExpr) e).children) {
+				operands.add(canonical(c));
+			}
+		}
+		final List<Expr> flat = new ArrayList<Expr>(operands.size());
+		for (final Expr c : operands) {
+			if (op.isInstance(c)) {
+				flat.addAll(((NaryExpr) c).children);
+			} else {
+				flat.add(c);
+			}
+		}
+		return flat;
+	}
+}
@@ -0,0 +1,78 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+import ece351.util.CommandLine;
+import ece351.util.TestInputs351;
+
+public class TestConeEquivalence extends BaseTest351 {
+
+	@Test
+	public void testPerOutputVerdicts() {
+		final FProgram a = FRecursiveDescentParser.parse("x <= a and b; y <= c or d; z <= a and not e;");
+		final FProgram b = FRecursiveDescentParser.parse("x <= b and a; y <= c and d; z <= not (not a or e);");
+		final SortedMap<String,Boolean> v = ConeEquivalence.verdicts(a, b);
+		assertEquals(3, v.size());
+		assertTrue(v.get("x"));
+		assertFalse(v.get("y"));
+		assertTrue(v.get("z"));
+		assertFalse(ConeEquivalence.equivalent(a, b));
+		assertFalse(a.equivalent(b));
+	}
+
+	@Test
+	public void testMissingOutput() {
+		final FProgram a = FRecursiveDescentParser.parse("x <= a; y <= b;");
+		final FProgram b = FRecursiveDescentParser.parse("x <= a; w <= b;");
+		final SortedMap<String,Boolean> v = ConeEquivalence.verdicts(a, b);
+		assertTrue(v.get("x"));
+		assertFalse(v.get("y"));
+	}
+
+	@Test
+	public void testFormulaFiles() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final CommandLine c = new CommandLine("-h", f.getAbsolutePath());
+			final FProgram original = FRecursiveDescentParser.parse(c.readInputSpec());
+			final SortedMap<String,Boolean> v = ConeEquivalence.verdicts(original, original.simplify());
+			assertEquals(f.getName(), original.formulas.size(), v.size());
+			assertFalse(f.getName(), v.containsValue(Boolean.FALSE));
+		}
+	}
+}
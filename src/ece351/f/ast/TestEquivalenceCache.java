@@ -0,0 +1,149 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.util.BaseTest351;
+
+public class TestEquivalenceCache extends BaseTest351 {
+
+	private static FProgram program(final Expr e) {
+		final List<AssignmentStatement> formulas = new ArrayList<AssignmentStatement>();
+		formulas.add(new AssignmentStatement(new VarExpr("x"), e));
+		return new FProgram(formulas);
+	}
+
+	private static final VarExpr a = new VarExpr("a");
+	private static final VarExpr b = new VarExpr("b");
+	private static final VarExpr c = new VarExpr("c");
+
+	@Test
+	public void testKey() {
+		final FProgram p = program(new NaryOrExpr(a, b));
+		final FProgram q = program(new NaryOrExpr(b, a));
+		final FProgram r = program(new NaryAndExpr(a, b));
+		// child order does not matter, and neither does argument order
+		assertEquals(EquivalenceCache.key(p, r), EquivalenceCache.key(q, r));
+		assertEquals(EquivalenceCache.key(p, r), EquivalenceCache.key(r, p));
+		assertFalse(EquivalenceCache.key(p, r).equals(EquivalenceCache.key(p, p)));
+	}
+
+	@Test
+	public void testEviction() {
+		final EquivalenceCache cache = new EquivalenceCache(null, 2);
+		final FProgram p = program(a);
+		final FProgram q = program(b);
+		final FProgram r = program(c);
+		cache.record(p, q, new EquivalenceCache.Verdict(false, "a=1 b=0"));
+		cache.record(p, r, new EquivalenceCache.Verdict(false, null));
+		// touch (p,q) so that (p,r) is the least recently used
+		assertNotNull(cache.lookup(p, q));
+		cache.record(q, r, new EquivalenceCache.Verdict(false, null));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.lookup(q, p));
+		assertNull(cache.lookup(p, r));
+		assertEquals("a=1 b=0", cache.lookup(p, q).counterexample);
+	}
+
+	@Test
+	public void testPersistence() throws IOException {
+		final File file = File.createTempFile("equivalence", ".cache");
+		file.deleteOnExit();
+		final FProgram p = program(new NaryOrExpr(a, b));
+		final FProgram q = program(new NaryOrExpr(b, a));
+		final FProgram r = program(c);
+		final EquivalenceCache first = new EquivalenceCache(file, 10);
+		first.record(p, q, new EquivalenceCache.Verdict(true, null));
+		first.record(p, r, new EquivalenceCache.Verdict(false, "a=1 b=0 c=0"));
+		
+		final EquivalenceCache second = new EquivalenceCache(file, 10);
+		assertEquals(2, second.size());
+		assertTrue(second.lookup(q, p).equivalent);
+		assertFalse(second.lookup(r, p).equivalent);
+		assertEquals("a=1 b=0 c=0", second.lookup(r, p).counterexample);
+		
+		// overwrite the same entry many times: the file is compacted
+		for (int i = 0; i < 50; i++) {
+			second.record(p, q, new EquivalenceCache.Verdict(true, null));
+		}
+		final EquivalenceCache third = new EquivalenceCache(file, 10);
+		assertEquals(2, third.size());
+		assertTrue(file.length() < 50 * 64);
+	}
+
+	/** Damaged lines are dropped, and the file is rewritten without them. */
+	@Test
+	public void testCorruptFile() throws IOException {
+		final File file = File.createTempFile("equivalence", ".cache");
+		file.deleteOnExit();
+		final FProgram p = program(a);
+		final FProgram q = program(b);
+		new EquivalenceCache(file, 10).record(p, q, new EquivalenceCache.Verdict(false, "a=1 b=0"));
+		final Writer w = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+		w.write("garbage\n" + EquivalenceCache.key(p, p) + " maybe\nzz 1\n\u0000\u0001\n");
+		w.close();
+		
+		final EquivalenceCache cache = new EquivalenceCache(file, 10);
+		assertEquals(1, cache.size());
+		assertEquals("a=1 b=0", cache.lookup(q, p).counterexample);
+		final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0).startsWith(EquivalenceCache.key(p, q)));
+	}
+
+	/** A cache whose file cannot be written still works in memory. */
+	@Test
+	public void testUnwritableFile() throws IOException {
+		final File parent = File.createTempFile("equivalence", ".cache");
+		parent.deleteOnExit();
+		final EquivalenceCache cache = new EquivalenceCache(new File(parent, "cache"), 10);
+		cache.record(program(a), program(b), new EquivalenceCache.Verdict(true, null));
+		assertTrue(cache.lookup(program(b), program(a)).equivalent);
+	}
+}
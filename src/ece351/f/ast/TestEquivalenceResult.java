@@ -0,0 +1,111 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+import ece351.util.TestInputs351;
+import ece351.util.TestPrograms351;
+import ece351.w.ast.WProgram;
+
+public class TestEquivalenceResult extends BaseTest351 {
+
+	@Test
+	public void testEquivalent() {
+		final FProgram a = FRecursiveDescentParser.parse("x <= a and (b or c);");
+		final FProgram b = FRecursiveDescentParser.parse("x <= (a and b) or (c and a);");
+		assertSame(EquivalenceResult.EQUIVALENT, a.check(b));
+	}
+
+	@Test
+	public void testCounterexample() {
+		final FProgram a = FRecursiveDescentParser.parse("x <= a and b; y <= a or c; z <= not c;");
+		final FProgram b = FRecursiveDescentParser.parse("x <= a and b; y <= (a or c) and not (a and c); z <= not c;");
+		final EquivalenceResult r = a.check(b);
+		assertFalse(r.equivalent);
+		// y differs exactly when a and c are both true
+		assertEquals("[y]", r.differingOutputs.toString());
+		assertTrue(r.inputs.get("a"));
+		assertTrue(r.inputs.get("c"));
+		assertEquals(3, r.inputs.size());
+		
+		// as a W program, ready for the simulator
+		final WProgram w = r.toWProgram();
+		assertEquals(1, w.timeCount());
+		assertEquals(3, w.waveforms.size());
+		assertTrue(w.valueAtTime("a", 0));
+		assertTrue(w.valueAtTime("c", 0));
+		
+		// asking again gets the same answer from the cache
+		assertEquals(r.toString(), a.check(b).toString());
+	}
+
+	@Test
+	public void testDifferentOutputs() {
+		final FProgram a = FRecursiveDescentParser.parse("x <= a; y <= b;");
+		final FProgram b = FRecursiveDescentParser.parse("x <= a; z <= b;");
+		final EquivalenceResult r = a.check(b);
+		assertFalse(r.equivalent);
+		assertNull(r.inputs);
+		assertEquals("[y, z]", r.differingOutputs.toString());
+	}
+
+	/** On every test input, a negated first output is reported as the difference. */
+	@Test
+	public void testNegatedOutput() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final FProgram original = TestPrograms351.parse(f);
+			final FProgram negated = TestPrograms351.negateFirstOutput(original);
+			final EquivalenceResult r = original.check(negated);
+			assertFalse(f.getName(), r.equivalent);
+			assertTrue(f.getName(), r.differingOutputs.contains(original.formulas.get(0).outputVar.identifier));
+		}
+	}
+
+	@Test
+	public void testDescribe() {
+		final SortedMap<String,Boolean> m = new TreeMap<String,Boolean>();
+		m.put("a", true);
+		m.put("b", false);
+		assertEquals("a=1 b=0", EquivalenceResult.describe(m));
+		assertEquals(m, EquivalenceResult.parse("a=1 b=0"));
+		assertTrue(EquivalenceResult.parse("").isEmpty());
+	}
+}
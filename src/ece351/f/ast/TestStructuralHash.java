@@ -0,0 +1,73 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.ast;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import ece351.common.ast.Expr;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+
+public class TestStructuralHash extends BaseTest351 {
+
+	private static Expr expr(final String formula) {
+		return FRecursiveDescentParser.parse("x <= " + formula + ";").formulas.get(0).expr;
+	}
+
+	private static void assertMatch(final String a, final String b) {
+		final StructuralHash h = new StructuralHash();
+		assertSame(a + " vs " + b, h.canonical(expr(a)), h.canonical(expr(b)));
+	}
+
+	@Test
+	public void testIdentical() {
+		assertMatch("(a and b) or not c", "not c or (b and a)");
+		assertMatch("a and (b and c)", "(c and a) and b");
+		assertMatch("not not a or b", "b or a");
+		assertMatch("not (a and b)", "not (b and a)");
+	}
+
+	@Test
+	public void testDifferent() {
+		final StructuralHash h = new StructuralHash();
+		// equivalent, but not structurally: left to the solvers
+		assertNotSame(h.canonical(expr("a or (a and b)")), h.canonical(expr("a")));
+		assertNotSame(h.canonical(expr("a and b")), h.canonical(expr("a or b")));
+		assertNotSame(h.canonical(expr("a and (b or c)")), h.canonical(expr("(a and b) or c")));
+	}
+
+	@Test
+	public void testVerdicts() {
+		final FProgram a = FRecursiveDescentParser.parse("x <= a and b; y <= c or (d and e);");
+		final FProgram b = FRecursiveDescentParser.parse("x <= b and a; y <= (e and d) or c;");
+		assertSame(Boolean.TRUE, ConeEquivalence.verdicts(a, b).get("x"));
+		assertSame(Boolean.TRUE, ConeEquivalence.verdicts(a, b).get("y"));
+	}
+}
@@ -0,0 +1,595 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.bdd;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Reduced ordered binary decision diagrams.
+ * 
+ * Nodes are integers indexing parallel arrays (variable, low child,
+ * high child). Node 0 is the constant false and node 1 the constant
+ * true. A unique table guarantees that each (variable, low, high) triple
+ * is stored once, so two functions are equal exactly when their nodes
+ * are the same integer. Results of ite() are memoized in a direct-mapped
+ * computed cache.
+ * 
+ * Variables are numbered 0..n-1. Their order in the diagram is given by a
+ * separate level mapping, which the client may choose when the manager is
+ * created.
+ * 
+ * The order can be improved later by sifting (Rudell): each variable in
+ * turn is moved through every level by swapping adjacent levels in place,
+ * and left where the diagram was smallest. Node identities survive
+ * reordering, so clients' node numbers remain valid. Sifting runs on
+ * request, or automatically when the number of live nodes has doubled.
+ * 
+ * Memory is reclaimed by mark and sweep. The roots are the nodes that the
+ * client has protected with ref(); everything else may be collected at
+ * the start of the next top-level operation. Intermediate results of an
+ * operation in progress are never collected.
+ */
+public final class BDD {
+
+	public static final int FALSE = 0;
+	public static final int TRUE = 1;
+
+	/** Thrown when an operation would need more than the allowed number of nodes. */
+	public static final class NodeLimitException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		NodeLimitException(final int limit) {
+			super("BDD node limit exceeded: " + limit);
+		}
+	}
+
+	private static final int INITIAL_NODES = 1 << 10;
+	private static final int CACHE_SIZE = 1 << 16;
+
+	/** Number of variables. */
+	public final int varCount;
+
+	/** Maximum number of live nodes before NodeLimitException is thrown. */
+	private final int nodeLimit;
+
+	/** Variable at each level, and level of each variable. */
+	private final int[] level2var, var2level;
+
+	// node storage
+	private int[] var, low, high, next, refs;
+	private boolean[] marked;
+	/** Number of array slots in use (live or on the free list). */
+	private int used;
+	/** Head of the free list, or -1. */
+	private int free = -1;
+	private int freeCount = 0;
+	/** Nodes created since the last collection. */
+	private int created = 0;
+
+	// unique table: bucket heads, chained through next[]
+	private int[] buckets;
+
+	// computed cache for ite
+	private final int[] cacheF, cacheG, cacheH, cacheR;
+
+	// dynamic reordering
+	private boolean autoReorder = false;
+	private int reorderThreshold = 1 << 12;
+	/** Sifting stops moving a variable once the diagram grows by this factor. */
+	private static final double MAX_GROWTH = 1.2;
+	/** Reference counts (parents plus external refs), only while sifting. */
+	private int[] rc;
+	/** Nodes labelled with each variable (possibly stale), only while sifting. */
+	private int[][] varNodes;
+	private int[] varNodeCount;
+
+	/** Create a manager with the identity variable order. */
+	public BDD(final int varCount) {
+		this(identity(varCount), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param order order[i] is the variable at level i (the root is level 0)
+	 * @param nodeLimit maximum number of live nodes
+	 */
+	public BDD(final int[] order, final int nodeLimit) {
+		this.varCount = order.length;
+		this.nodeLimit = nodeLimit;
+		this.level2var = order.clone();
+		this.var2level = new int[varCount];
+		Arrays.fill(var2level, -1);
+		for (int i = 0; i < varCount; i++) {
+			assert var2level[order[i]] == -1 : "variable appears twice in order";
+			var2level[order[i]] = i;
+		}
+		var = new int[INITIAL_NODES];
+		low = new int[INITIAL_NODES];
+		high = new int[INITIAL_NODES];
+		next = new int[INITIAL_NODES];
+		refs = new int[INITIAL_NODES];
+		marked = new boolean[INITIAL_NODES];
+		buckets = new int[INITIAL_NODES];
+		Arrays.fill(buckets, -1);
+		cacheF = new int[CACHE_SIZE];
+		cacheG = new int[CACHE_SIZE];
+		cacheH = new int[CACHE_SIZE];
+		cacheR = new int[CACHE_SIZE];
+		Arrays.fill(cacheF, -1);
+		// terminals
+		for (int t = FALSE; t <= TRUE; t++) {
+			var[t] = varCount;
+			low[t] = high[t] = t;
+			refs[t] = 1;
+		}
+		used = 2;
+	}
+
+	static int[] identity(final int n) {
+		final int[] order = new int[n];
+		for (int i = 0; i < n; i++) { order[i] = i; }
+		return order;
+	}
+
+	/*
+	 * Node accessors.
+	 */
+
+	public int var(final int f) { return var[f]; }
+	public int low(final int f) { return low[f]; }
+	public int high(final int f) { return high[f]; }
+	public boolean isConstant(final int f) { return f <= TRUE; }
+
+	/** Level of a node in the current order; terminals are below all variables. */
+	public int level(final int f) {
+		return f <= TRUE ? varCount : var2level[var[f]];
+	}
+
+	/** Variable at a level of the current order. */
+	public int varAtLevel(final int level) {
+		return level2var[level];
+	}
+
+	/** The current order: element i is the variable at level i. */
+	public int[] order() {
+		return level2var.clone();
+	}
+
+	/*
+	 * Reference counting for roots.
+	 */
+
+	/** Protect f from garbage collection. Returns f for convenience. */
+	public int ref(final int f) {
+		refs[f]++;
+		return f;
+	}
+
+	/** Release a protection added by ref(). */
+	public void deref(final int f) {
+		assert refs[f] > 0 : "deref of unreferenced node";
+		if (f > TRUE) { refs[f]--; }
+	}
+
+	/*
+	 * Operations.
+	 */
+
+	/** The function that is true exactly when variable v is true. */
+	public int ithVar(final int v) {
+		assert v >= 0 && v < varCount;
+		return mk(v, FALSE, TRUE);
+	}
+
+	public int not(final int f) { return ite(f, FALSE, TRUE); }
+	public int and(final int f, final int g) { return ite(f, g, FALSE); }
+	public int or(final int f, final int g) { return ite(f, TRUE, g); }
+	public int xor(final int f, final int g) { return ite(f, not(g), g); }
+	public int xnor(final int f, final int g) { return ite(f, g, not(g)); }
+	public int nand(final int f, final int g) { return not(and(f, g)); }
+	public int nor(final int f, final int g) { return not(or(f, g)); }
+
+	/** If-then-else: (f and g) or (not f and h). */
+	public int ite(final int f, final int g, final int h) {
+		maybeCollect(f, g, h);
+		return iteRec(f, g, h);
+	}
+
+	private int iteRec(final int f, final int g, final int h) {
+		// terminal cases
+		if (f == TRUE) return g;
+		if (f == FALSE) return h;
+		if (g == h) return g;
+		if (g == TRUE && h == FALSE) return f;
+		
+		// computed cache
+		final int slot = (int) ((f * 12582917L + g * 4256249L + h * 741457L) & (CACHE_SIZE - 1));
+		if (cacheF[slot] == f && cacheG[slot] == g && cacheH[slot] == h) {
+			return cacheR[slot];
+		}
+		
+		// Shannon expansion on the top variable
+		final int top = Math.min(level(f), Math.min(level(g), level(h)));
+		final int v = level2var[top];
+		final int r0 = iteRec(cofactor(f, top, false), cofactor(g, top, false), cofactor(h, top, false));
+		final int r1 = iteRec(cofactor(f, top, true), cofactor(g, top, true), cofactor(h, top, true));
+		final int r = mk(v, r0, r1);
+		
+		cacheF[slot] = f;
+		cacheG[slot] = g;
+		cacheH[slot] = h;
+		cacheR[slot] = r;
+		return r;
+	}
+
+	private int cofactor(final int f, final int level, final boolean value) {
+		if (level(f) != level) return f;
+		return value ? high[f] : low[f];
+	}
+
+	/**
+	 * A satisfying assignment of f: element v is 0 or 1, or -1 if
+	 * variable v does not matter. Returns null if f is unsatisfiable.
+	 */
+	public int[] satOne(final int f) {
+		if (f == FALSE) return null;
+		final int[] a = new int[varCount];
+		Arrays.fill(a, -1);
+		int n = f;
+		while (n > TRUE) {
+			if (low[n] != FALSE) {
+				a[var[n]] = 0;
+				n = low[n];
+			} else {
+				a[var[n]] = 1;
+				n = high[n];
+			}
+		}
+		return a;
+	}
+
+	/** Value of f under a complete assignment. */
+	public boolean evaluate(final int f, final boolean[] assignment) {
+		int n = f;
+		while (n > TRUE) {
+			n = assignment[var[n]] ? high[n] : low[n];
+		}
+		return n == TRUE;
+	}
+
+	/** Number of nodes reachable from f, including terminals. */
+	public int size(final int f) {
+		final int s = mark(f);
+		unmarkAll();
+		return s;
+	}
+
+	/** Number of live (allocated and not free) nodes, including terminals. */
+	public int nodeCount() {
+		return used - freeCount;
+	}
+
+	/*
+	 * Unique table.
+	 */
+
+	/** The node (v, lo, hi), creating it if necessary. */
+	int mk(final int v, final int lo, final int hi) {
+		if (lo == hi) return lo;
+		assert var2level[v] < level(lo) && var2level[v] < level(hi) : "variable order violated";
+		final int b = bucket(v, lo, hi);
+		for (int n = buckets[b]; n >= 0; n = next[n]) {
+			if (var[n] == v && low[n] == lo && high[n] == hi) return n;
+		}
+		final int n = allocate();
+		var[n] = v;
+		low[n] = lo;
+		high[n] = hi;
+		refs[n] = 0;
+		// the table may have been resized by allocate()
+		final int b2 = bucket(v, lo, hi);
+		next[n] = buckets[b2];
+		buckets[b2] = n;
+		created++;
+		return n;
+	}
+
+	private int bucket(final int v, final int lo, final int hi) {
+		return (int) ((v * 12582917L + lo * 4256249L + hi * 741457L) & (buckets.length - 1));
+	}
+
+	private int allocate() {
+		if (free >= 0) {
+			final int n = free;
+			free = next[n];
+			freeCount--;
+			return n;
+		}
+		if (used - freeCount >= nodeLimit && rc == null) {
+			throw new NodeLimitException(nodeLimit);
+		}
+		if (used == var.length) {
+			grow();
+		}
+		return used++;
+	}
+
+	private void grow() {
+		final int n = var.length * 2;
+		var = Arrays.copyOf(var, n);
+		low = Arrays.copyOf(low, n);
+		high = Arrays.copyOf(high, n);
+		next = Arrays.copyOf(next, n);
+		refs = Arrays.copyOf(refs, n);
+		marked = Arrays.copyOf(marked, n);
+		if (rc != null) { rc = Arrays.copyOf(rc, n); }
+		buckets = new int[n];
+		rehash();
+	}
+
+	/** Rebuild the bucket chains from the live nodes. */
+	private void rehash() {
+		Arrays.fill(buckets, -1);
+		for (int n = TRUE + 1; n < used; n++) {
+			if (var[n] < 0) continue; // on the free list
+			final int b = bucket(var[n], low[n], high[n]);
+			next[n] = buckets[b];
+			buckets[b] = n;
+		}
+	}
+
+	/*
+	 * Garbage collection.
+	 */
+
+	/**
+	 * Collect before an operation if many nodes have been created since the
+	 * last collection. The operands are protected for the duration.
+	 */
+	private void maybeCollect(final int f, final int g, final int h) {
+		if (created < var.length / 2 || free >= 0) return;
+		refs[f]++; refs[g]++; refs[h]++;
+		gc();
+		if (autoReorder && nodeCount() > reorderThreshold) {
+			reorder();
+			reorderThreshold = Math.max(reorderThreshold, 2 * nodeCount());
+		}
+		refs[f]--; refs[g]--; refs[h]--;
+	}
+
+	/** Free every node that is not reachable from a referenced node. */
+	public void gc() {
+		for (int n = 0; n < used; n++) {
+			if (refs[n] > 0) { mark(n); }
+		}
+		free = -1;
+		freeCount = 0;
+		for (int n = used - 1; n > TRUE; n--) {
+			if (marked[n]) {
+				marked[n] = false;
+			} else {
+				var[n] = -1;
+				next[n] = free;
+				free = n;
+				freeCount++;
+			}
+		}
+		marked[FALSE] = marked[TRUE] = false;
+		// rehash skips free nodes, so their links in next[] survive
+		rehash();
+		Arrays.fill(cacheF, -1);
+		created = 0;
+	}
+
+	/** Mark the nodes reachable from f; returns the number newly marked. */
+	private int mark(final int f) {
+		if (marked[f]) return 0;
+		marked[f] = true;
+		if (f <= TRUE) return 1;
+		return 1 + mark(low[f]) + mark(high[f]);
+	}
+
+	private void unmarkAll() {
+		Arrays.fill(marked, 0, used, false);
+	}
+
+	/*
+	 * Dynamic reordering.
+	 */
+
+	/**
+	 * Sift automatically at the start of an operation whenever the number
+	 * of live nodes exceeds a threshold, which then doubles.
+	 */
+	public void setAutoReorder(final boolean enabled) {
+		autoReorder = enabled;
+	}
+
+	/** Improve the variable order by sifting every variable once. */
+	public void reorder() {
+		gc();
+		
+		// reference counts from parents and clients
+		rc = new int[var.length];
+		for (int n = TRUE + 1; n < used; n++) {
+			if (var[n] < 0) continue;
+			rc[low[n]]++;
+			rc[high[n]]++;
+			rc[n] += refs[n];
+		}
+		varNodes = new int[varCount][];
+		varNodeCount = new int[varCount];
+		for (int v = 0; v < varCount; v++) { varNodes[v] = new int[8]; }
+		for (int n = TRUE + 1; n < used; n++) {
+			if (var[n] >= 0) { addVarNode(var[n], n); }
+		}
+		
+		// sift the variables with the most nodes first
+		final Integer[] vars = new Integer[varCount];
+		for (int v = 0; v < varCount; v++) { vars[v] = v; }
+		final int[] counts = varNodeCount.clone();
+		Arrays.sort(vars, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Integer.compare(counts[b], counts[a]);
+			}
+		});
+		for (final int v : vars) {
+			siftVar(v);
+		}
+		
+		rc = null;
+		varNodes = null;
+		varNodeCount = null;
+		Arrays.fill(cacheF, -1);
+		created = 0;
+	}
+
+	/** Move v through all levels and leave it where the diagram is smallest. */
+	private void siftVar(final int v) {
+		int level = var2level[v];
+		int best = nodeCount();
+		int bestLevel = level;
+		final boolean downFirst = varCount - 1 - level < level;
+		for (int pass = 0; pass < 2; pass++) {
+			if (downFirst == (pass == 0)) {
+				while (level < varCount - 1) {
+					swap(level++);
+					if (nodeCount() < best) { best = nodeCount(); bestLevel = level; }
+					if (nodeCount() > MAX_GROWTH * best) break;
+				}
+			} else {
+				while (level > 0) {
+					swap(--level);
+					if (nodeCount() < best) { best = nodeCount(); bestLevel = level; }
+					if (nodeCount() > MAX_GROWTH * best) break;
+				}
+			}
+		}
+		while (level < bestLevel) { swap(level++); }
+		while (level > bestLevel) { swap(--level); }
+	}
+
+	/**
+	 * Exchange the variables at levels i and i+1. Nodes of the upper
+	 * variable x that depend on the lower variable y are rewritten in
+	 * place into y nodes over new x nodes, so every node still represents
+	 * the same function. Nodes that lose their last parent are freed.
+	 */
+	private void swap(final int i) {
+		final int x = level2var[i];
+		final int y = level2var[i + 1];
+		final int[] xs = Arrays.copyOf(varNodes[x], varNodeCount[x]);
+		varNodeCount[x] = 0;
+		level2var[i] = y;
+		level2var[i + 1] = x;
+		var2level[y] = i;
+		var2level[x] = i + 1;
+		
+		for (final int n : xs) {
+			if (var[n] != x) continue; // stale entry
+			final int f0 = low[n];
+			final int f1 = high[n];
+			if (var[f0] != y && var[f1] != y) {
+				// does not depend on y: moves down a level unchanged
+				addVarNode(x, n);
+				continue;
+			}
+			final int f00 = var[f0] == y ? low[f0] : f0;
+			final int f01 = var[f0] == y ? high[f0] : f0;
+			final int f10 = var[f1] == y ? low[f1] : f1;
+			final int f11 = var[f1] == y ? high[f1] : f1;
+			final int lo = mkSift(x, f00, f10);
+			rc[lo]++;
+			final int hi = mkSift(x, f01, f11);
+			rc[hi]++;
+			unlink(n);
+			var[n] = y;
+			low[n] = lo;
+			high[n] = hi;
+			link(n);
+			addVarNode(y, n);
+			release(f0);
+			release(f1);
+		}
+	}
+
+	/** mk() that also maintains the sifting bookkeeping for a new node. */
+	private int mkSift(final int v, final int lo, final int hi) {
+		final int before = created;
+		final int n = mk(v, lo, hi);
+		if (created != before) {
+			rc[n] = 0;
+			rc[lo]++;
+			rc[hi]++;
+			addVarNode(v, n);
+		}
+		return n;
+	}
+
+	/** Drop one reference to n, freeing it (and so on down) at zero. */
+	private void release(final int n) {
+		if (n <= TRUE) return;
+		if (--rc[n] > 0) return;
+		unlink(n);
+		final int lo = low[n];
+		final int hi = high[n];
+		var[n] = -1;
+		next[n] = free;
+		free = n;
+		freeCount++;
+		release(lo);
+		release(hi);
+	}
+
+	private void link(final int n) {
+		final int b = bucket(var[n], low[n], high[n]);
+		next[n] = buckets[b];
+		buckets[b] = n;
+	}
+
+	private void unlink(final int n) {
+		final int b = bucket(var[n], low[n], high[n]);
+		if (buckets[b] == n) {
+			buckets[b] = next[n];
+			return;
+		}
+		for (int m = buckets[b]; next[m] >= 0; m = next[m]) {
+			if (next[m] == n) {
+				next[m] = next[n];
+				return;
+			}
+		}
+		throw new IllegalStateException("node not in unique table: " + n);
+	}
+
+	private void addVarNode(final int v, final int n) {
+		if (varNodeCount[v] == varNodes[v].length) {
+			varNodes[v] = Arrays.copyOf(varNodes[v], 2 * varNodes[v].length);
+		}
+		varNodes[v][varNodeCount[v]++] = n;
+	}
+}
@@ -0,0 +1,140 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.bdd;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.f.analysis.DetermineInputVars;
+import ece351.f.ast.FProgram;
+
+/**
+ * Decides the equivalence of two FPrograms in-process with BDDs: both
+ * programs are built in one manager, and each pair of corresponding
+ * outputs is equivalent exactly when they are the same node.
+ */
+public final class BDDEquivalence {
+
+	/** Default bound on the size of the manager. */
+	public static final int DEFAULT_NODE_LIMIT = 1 << 20;
+
+	private BDDEquivalence() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @throws BDD.NodeLimitException if the BDDs grow too large,
+	 *   in which case the caller should fall back to another procedure
+	 */
+	public static boolean equivalent(final FProgram a, final FProgram b) {
+		return equivalent(a, b, DEFAULT_NODE_LIMIT);
+	}
+
+	public static boolean equivalent(final FProgram a, final FProgram b, final int nodeLimit) {
+		final Map<String,AssignmentStatement> outputs = outputs(b);
+		for (final AssignmentStatement f : a.formulas) {
+			if (!outputs.containsKey(f.outputVar.identifier)) return false;
+		}
+		return counterexample(a, b, nodeLimit) == null;
+	}
+
+	/**
+	 * @return an assignment of the inputs on which some output of a and b
+	 *   differs (inputs that do not matter are false), or null if the
+	 *   programs are equivalent
+	 * @throws BDD.NodeLimitException if the BDDs grow too large
+	 * @throws IllegalArgumentException if b lacks one of a's outputs
+	 */
+	public static SortedMap<String,Boolean> counterexample(final FProgram a, final FProgram b) {
+		return counterexample(a, b, DEFAULT_NODE_LIMIT);
+	}
+
+	public static SortedMap<String,Boolean> counterexample(final FProgram a, final FProgram b, final int nodeLimit) {
+		final Map<String,AssignmentStatement> outputs = outputs(b);
+		
+		// one variable per input, initially in order of first occurrence
+		final Map<String,Integer> vars = number(dfsOrder(a, b));
+		
+		final BDD bdd = new BDD(BDD.identity(vars.size()), nodeLimit);
+		bdd.setAutoReorder(true);
+		final ExprToBDD builder = new ExprToBDD(bdd, vars);
+		for (final AssignmentStatement f : a.formulas) {
+			final AssignmentStatement g = outputs.get(f.outputVar.identifier);
+			if (g == null) throw new IllegalArgumentException("no output " + f.outputVar + " in " + b);
+			final int x = builder.build(f.expr);
+			final int y = builder.build(g.expr);
+			if (x != y) {
+				final int[] assignment = bdd.satOne(bdd.xor(x, y));
+				final SortedMap<String,Boolean> witness = new TreeMap<String,Boolean>();
+				for (final Map.Entry<String,Integer> v : vars.entrySet()) {
+					witness.put(v.getKey(), assignment[v.getValue()] == 1);
+				}
+				return witness;
+			}
+		}
+		return null;
+	}
+
+	/** Formulas of p by output name. */
+	private static Map<String,AssignmentStatement> outputs(final FProgram p) {
+		final Map<String,AssignmentStatement> outputs = new HashMap<String,AssignmentStatement>();
+		for (final AssignmentStatement f : p.formulas) {
+			outputs.put(f.outputVar.identifier, f);
+		}
+		return outputs;
+	}
+
+	/**
+	 * Input variables in the order in which a depth-first traversal of the
+	 * formulas first reaches them. Variables that occur close together in
+	 * the program end up close together in the order, which is usually a
+	 * much better start for the BDDs than alphabetical order.
+	 */
+	public static Set<String> dfsOrder(final FProgram... programs) {
+		final Set<String> order = new LinkedHashSet<String>();
+		for (final FProgram p : programs) {
+			for (final AssignmentStatement f : p.formulas) {
+				order.addAll(DetermineInputVars.inputVars(f));
+			}
+		}
+		return order;
+	}
+
+	static Map<String,Integer> number(final Iterable<String> names) {
+		final Map<String,Integer> vars = new LinkedHashMap<String,Integer>();
+		for (final String v : names) {
+			vars.put(v, vars.size());
+		}
+		return vars;
+	}
+}
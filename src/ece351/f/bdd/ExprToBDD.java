@@ -0,0 +1,116 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.bdd;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.BinaryExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+
+/**
+ * Builds the BDD of an Expr. Results are memoized by object identity, so
+ * a shared (interned) subexpression is only translated once. Every
+ * memoized node is protected with BDD.ref() until release() is called.
+ */
+public final class ExprToBDD {
+
+	private final BDD bdd;
+	private final Map<String,Integer> vars;
+	private final Map<Expr,Integer> memo = new IdentityHashMap<Expr,Integer>();
+
+	/**
+	 * @param bdd the manager in which to build
+	 * @param vars the BDD variable of each input variable name
+	 */
+	public ExprToBDD(final BDD bdd, final Map<String,Integer> vars) {
+		this.bdd = bdd;
+		this.vars = vars;
+	}
+
+	public int build(final Expr e) {
+		final Integer cached = memo.get(e);
+		if (cached != null) return cached;
+		final int r = bdd.ref(translate(e));
+		memo.put(e, r);
+		return r;
+	}
+
+	/** Drop the protection of all memoized nodes. */
+	public void release() {
+		for (final int n : memo.values()) {
+			bdd.deref(n);
+		}
+		memo.clear();
+	}
+
+	private int translate(final Expr e) {
+		if (e instanceof ConstantExpr) {
+			return ((ConstantExpr) e).b ? BDD.TRUE : BDD.FALSE;
+		} else if (e instanceof VarExpr) {
+			final Integer v = vars.get(((VarExpr) e).identifier);
+			if (v == null) throw new IllegalArgumentException("no BDD variable for " + e);
+			return bdd.ithVar(v);
+		} else if (e instanceof NotExpr) {
+			return bdd.not(build(((NotExpr) e).expr));
+		} else if (e instanceof BinaryExpr) {
+			final int l = build(((BinaryExpr) e).left);
+			final int r = build(((BinaryExpr) e).right);
+			if (e instanceof AndExpr) return bdd.and(l, r);
+			if (e instanceof OrExpr) return bdd.or(l, r);
+			if (e instanceof XOrExpr) return bdd.xor(l, r);
+			if (e instanceof NAndExpr) return bdd.nand(l, r);
+			if (e instanceof NOrExpr) return bdd.nor(l, r);
+			if (e instanceof XNOrExpr || e instanceof EqualExpr) return bdd.xnor(l, r);
+		} else if (e instanceof NaryAndExpr || e instanceof NaryOrExpr) {
+			final boolean and = e instanceof NaryAndExpr;
+			int acc = bdd.ref(and ? BDD.TRUE : BDD.FALSE);
+			for (final Expr child : ((NaryExpr) e).children) {
+				final int c = build(child);
+				final int r = bdd.ref(and ? bdd.and(acc, c) : bdd.or(acc, c));
+				bdd.deref(acc);
+				acc = r;
+			}
+			bdd.deref(acc);
+			return acc;
+		}
+		throw new IllegalArgumentException("unexpected expression type: " + e.getClass().getName());
+	}
+}
@@ -0,0 +1,200 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.bdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ece351.util.BaseTest351;
+
+public class TestBDD extends BaseTest351 {
+
+	@Test
+	public void testCanonical() {
+		final BDD bdd = new BDD(3);
+		final int a = bdd.ithVar(0);
+		final int b = bdd.ithVar(1);
+		final int c = bdd.ithVar(2);
+		assertEquals(BDD.FALSE, bdd.and(a, bdd.not(a)));
+		assertEquals(BDD.TRUE, bdd.or(a, bdd.not(a)));
+		// De Morgan
+		assertEquals(bdd.not(bdd.and(a, b)), bdd.or(bdd.not(a), bdd.not(b)));
+		assertEquals(bdd.nor(a, b), bdd.and(bdd.not(a), bdd.not(b)));
+		// distributivity and associativity
+		assertEquals(bdd.and(a, bdd.or(b, c)), bdd.or(bdd.and(a, b), bdd.and(a, c)));
+		assertEquals(bdd.xor(a, bdd.xor(b, c)), bdd.xor(bdd.xor(a, b), c));
+		assertEquals(bdd.not(bdd.xor(a, b)), bdd.xnor(a, b));
+	}
+
+	@Test
+	public void testSatOneAndEvaluate() {
+		final BDD bdd = new BDD(3);
+		final int f = bdd.and(bdd.ithVar(0), bdd.not(bdd.ithVar(2)));
+		final int[] s = bdd.satOne(f);
+		assertEquals(1, s[0]);
+		assertEquals(0, s[2]);
+		assertTrue(bdd.evaluate(f, new boolean[] { true, false, false }));
+		assertFalse(bdd.evaluate(f, new boolean[] { true, false, true }));
+		assertEquals(null, bdd.satOne(BDD.FALSE));
+	}
+
+	@Test
+	public void testGarbageCollection() {
+		final int n = 16;
+		final BDD bdd = new BDD(n);
+		int keep = BDD.FALSE;
+		for (int i = 0; i + 1 < n; i += 2) {
+			final int t = bdd.ref(bdd.or(keep, bdd.and(bdd.ithVar(i), bdd.ithVar(i + 1))));
+			bdd.deref(keep);
+			keep = t;
+		}
+		// garbage: parity of all variables
+		int junk = BDD.FALSE;
+		for (int i = 0; i < n; i++) {
+			junk = bdd.xor(junk, bdd.ithVar(i));
+		}
+		final int before = bdd.nodeCount();
+		final int size = bdd.size(keep);
+		bdd.gc();
+		assertTrue(bdd.nodeCount() < before);
+		assertEquals(size, bdd.size(keep));
+		assertEquals(size, bdd.nodeCount());
+		// rebuilding after collection finds the same node
+		int again = BDD.FALSE;
+		for (int i = 0; i + 1 < n; i += 2) {
+			again = bdd.or(again, bdd.and(bdd.ithVar(i), bdd.ithVar(i + 1)));
+		}
+		assertEquals(keep, again);
+	}
+
+	@Test
+	public void testVariableOrder() {
+		// a0.b0 + a1.b1 + a2.b2 + a3.b3: linear when interleaved, exponential when not
+		final int n = 4;
+		final int[] interleaved = new int[2 * n];
+		final int[] separated = new int[2 * n];
+		for (int i = 0; i < n; i++) {
+			interleaved[2 * i] = i;
+			interleaved[2 * i + 1] = n + i;
+			separated[i] = i;
+			separated[n + i] = n + i;
+		}
+		assertTrue(pairs(new BDD(interleaved, Integer.MAX_VALUE), n)
+				< pairs(new BDD(separated, Integer.MAX_VALUE), n));
+	}
+
+	private static int pairs(final BDD bdd, final int n) {
+		int f = BDD.FALSE;
+		for (int i = 0; i < n; i++) {
+			f = bdd.or(f, bdd.and(bdd.ithVar(i), bdd.ithVar(n + i)));
+		}
+		return bdd.size(f);
+	}
+
+	@Test
+	public void testNodeLimit() {
+		final BDD bdd = new BDD(BDD.identity(20), 100);
+		try {
+			int f = BDD.FALSE;
+			for (int i = 0; i < 10; i++) {
+				f = bdd.or(f, bdd.and(bdd.ithVar(i), bdd.ithVar(10 + i)));
+			}
+			fail("node limit not enforced");
+		} catch (final BDD.NodeLimitException e) {
+			// expected
+		}
+	}
+
+	/** Pairs function over a manager whose order separates the pairs. */
+	private static BDD separated(final int n) {
+		final int[] order = new int[2 * n];
+		for (int i = 0; i < 2 * n; i++) { order[i] = i; }
+		return new BDD(order, Integer.MAX_VALUE);
+	}
+
+	private static boolean pairsValue(final boolean[] a, final int n) {
+		for (int i = 0; i < n; i++) {
+			if (a[i] && a[n + i]) return true;
+		}
+		return false;
+	}
+
+	@Test
+	public void testSifting() {
+		final int n = 6;
+		final BDD bdd = separated(n);
+		int f = BDD.FALSE;
+		for (int i = 0; i < n; i++) {
+			f = bdd.or(f, bdd.and(bdd.ithVar(i), bdd.ithVar(n + i)));
+		}
+		bdd.ref(f);
+		final int before = bdd.size(f);
+		bdd.reorder();
+		// interleaved order is optimal: two nodes per pair plus terminals
+		assertTrue(bdd.size(f) < before);
+		assertEquals(2 * n + 2, bdd.size(f));
+		// same node, same function
+		final boolean[] a = new boolean[2 * n];
+		for (int m = 0; m < (1 << (2 * n)); m++) {
+			for (int v = 0; v < 2 * n; v++) { a[v] = ((m >> v) & 1) == 1; }
+			assertEquals(pairsValue(a, n), bdd.evaluate(f, a));
+		}
+		// still canonical after reordering
+		int g = BDD.FALSE;
+		for (int i = n - 1; i >= 0; i--) {
+			g = bdd.or(bdd.and(bdd.ithVar(n + i), bdd.ithVar(i)), g);
+		}
+		assertEquals(f, g);
+	}
+
+	@Test
+	public void testAutoReorder() {
+		final int n = 14;
+		final BDD bdd = separated(n);
+		bdd.setAutoReorder(true);
+		int f = bdd.ref(BDD.FALSE);
+		for (int i = 0; i < n; i++) {
+			final int t = bdd.ref(bdd.or(f, bdd.and(bdd.ithVar(i), bdd.ithVar(n + i))));
+			bdd.deref(f);
+			f = t;
+		}
+		// without reordering this would be more than 2^14 nodes
+		assertTrue(bdd.size(f) < 1 << n);
+		final boolean[] a = new boolean[2 * n];
+		for (int i = 0; i < n; i++) {
+			a[i] = true;
+			a[n + i] = true;
+			assertTrue(bdd.evaluate(f, a));
+			a[n + i] = false;
+			assertFalse(bdd.evaluate(f, a));
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.bdd;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.util.TestInputs351;
+import ece351.util.TestPrograms351;
+
+/**
+ * Checks that BDD equivalence agrees with the simplifier (which should
+ * preserve equivalence) and notices a negated output.
+ */
+@RunWith(Parameterized.class)
+public final class TestBDDEquivalence extends BaseTest351 {
+
+	private final File f;
+
+	public TestBDDEquivalence(final File f) {
+		this.f = f;
+	}
+
+	@Parameterized.Parameters
+	public static Collection<Object[]> files() {
+		return TestInputs351.formulaFiles();
+	}
+
+	@Test
+	public void equivalence() {
+		final FProgram original = TestPrograms351.parse(f);
+		final FProgram simplified = original.simplify();
+		assertTrue(f.getName(), BDDEquivalence.equivalent(original, original));
+		assertTrue(f.getName(), BDDEquivalence.equivalent(original, simplified));
+
+		final FProgram negated = TestPrograms351.negateFirstOutput(original);
+		assertFalse(f.getName(), BDDEquivalence.equivalent(original, negated));
+		assertNull(f.getName(), BDDEquivalence.counterexample(original, simplified));
+		assertNotNull(f.getName(), BDDEquivalence.counterexample(original, negated));
+	}
+}
@@ -0,0 +1,141 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.f.ast.FProgram;
+
+/**
+ * Decides the equivalence of two FPrograms with a SAT solver, without
+ * going through Alloy. Both programs are Tseitin-encoded into one CNF
+ * with shared inputs (a miter): for each output o, a variable d_o is
+ * constrained to o1 xor o2, and one more clause requires some d_o to be
+ * true. The programs are equivalent exactly when the CNF is unsatisfiable.
+ * 
+ * The CNF goes straight to SAT4J through Kodkod's in-memory solver
+ * interface: no model file, no Alloy parsing, no Kodkod translation.
+ */
+public final class SATEquivalence {
+
+	private SATEquivalence() {
+		throw new UnsupportedOperationException();
+	}
+
+	public static boolean equivalent(final FProgram a, final FProgram b) {
+		final TseitinEncoder encoder = new TseitinEncoder();
+		final int[] differences = miter(encoder, a, b);
+		if (differences == null) return false;
+		if (differences.length == 0) return true;
+		encoder.clause(differences);
+		return !solve(encoder);
+	}
+
+	/**
+	 * @return an assignment of the inputs on which some output of a and b
+	 *   differs, or null if the programs are equivalent
+	 * @throws IllegalArgumentException if b lacks one of a's outputs
+	 */
+	public static SortedMap<String,Boolean> counterexample(final FProgram a, final FProgram b) {
+		final TseitinEncoder encoder = new TseitinEncoder();
+		final int[] differences = miter(encoder, a, b);
+		if (differences == null) throw new IllegalArgumentException("outputs of " + a + " missing in " + b);
+		if (differences.length == 0) return null;
+		encoder.clause(differences);
+		final boolean[] model = model(encoder);
+		if (model == null) return null;
+		final SortedMap<String,Boolean> witness = new TreeMap<String,Boolean>();
+		for (final Map.Entry<String,Integer> v : encoder.inputs().entrySet()) {
+			witness.put(v.getKey(), model[v.getValue()]);
+		}
+		return witness;
+	}
+
+	/**
+	 * Solve the CNF built by encoder.
+	 * @return the value of each variable, indexed by variable number (so
+	 *   element 0 is unused), or null if the CNF is unsatisfiable
+	 */
+	public static boolean[] model(final TseitinEncoder encoder) {
+		final SATSolver solver = newSolver(encoder);
+		try {
+			if (!solver.solve()) return null;
+			final boolean[] model = new boolean[encoder.varCount() + 1];
+			for (int v = 1; v < model.length; v++) {
+				model[v] = solver.valueOf(v);
+			}
+			return model;
+		} finally {
+			solver.free();
+		}
+	}
+
+	/**
+	 * Encode both programs and a difference variable for each output of a.
+	 * Returns null if b lacks one of a's outputs.
+	 */
+	static int[] miter(final TseitinEncoder encoder, final FProgram a, final FProgram b) {
+		final Map<String,AssignmentStatement> outputs = new HashMap<String,AssignmentStatement>();
+		for (final AssignmentStatement f : b.formulas) {
+			outputs.put(f.outputVar.identifier, f);
+		}
+		final int[] differences = new int[a.formulas.size()];
+		for (int i = 0; i < differences.length; i++) {
+			final AssignmentStatement f = a.formulas.get(i);
+			final AssignmentStatement g = outputs.get(f.outputVar.identifier);
+			if (g == null) return null;
+			differences[i] = encoder.xor(encoder.encode(f.expr), encoder.encode(g.expr));
+		}
+		return differences;
+	}
+
+	/** Is the encoded CNF satisfiable? */
+	static boolean solve(final TseitinEncoder encoder) {
+		final SATSolver solver = newSolver(encoder);
+		try {
+			return solver.solve();
+		} finally {
+			solver.free();
+		}
+	}
+
+	static SATSolver newSolver(final TseitinEncoder encoder) {
+		final SATSolver solver = SATFactory.DefaultSAT4J.instance();
+		solver.addVariables(encoder.varCount());
+		for (final int[] clause : encoder.clauses()) {
+			solver.addClause(clause);
+		}
+		return solver;
+	}
+}
@@ -0,0 +1,134 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+import ece351.util.TestInputs351;
+import ece351.util.TestPrograms351;
+
+public class TestSATEquivalence extends BaseTest351 {
+
+	/**
+	 * One variable per input and per gate, none for negation; each gate
+	 * has one clause per fanin plus one (xor: four), and shared
+	 * subexpressions are encoded once.
+	 */
+	@Test
+	public void testEncoding() {
+		final VarExpr a = new VarExpr("a");
+		final VarExpr b = new VarExpr("b");
+		final VarExpr c = new VarExpr("c");
+		final TseitinEncoder encoder = new TseitinEncoder();
+		final Expr and = new AndExpr(a, new NotExpr(b));
+		final int g = encoder.encode(and);
+		assertEquals(3, encoder.varCount());
+		assertEquals(3, encoder.clauses().size());
+		assertEquals(1, encoder.inputVar("a"));
+		assertEquals(2, encoder.inputVar("b"));
+		assertEquals(0, encoder.inputVar("c"));
+		
+		// the and is shared; c is new; the or has three fanins
+		encoder.encode(new NaryOrExpr(and, new NotExpr(and), c));
+		assertEquals(5, encoder.varCount());
+		assertEquals(7, encoder.clauses().size());
+		assertEquals(g, encoder.encode(and));
+		assertEquals(-g, encoder.encode(new NotExpr(and)));
+		
+		encoder.encode(new XOrExpr(a, c));
+		assertEquals(6, encoder.varCount());
+		assertEquals(11, encoder.clauses().size());
+		
+		// one variable and one unit clause for the constants
+		final int t = encoder.encode(ConstantExpr.TrueExpr);
+		assertEquals(-t, encoder.encode(ConstantExpr.FalseExpr));
+		assertEquals(7, encoder.varCount());
+		assertEquals(12, encoder.clauses().size());
+	}
+
+	/** The miter adds one difference variable per output. */
+	@Test
+	public void testMiter() {
+		final FProgram p = FRecursiveDescentParser.parse("x <= a and b; y <= a or b;");
+		final FProgram q = FRecursiveDescentParser.parse("y <= b or a; x <= b and a;");
+		final TseitinEncoder encoder = new TseitinEncoder();
+		final int[] differences = SATEquivalence.miter(encoder, p, q);
+		assertEquals(2, differences.length);
+		assertEquals(2 + 4 + 2, encoder.varCount());
+		assertEquals(4 * 3 + 2 * 4, encoder.clauses().size());
+		assertNull(SATEquivalence.miter(new TseitinEncoder(), p, FRecursiveDescentParser.parse("x <= a;")));
+	}
+
+	/** The counterexample to a and b = a or b is a != b. */
+	@Test
+	public void testCounterexample() {
+		final FProgram p = FRecursiveDescentParser.parse("x <= a and b;");
+		final FProgram q = FRecursiveDescentParser.parse("x <= a or b;");
+		final SortedMap<String,Boolean> w = SATEquivalence.counterexample(p, q);
+		assertNotNull(w);
+		assertEquals(2, w.size());
+		assertFalse(w.get("a").equals(w.get("b")));
+	}
+
+	/**
+	 * Simplified programs are equivalent; for a negated output the solver
+	 * finds an input on which the two programs really differ.
+	 */
+	@Test
+	public void testFormulaFiles() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final FProgram original = TestPrograms351.parse(f);
+			assertTrue(f.getName(), SATEquivalence.equivalent(original, original.simplify()));
+			assertNull(f.getName(), SATEquivalence.counterexample(original, original.simplify()));
+			final FProgram negated = TestPrograms351.negateFirstOutput(original);
+			assertFalse(f.getName(), SATEquivalence.equivalent(original, negated));
+			final SortedMap<String,Boolean> w = SATEquivalence.counterexample(original, negated);
+			assertNotNull(f.getName(), w);
+			assertTrue(f.getName(), TestPrograms351.distinguishes(w, original, negated));
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.BinaryExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.UnaryExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.common.visitor.ExprVisitor;
+
+/**
+ * Tseitin encoding of expressions into CNF.
+ * 
+ * Every gate gets a fresh SAT variable g together with the clauses that
+ * force g to equal the gate's output, so the CNF grows linearly with the
+ * expression. Negation does not need a variable: the literal of !x is
+ * just the negated literal of x. Input variables are shared by name
+ * across all expressions encoded with the same encoder, and shared
+ * subexpressions (same object) are encoded once.
+ * 
+ * Variables are numbered from 1, as in DIMACS; a literal is a signed
+ * variable number. Other encoders (such as Fraig's, of AIG cones) build
+ * their CNF from input(), constant(), and() and xor() directly.
+ */
+public final class TseitinEncoder extends ExprVisitor {
+
+	private final List<int[]> clauses = new ArrayList<int[]>();
+	private final Map<String,Integer> inputs = new HashMap<String,Integer>();
+	private final Map<Expr,Integer> literals = new IdentityHashMap<Expr,Integer>();
+	private int varCount = 0;
+	/** Literal that is always true; allocated on first use. */
+	private int truth = 0;
+
+	/** The literal that equals e. */
+	public int encode(final Expr e) {
+		final Integer cached = literals.get(e);
+		if (cached != null) return cached;
+		traverseExpr(e);
+		return literals.get(e);
+	}
+
+	/** The variable of an input, allocated on first use. */
+	public int input(final String name) {
+		Integer v = inputs.get(name);
+		if (v == null) {
+			v = newVar();
+			inputs.put(name, v);
+		}
+		return v;
+	}
+
+	/** The literal of a constant. */
+	public int constant(final boolean b) {
+		return b ? truth() : -truth();
+	}
+
+	/** A fresh variable that equals a xor b. */
+	public int xor(final int a, final int b) {
+		final int g = newVar();
+		clause(-g, a, b);
+		clause(-g, -a, -b);
+		clause(g, -a, b);
+		clause(g, a, -b);
+		return g;
+	}
+
+	/** Add a clause. */
+	public void clause(final int... literals) {
+		clauses.add(literals);
+	}
+
+	public int varCount() { return varCount; }
+	public List<int[]> clauses() { return clauses; }
+
+	/** The SAT variable of an input, or 0 if the input never occurred. */
+	public int inputVar(final String name) {
+		final Integer v = inputs.get(name);
+		return v == null ? 0 : v;
+	}
+
+	/** Names of the inputs encoded so far, with their variables. */
+	public Map<String,Integer> inputs() {
+		return inputs;
+	}
+
+	private int newVar() {
+		return ++varCount;
+	}
+
+	private int truth() {
+		if (truth == 0) {
+			truth = newVar();
+			clause(truth);
+		}
+		return truth;
+	}
+
+	private Expr define(final Expr e, final int literal) {
+		literals.put(e, literal);
+		return e;
+	}
+
+	private int lit(final Expr e) {
+		return literals.get(e);
+	}
+
+	/** A fresh variable g = c1 . c2 . ... */
+	public int and(final int... cs) {
+		final int g = newVar();
+		final int[] big = new int[cs.length + 1];
+		big[0] = g;
+		for (int i = 0; i < cs.length; i++) {
+			clause(-g, cs[i]);
+			big[i + 1] = -cs[i];
+		}
+		clause(big);
+		return g;
+	}
+
+	/** g = c1 + c2 + ...  (by De Morgan) */
+	private int or(final int[] cs) {
+		final int[] negated = new int[cs.length];
+		for (int i = 0; i < cs.length; i++) { negated[i] = -cs[i]; }
+		return -and(negated);
+	}
+
+	private int[] children(final NaryExpr e) {
+		final int[] cs = new int[e.children.size()];
+		for (int i = 0; i < cs.length; i++) {
+			cs[i] = lit(e.children.get(i));
+		}
+		return cs;
+	}
+
+	private int[] children(final BinaryExpr e) {
+		return new int[] { lit(e.left), lit(e.right) };
+	}
+
+	/*
+	 * Traversal: children first, each shared subexpression only once.
+	 */
+
+	@Override
+	public Expr traverseNaryExpr(final NaryExpr e) {
+		if (literals.containsKey(e)) return e;
+		for (final Expr c : e.children) {
+			traverseExpr(c);
+		}
+		return e.accept(this);
+	}
+
+	@Override
+	public Expr traverseBinaryExpr(final BinaryExpr e) {
+		if (literals.containsKey(e)) return e;
+		traverseExpr(e.left);
+		traverseExpr(e.right);
+		return e.accept(this);
+	}
+
+	@Override
+	public Expr traverseUnaryExpr(final UnaryExpr e) {
+		if (literals.containsKey(e)) return e;
+		traverseExpr(e.expr);
+		return e.accept(this);
+	}
+
+	/*
+	 * Gates.
+	 */
+
+	@Override
+	public Expr visitConstant(final ConstantExpr e) {
+		return define(e, constant(e.b));
+	}
+
+	@Override
+	public Expr visitVar(final VarExpr e) {
+		return define(e, input(e.identifier));
+	}
+
+	@Override
+	public Expr visitNot(final NotExpr e) {
+		return define(e, -lit(e.expr));
+	}
+
+	@Override
+	public Expr visitAnd(final AndExpr e) {
+		return define(e, and(children(e)));
+	}
+
+	@Override
+	public Expr visitOr(final OrExpr e) {
+		return define(e, or(children(e)));
+	}
+
+	@Override
+	public Expr visitNaryAnd(final NaryAndExpr e) {
+		return define(e, and(children(e)));
+	}
+
+	@Override
+	public Expr visitNaryOr(final NaryOrExpr e) {
+		return define(e, or(children(e)));
+	}
+
+	@Override
+	public Expr visitXOr(final XOrExpr e) {
+		return define(e, xor(lit(e.left), lit(e.right)));
+	}
+
+	@Override
+	public Expr visitNAnd(final NAndExpr e) {
+		return define(e, -and(children(e)));
+	}
+
+	@Override
+	public Expr visitNOr(final NOrExpr e) {
+		return define(e, -or(children(e)));
+	}
+
+	@Override
+	public Expr visitXNOr(final XNOrExpr e) {
+		return define(e, -xor(lit(e.left), lit(e.right)));
+	}
+
+	@Override
+	public Expr visitEqual(final EqualExpr e) {
+		return define(e, -xor(lit(e.left), lit(e.right)));
+	}
+}
@@ -0,0 +1,189 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.List;
+import java.util.Map;
+
+import ece351.f.ast.FProgram;
+import ece351.w.ast.WProgram;
+import ece351.w.ast.Waveform;
+
+/**
+ * Simulates an FProgram on 64 time steps at once. Each Waveform is packed
+ * into a long[], with time step t in bit t % 64 of word t / 64, and each
+ * gate of the Netlist is then a single bitwise operation per word. Only
+ * packing the inputs and unpacking the outputs look at the bits one by one.
+ */
+public final class BitParallelSimulator {
+
+	private final Netlist netlist;
+
+	public BitParallelSimulator(final FProgram program) {
+		this.netlist = new Netlist(program);
+	}
+
+	public List<String> inputs() { return netlist.inputs(); }
+	public List<String> outputs() { return netlist.outputs(); }
+
+	public static WProgram simulate(final FProgram program, final WProgram w) {
+		return new BitParallelSimulator(program).simulate(w);
+	}
+
+	/**
+	 * The output waveforms, one per formula, over the time steps of w.
+	 * @throws IllegalArgumentException if an input has no waveform in w,
+	 *         or has a U bit (simulate that with TernarySimulator)
+	 */
+	public WProgram simulate(final WProgram w) {
+		final int timeCount = w.timeCount();
+		final long[][] in = new long[inputs().size()][];
+		for (int i = 0; i < in.length; i++) {
+			in[i] = pack(CompiledSimulator.waveform(w, inputs().get(i)));
+		}
+		final long[][] out = new long[outputs().size()][words(timeCount)];
+		evaluate(in, out, 0, words(timeCount));
+		final String[][] bits = new String[out.length][];
+		for (int o = 0; o < out.length; o++) {
+			bits[o] = unpack(out[o], timeCount);
+		}
+		return CompiledSimulator.program(outputs(), bits);
+	}
+
+	/**
+	 * The outputs on 64 input vectors at once, one word per formula: bit k
+	 * of an output word is its value on the vector of bits k of the input
+	 * words, whatever they stand for (time steps, or random vectors).
+	 * @throws IllegalArgumentException if an input has no word in values
+	 */
+	public long[] evaluate(final Map<String,Long> values) {
+		final long[][] in = new long[inputs().size()][1];
+		for (int i = 0; i < in.length; i++) {
+			final Long word = values.get(inputs().get(i));
+			if (word == null) throw new IllegalArgumentException("no value for " + inputs().get(i));
+			in[i][0] = word;
+		}
+		final long[][] out = new long[outputs().size()][1];
+		evaluate(in, out, 0, 1);
+		final long[] words = new long[out.length];
+		for (int o = 0; o < out.length; o++) {
+			words[o] = out[o][0];
+		}
+		return words;
+	}
+
+	/**
+	 * Evaluate words [from, to) of the packed inputs into the packed
+	 * outputs, both indexed as inputs() and outputs().
+	 */
+	void evaluate(final long[][] in, final long[][] out, final int from, final int to) {
+		final int[] op = netlist.op;
+		final int[][] fanins = netlist.fanins;
+		final int[] outputNodes = netlist.outputNodes;
+		final long[] v = new long[op.length];
+		for (int word = from; word < to; word++) {
+			for (int i = 0; i < in.length; i++) {
+				v[i] = in[i][word];
+			}
+			for (int n = in.length; n < op.length; n++) {
+				final int[] f = fanins[n];
+				long x;
+				switch (op[n]) {
+				case Netlist.FALSE: x = 0L; break;
+				case Netlist.TRUE: x = -1L; break;
+				case Netlist.NOT: x = ~v[f[0]]; break;
+				case Netlist.AND:
+				case Netlist.NAND:
+					x = -1L;
+					for (final int i : f) x &= v[i];
+					break;
+				case Netlist.OR:
+				case Netlist.NOR:
+					x = 0L;
+					for (final int i : f) x |= v[i];
+					break;
+				case Netlist.XOR:
+				case Netlist.XNOR:
+					x = 0L;
+					for (final int i : f) x ^= v[i];
+					break;
+				default:
+					throw new IllegalStateException("unknown gate: " + op[n]);
+				}
+				if (op[n] == Netlist.NAND || op[n] == Netlist.NOR || op[n] == Netlist.XNOR) {
+					x = ~x;
+				}
+				v[n] = x;
+			}
+			for (int o = 0; o < out.length; o++) {
+				out[o][word] = v[outputNodes[o]];
+			}
+		}
+	}
+
+	/** Words needed for timeCount time steps. */
+	static int words(final int timeCount) {
+		return (timeCount + 63) >>> 6;
+	}
+
+	/**
+	 * The bits of w, 64 time steps per word.
+	 * @throws IllegalArgumentException if w has a U bit
+	 */
+	public static long[] pack(final Waveform w) {
+		final long[] words = new long[words(w.bits.size())];
+		pack(w.bits, 0, w.bits.size(), words);
+		return words;
+	}
+
+	/**
+	 * Pack time steps [from, to) of bits into words, time step from going
+	 * to bit 0 of words[0]. The words must be zero to begin with.
+	 * @throws IllegalArgumentException if one of those bits is U
+	 */
+	static void pack(final List<String> bits, final int from, final int to, final long[] words) {
+		for (int t = from; t < to; t++) {
+			if (CompiledSimulator.bit(bits.get(t))) {
+				words[(t - from) >>> 6] |= 1L << (t - from);
+			}
+		}
+	}
+
+	/** The first timeCount bits of words, as pack() laid them out. */
+	public static String[] unpack(final long[] words, final int timeCount) {
+		final String[] bits = new String[timeCount];
+		unpack(words, bits, 0, timeCount);
+		return bits;
+	}
+
+	/** Unpack words into time steps [from, to) of bits: the inverse of pack. */
+	static void unpack(final long[] words, final String[] bits, final int from, final int to) {
+		for (int t = from; t < to; t++) {
+			bits[t] = (words[(t - from) >>> 6] >>> (t - from) & 1L) != 0 ? "1" : "0";
+		}
+	}
+}
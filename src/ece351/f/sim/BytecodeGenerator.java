@@ -0,0 +1,270 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.BinaryExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.UnaryExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.common.visitor.ExprVisitor;
+import ece351.f.ast.FProgram;
+
+/**
+ * Compiles an FProgram to a class that implements Circuit, using ASM.
+ * 
+ * The evaluate method is straight-line code on the JVM's int booleans:
+ * each input is read from the array once, each operator is one bitwise
+ * instruction (not is xor with 1), and each subexpression is computed
+ * once, in post-order, into a local variable of its own. Subexpressions
+ * are shared by object identity, so an interned program is compiled as
+ * the DAG it is. Without branches the method needs no stack map frames.
+ * 
+ * Each class is defined by a class loader of its own, so it can be
+ * garbage collected with the Circuit once it is no longer used.
+ */
+final class BytecodeGenerator extends ExprVisitor {
+
+	private static final String CIRCUIT = Type.getInternalName(Circuit.class);
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	/** Defines one generated class. */
+	private static final class Loader extends ClassLoader {
+		Loader() {
+			super(Circuit.class.getClassLoader());
+		}
+
+		Class<?> define(final String name, final byte[] b) {
+			return defineClass(name, b, 0, b.length);
+		}
+	}
+
+	private final MethodVisitor mv;
+	/** Position of each input variable in the inputs array. */
+	private final Map<String,Integer> inputs = new HashMap<String,Integer>();
+	/** Local variable of each input variable that has been read. */
+	private final Map<String,Integer> vars = new HashMap<String,Integer>();
+	/** Local variable of each subexpression that has been computed. */
+	private final Map<Expr,Integer> locals = new IdentityHashMap<Expr,Integer>();
+	/** Locals 0, 1 and 2 are this, inputs and outputs. */
+	private int nextLocal = 3;
+
+	private BytecodeGenerator(final MethodVisitor mv, final List<String> inputs) {
+		this.mv = mv;
+		for (int i = 0; i < inputs.size(); i++) {
+			this.inputs.put(inputs.get(i), i);
+		}
+	}
+
+	/**
+	 * Compile p, with the inputs array in the given order and the outputs
+	 * array in the order of the formulas.
+	 * @throws IllegalArgumentException if the program is too big for one method
+	 */
+	static Circuit compile(final FProgram p, final List<String> inputs) {
+		final String name = "ece351/f/sim/CompiledCircuit$" + counter.getAndIncrement();
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name, null,
+				"java/lang/Object", new String[] { CIRCUIT });
+
+		final MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		init.visitCode();
+		init.visitVarInsn(Opcodes.ALOAD, 0);
+		init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		init.visitInsn(Opcodes.RETURN);
+		init.visitMaxs(0, 0);
+		init.visitEnd();
+
+		final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "evaluate", "([Z[Z)V", null, null);
+		mv.visitCode();
+		final BytecodeGenerator g = new BytecodeGenerator(mv, inputs);
+		int i = 0;
+		for (final AssignmentStatement f : p.formulas) {
+			g.traverseExpr(f.expr);
+			mv.visitVarInsn(Opcodes.ALOAD, 2);
+			g.push(i++);
+			g.load(f.expr);
+			mv.visitInsn(Opcodes.BASTORE);
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+
+		final byte[] b;
+		try {
+			b = cw.toByteArray();
+		} catch (final RuntimeException e) {
+			// ASM refuses methods over 64KB of bytecode
+			throw new IllegalArgumentException("program is too big to compile: " + e.getMessage(), e);
+		}
+		try {
+			return (Circuit) new Loader().define(name.replace('/', '.'), b).getDeclaredConstructor().newInstance();
+		} catch (final ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public Expr traverseNaryExpr(final NaryExpr e) {
+		if (locals.containsKey(e)) return e;
+		for (final Expr c : e.children) {
+			traverseExpr(c);
+		}
+		return e.accept(this);
+	}
+
+	@Override
+	public Expr traverseBinaryExpr(final BinaryExpr e) {
+		if (locals.containsKey(e)) return e;
+		traverseExpr(e.left);
+		traverseExpr(e.right);
+		return e.accept(this);
+	}
+
+	@Override
+	public Expr traverseUnaryExpr(final UnaryExpr e) {
+		if (locals.containsKey(e)) return e;
+		traverseExpr(e.expr);
+		return e.accept(this);
+	}
+
+	@Override
+	public Expr visitConstant(final ConstantExpr e) {
+		// pushed where it is used
+		return e;
+	}
+
+	@Override
+	public Expr visitVar(final VarExpr e) {
+		if (vars.containsKey(e.identifier)) return e;
+		final Integer index = inputs.get(e.identifier);
+		if (index == null) throw new IllegalArgumentException("not an input: " + e.identifier);
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		push(index);
+		mv.visitInsn(Opcodes.BALOAD);
+		mv.visitVarInsn(Opcodes.ISTORE, nextLocal);
+		vars.put(e.identifier, nextLocal++);
+		return e;
+	}
+
+	@Override
+	public Expr visitNot(final NotExpr e) {
+		load(e.expr);
+		invert();
+		return store(e);
+	}
+
+	@Override public Expr visitAnd(final AndExpr e) { return binary(e, Opcodes.IAND, false); }
+	@Override public Expr visitOr(final OrExpr e) { return binary(e, Opcodes.IOR, false); }
+	@Override public Expr visitXOr(final XOrExpr e) { return binary(e, Opcodes.IXOR, false); }
+	@Override public Expr visitNAnd(final NAndExpr e) { return binary(e, Opcodes.IAND, true); }
+	@Override public Expr visitNOr(final NOrExpr e) { return binary(e, Opcodes.IOR, true); }
+	@Override public Expr visitXNOr(final XNOrExpr e) { return binary(e, Opcodes.IXOR, true); }
+	@Override public Expr visitEqual(final EqualExpr e) { return binary(e, Opcodes.IXOR, true); }
+	@Override public Expr visitNaryAnd(final NaryAndExpr e) { return nary(e, Opcodes.IAND, 1); }
+	@Override public Expr visitNaryOr(final NaryOrExpr e) { return nary(e, Opcodes.IOR, 0); }
+
+	private Expr binary(final BinaryExpr e, final int opcode, final boolean negated) {
+		load(e.left);
+		load(e.right);
+		mv.visitInsn(opcode);
+		if (negated) invert();
+		return store(e);
+	}
+
+	private Expr nary(final NaryExpr e, final int opcode, final int identity) {
+		if (e.children.isEmpty()) {
+			push(identity);
+		} else {
+			load(e.children.get(0));
+			for (int i = 1; i < e.children.size(); i++) {
+				load(e.children.get(i));
+				mv.visitInsn(opcode);
+			}
+		}
+		return store(e);
+	}
+
+	/** Push the value of an expression that has been computed. */
+	private void load(final Expr e) {
+		if (e instanceof ConstantExpr) {
+			push(((ConstantExpr) e).b ? 1 : 0);
+		} else if (e instanceof VarExpr) {
+			mv.visitVarInsn(Opcodes.ILOAD, vars.get(((VarExpr) e).identifier));
+		} else {
+			mv.visitVarInsn(Opcodes.ILOAD, locals.get(e));
+		}
+	}
+
+	/** Pop the value of e into a new local. */
+	private Expr store(final Expr e) {
+		mv.visitVarInsn(Opcodes.ISTORE, nextLocal);
+		locals.put(e, nextLocal++);
+		return e;
+	}
+
+	private void invert() {
+		mv.visitInsn(Opcodes.ICONST_1);
+		mv.visitInsn(Opcodes.IXOR);
+	}
+
+	private void push(final int value) {
+		if (value >= -1 && value <= 5) {
+			mv.visitInsn(Opcodes.ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(Opcodes.BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mv.visitIntInsn(Opcodes.SIPUSH, value);
+		} else {
+			mv.visitLdcInsn(value);
+		}
+	}
+}
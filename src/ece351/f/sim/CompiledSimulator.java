@@ -0,0 +1,126 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.parboiled.common.ImmutableList;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.f.ast.FProgram;
+import ece351.w.ast.WProgram;
+import ece351.w.ast.Waveform;
+
+/**
+ * Simulates an FProgram on the waveforms of a WProgram by compiling it to
+ * JVM bytecode (see BytecodeGenerator) instead of walking its Exprs at
+ * every time step. The JIT then turns the generated straight-line method
+ * into machine code.
+ * 
+ * The inputs of the Circuit are the input variables of the program in
+ * alphabetical order; its outputs are the formulas, in order.
+ */
+public final class CompiledSimulator {
+
+	private final List<String> inputs;
+	private final List<String> outputs;
+	private final Circuit circuit;
+
+	public CompiledSimulator(final FProgram program) {
+		final List<String> outputs = new ArrayList<String>(program.formulas.size());
+		for (final AssignmentStatement f : program.formulas) {
+			outputs.add(f.outputVar.identifier);
+		}
+		this.inputs = Collections.unmodifiableList(new ArrayList<String>(DagWalker.inputVars(program)));
+		this.outputs = Collections.unmodifiableList(outputs);
+		this.circuit = BytecodeGenerator.compile(program, this.inputs);
+	}
+
+	public List<String> inputs() { return inputs; }
+	public List<String> outputs() { return outputs; }
+	public Circuit circuit() { return circuit; }
+
+	public static WProgram simulate(final FProgram program, final WProgram w) {
+		return new CompiledSimulator(program).simulate(w);
+	}
+
+	/**
+	 * The output waveforms, one per formula, over the time steps of w.
+	 * @throws IllegalArgumentException if an input has no waveform in w,
+	 *         or has a U bit (simulate that with TernarySimulator)
+	 */
+	public WProgram simulate(final WProgram w) {
+		final int timeCount = w.timeCount();
+		final List<ImmutableList<String>> in = new ArrayList<ImmutableList<String>>(inputs.size());
+		for (final String name : inputs) {
+			in.add(waveform(w, name).bits);
+		}
+		final boolean[] inputValues = new boolean[inputs.size()];
+		final boolean[] outputValues = new boolean[outputs.size()];
+		final String[][] out = new String[outputs.size()][timeCount];
+		for (int time = 0; time < timeCount; time++) {
+			for (int i = 0; i < inputValues.length; i++) {
+				inputValues[i] = bit(in.get(i).get(time));
+			}
+			circuit.evaluate(inputValues, outputValues);
+			for (int o = 0; o < outputValues.length; o++) {
+				out[o][time] = outputValues[o] ? "1" : "0";
+			}
+		}
+		return program(outputs, out);
+	}
+
+	/**
+	 * The value of a 0 or 1 bit.
+	 * @throws IllegalArgumentException if b is U: a two-valued simulator
+	 *         cannot give it a value, TernarySimulator can
+	 */
+	static boolean bit(final String b) {
+		if (b.equals("1")) return true;
+		if (b.equals("0")) return false;
+		throw new IllegalArgumentException("bit " + b + " is not 0 or 1: simulate with TernarySimulator");
+	}
+
+	/** The waveform of var in w. */
+	static Waveform waveform(final WProgram w, final String var) {
+		for (final Waveform wave : w.waveforms) {
+			if (wave.name.equals(var)) return wave;
+		}
+		throw new IllegalArgumentException("variable is not defined in W program: " + var);
+	}
+
+	/** A WProgram with the given names and bits. */
+	static WProgram program(final List<String> names, final String[][] bits) {
+		final List<Waveform> waveforms = new ArrayList<Waveform>(names.size());
+		for (int o = 0; o < names.size(); o++) {
+			waveforms.add(new Waveform(ImmutableList.of(bits[o]), names.get(o)));
+		}
+		return new WProgram(ImmutableList.copyOf(waveforms));
+	}
+}
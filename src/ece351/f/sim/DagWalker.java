@@ -0,0 +1,94 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.BinaryExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.UnaryExpr;
+import ece351.common.ast.VarExpr;
+import ece351.f.ast.FProgram;
+
+/**
+ * Walks expressions as the DAGs they are: a subexpression shared by
+ * object identity is visited once, however many parents it has, so the
+ * walk takes linear time where a tree walk (such as DetermineInputVars)
+ * can take exponential time. Parents are visited before their children.
+ */
+abstract class DagWalker {
+
+	private final Set<Expr> seen = Collections.newSetFromMap(new IdentityHashMap<Expr,Boolean>());
+
+	/** Called once for each distinct expression. */
+	protected abstract void visit(Expr e);
+
+	/** Called when an expression that was visited before is reached again. */
+	protected void revisit(final Expr e) {
+		// nothing to do by default
+	}
+
+	/** Walk e and the subexpressions that have not been walked yet. */
+	final void walk(final Expr e) {
+		if (!seen.add(e)) {
+			revisit(e);
+			return;
+		}
+		visit(e);
+		if (e instanceof UnaryExpr) {
+			walk(((UnaryExpr) e).expr);
+		} else if (e instanceof BinaryExpr) {
+			walk(((BinaryExpr) e).left);
+			walk(((BinaryExpr) e).right);
+		} else if (e instanceof NaryExpr) {
+			for (final Expr c : ((NaryExpr) e).children) {
+				walk(c);
+			}
+		}
+	}
+
+	/** The input variables of p, in alphabetical order. */
+	static SortedSet<String> inputVars(final FProgram p) {
+		final SortedSet<String> vars = new TreeSet<String>();
+		final DagWalker w = new DagWalker() {
+			@Override
+			protected void visit(final Expr e) {
+				if (e instanceof VarExpr) vars.add(((VarExpr) e).identifier);
+			}
+		};
+		for (final AssignmentStatement f : p.formulas) {
+			w.walk(f.expr);
+		}
+		return vars;
+	}
+}
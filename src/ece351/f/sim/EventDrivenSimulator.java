@@ -0,0 +1,193 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.List;
+
+import ece351.f.ast.FProgram;
+import ece351.w.ast.WProgram;
+
+/**
+ * Simulates an FProgram one time step at a time, re-evaluating only the
+ * gates whose fanins changed since the previous step. An input that
+ * toggles schedules its fanouts; a gate whose value changes schedules its
+ * own. The scheduled gates are evaluated level by level (see
+ * Netlist.level), so each is evaluated at most once per step, after all
+ * of its fanins have settled.
+ * 
+ * For traces where few inputs toggle at each step this does a fraction of
+ * the work of evaluating every gate; for busy traces BitParallelSimulator
+ * is faster.
+ */
+public final class EventDrivenSimulator {
+
+	private final Netlist netlist;
+	/** Gates evaluated by the last simulation. */
+	private long evaluations;
+
+	public EventDrivenSimulator(final FProgram program) {
+		this.netlist = new Netlist(program);
+	}
+
+	public List<String> inputs() { return netlist.inputs(); }
+	public List<String> outputs() { return netlist.outputs(); }
+
+	/** Number of gates evaluated by the last simulation. */
+	long evaluations() { return evaluations; }
+
+	/** Number of gates, which a full evaluation evaluates at every step. */
+	int gates() { return netlist.size() - inputs().size(); }
+
+	public static WProgram simulate(final FProgram program, final WProgram w) {
+		return new EventDrivenSimulator(program).simulate(w);
+	}
+
+	/**
+	 * The output waveforms, one per formula, over the time steps of w.
+	 * @throws IllegalArgumentException if an input has no waveform in w,
+	 *         or has a U bit (simulate that with TernarySimulator)
+	 */
+	public WProgram simulate(final WProgram w) {
+		final int timeCount = w.timeCount();
+		final int inputCount = inputs().size();
+		final int[] op = netlist.op;
+		final int[][] fanouts = netlist.fanouts;
+		final int[] level = netlist.level;
+		final int[] outputNodes = netlist.outputNodes;
+		final String[][] in = new String[inputCount][];
+		for (int i = 0; i < inputCount; i++) {
+			in[i] = CompiledSimulator.waveform(w, inputs().get(i)).bits.toArray(new String[0]);
+		}
+		final String[][] out = new String[outputNodes.length][timeCount];
+		
+		// one stack of scheduled gates per level
+		final int levels = netlist.levels();
+		final int[] sizes = new int[levels];
+		final int[][] buckets = new int[levels][];
+		// a bucket holds at most the nodes of its level
+		for (final int x : level) {
+			sizes[x]++;
+		}
+		for (int l = 0; l < levels; l++) {
+			buckets[l] = new int[sizes[l]];
+			sizes[l] = 0;
+		}
+		final boolean[] scheduled = new boolean[op.length];
+		final boolean[] value = new boolean[op.length];
+		evaluations = 0;
+		
+		for (int time = 0; time < timeCount; time++) {
+			if (time == 0) {
+				// evaluate every gate once, in topological order
+				for (int i = 0; i < inputCount; i++) {
+					value[i] = CompiledSimulator.bit(in[i][0]);
+				}
+				for (int n = inputCount; n < op.length; n++) {
+					value[n] = evaluate(n, value);
+				}
+				evaluations += op.length - inputCount;
+			} else {
+				// the events: inputs that toggled
+				for (int i = 0; i < inputCount; i++) {
+					final boolean v = CompiledSimulator.bit(in[i][time]);
+					if (v != value[i]) {
+						value[i] = v;
+						for (final int g : fanouts[i]) {
+							if (!scheduled[g]) {
+								scheduled[g] = true;
+								buckets[level[g]][sizes[level[g]]++] = g;
+							}
+						}
+					}
+				}
+				// settle the gates in order of level: fanouts have higher levels
+				for (int l = 1; l < levels; l++) {
+					final int[] bucket = buckets[l];
+					while (sizes[l] > 0) {
+						final int n = bucket[--sizes[l]];
+						scheduled[n] = false;
+						evaluations++;
+						final boolean v = evaluate(n, value);
+						if (v == value[n]) continue;
+						value[n] = v;
+						for (final int g : fanouts[n]) {
+							if (!scheduled[g]) {
+								scheduled[g] = true;
+								buckets[level[g]][sizes[level[g]]++] = g;
+							}
+						}
+					}
+				}
+			}
+			for (int o = 0; o < outputNodes.length; o++) {
+				out[o][time] = value[outputNodes[o]] ? "1" : "0";
+			}
+		}
+		return CompiledSimulator.program(outputs(), out);
+	}
+
+	/** The value of gate n from the current values of its fanins. */
+	private boolean evaluate(final int n, final boolean[] value) {
+		final int[] f = netlist.fanins[n];
+		final int op = netlist.op[n];
+		boolean x;
+		switch (op) {
+		case Netlist.FALSE: return false;
+		case Netlist.TRUE: return true;
+		case Netlist.NOT: return !value[f[0]];
+		case Netlist.AND:
+		case Netlist.NAND:
+			x = true;
+			for (final int i : f) {
+				if (!value[i]) {
+					x = false;
+					break;
+				}
+			}
+			return x == (op == Netlist.AND);
+		case Netlist.OR:
+		case Netlist.NOR:
+			x = false;
+			for (final int i : f) {
+				if (value[i]) {
+					x = true;
+					break;
+				}
+			}
+			return x == (op == Netlist.OR);
+		case Netlist.XOR:
+		case Netlist.XNOR:
+			x = false;
+			for (final int i : f) {
+				x ^= value[i];
+			}
+			return x == (op == Netlist.XOR);
+		default:
+			throw new IllegalStateException("unknown gate: " + op);
+		}
+	}
+}
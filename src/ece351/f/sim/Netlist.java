@@ -0,0 +1,196 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.BinaryExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+
+/**
+ * An FProgram flattened into an array of gates, for simulators that
+ * evaluate it many times. Node i is input i for i < inputs().size(), in
+ * alphabetical order; the other nodes are gates, each after its fanins.
+ * Subexpressions are shared by object identity and variables by name, so
+ * every node is evaluated once per step. Binary, n-ary and negated
+ * operators all become gates of a few kinds with any number of fanins.
+ */
+final class Netlist {
+
+	static final int INPUT = 0;
+	static final int FALSE = 1;
+	static final int TRUE = 2;
+	static final int NOT = 3;
+	static final int AND = 4;
+	static final int OR = 5;
+	static final int XOR = 6;
+	static final int NAND = 7;
+	static final int NOR = 8;
+	static final int XNOR = 9;
+
+	private final List<String> inputs;
+	private final List<String> outputs;
+	/** Kind of each node. */
+	final int[] op;
+	/** Fanin nodes of each node. */
+	final int[][] fanins;
+	/** Node of each formula. */
+	final int[] outputNodes;
+	/** Length of the longest path from an input or constant to each node. */
+	final int[] level;
+	/** Nodes that have each node as a fanin, in increasing order. */
+	final int[][] fanouts;
+
+	private final List<Integer> ops = new ArrayList<Integer>();
+	private final List<int[]> ins = new ArrayList<int[]>();
+	private final Map<Expr,Integer> nodes = new IdentityHashMap<Expr,Integer>();
+	private final Map<String,Integer> vars = new HashMap<String,Integer>();
+
+	Netlist(final FProgram p) {
+		this.inputs = Collections.unmodifiableList(new ArrayList<String>(DagWalker.inputVars(p)));
+		for (final String name : inputs) {
+			vars.put(name, add(INPUT, new int[0]));
+		}
+		final List<String> outputs = new ArrayList<String>(p.formulas.size());
+		this.outputNodes = new int[p.formulas.size()];
+		for (int i = 0; i < outputNodes.length; i++) {
+			final AssignmentStatement f = p.formulas.get(i);
+			outputs.add(f.outputVar.identifier);
+			outputNodes[i] = node(f.expr);
+		}
+		this.outputs = Collections.unmodifiableList(outputs);
+		this.op = new int[ops.size()];
+		this.fanins = ins.toArray(new int[ins.size()][]);
+		for (int n = 0; n < op.length; n++) {
+			op[n] = ops.get(n);
+		}
+		
+		// levels and fanouts: fanins come before their gates
+		this.level = new int[op.length];
+		final int[] counts = new int[op.length];
+		for (int n = 0; n < op.length; n++) {
+			for (final int f : fanins[n]) {
+				level[n] = Math.max(level[n], level[f] + 1);
+				counts[f]++;
+			}
+		}
+		this.fanouts = new int[op.length][];
+		for (int n = 0; n < op.length; n++) {
+			fanouts[n] = new int[counts[n]];
+			counts[n] = 0;
+		}
+		for (int n = 0; n < op.length; n++) {
+			for (final int f : fanins[n]) {
+				fanouts[f][counts[f]++] = n;
+			}
+		}
+	}
+
+	List<String> inputs() { return inputs; }
+	List<String> outputs() { return outputs; }
+	int size() { return op.length; }
+
+	/** One more than the highest level. */
+	int levels() {
+		int levels = 0;
+		for (final int l : level) {
+			levels = Math.max(levels, l + 1);
+		}
+		return levels;
+	}
+
+	/** The node of e, adding it and its fanins if they are new. */
+	private int node(final Expr e) {
+		final Integer n = nodes.get(e);
+		if (n != null) return n;
+		final int result;
+		if (e instanceof VarExpr) {
+			result = vars.get(((VarExpr) e).identifier);
+		} else if (e instanceof ConstantExpr) {
+			result = add(((ConstantExpr) e).b ? TRUE : FALSE, new int[0]);
+		} else if (e instanceof NotExpr) {
+			result = add(NOT, new int[] { node(((NotExpr) e).expr) });
+		} else if (e instanceof BinaryExpr) {
+			final BinaryExpr b = (BinaryExpr) e;
+			final int[] f = new int[] { node(b.left), node(b.right) };
+			result = add(binary(b), f);
+		} else if (e instanceof NaryExpr) {
+			final NaryExpr nary = (NaryExpr) e;
+			final int[] f = new int[nary.children.size()];
+			for (int i = 0; i < f.length; i++) {
+				f[i] = node(nary.children.get(i));
+			}
+			if (e instanceof NaryAndExpr) {
+				result = add(AND, f);
+			} else if (e instanceof NaryOrExpr) {
+				result = add(OR, f);
+			} else {
+				throw new IllegalArgumentException("unknown NaryExpr: " + e.getClass());
+			}
+		} else {
+			throw new IllegalArgumentException("unknown Expr: " + e.getClass());
+		}
+		nodes.put(e, result);
+		return result;
+	}
+
+	private static int binary(final BinaryExpr e) {
+		if (e instanceof AndExpr) return AND;
+		if (e instanceof OrExpr) return OR;
+		if (e instanceof XOrExpr) return XOR;
+		if (e instanceof NAndExpr) return NAND;
+		if (e instanceof NOrExpr) return NOR;
+		if (e instanceof XNOrExpr || e instanceof EqualExpr) return XNOR;
+		throw new IllegalArgumentException("unknown BinaryExpr: " + e.getClass());
+	}
+
+	private int add(final int kind, final int[] f) {
+		ops.add(kind);
+		ins.add(f);
+		return ops.size() - 1;
+	}
+}
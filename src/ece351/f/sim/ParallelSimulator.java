@@ -0,0 +1,224 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.VarExpr;
+import ece351.f.ast.FProgram;
+import ece351.w.ast.WProgram;
+
+/**
+ * Simulates an FProgram on the common fork-join pool. Combinational logic
+ * has no state, so the time steps can be simulated in any order: the trace
+ * is split in halves until a window is at most GRAIN words long, and each
+ * window packs its inputs, runs a BitParallelSimulator and unpacks its
+ * outputs on its own.
+ * 
+ * The formulas are also split into cones that share no inputs and no
+ * subexpressions, so that they can be simulated apart without doing any
+ * work twice. Every task writes its own time steps of its own outputs, so
+ * the result does not depend on how the tasks are scheduled.
+ */
+public final class ParallelSimulator {
+
+	/** Most words that one task simulates: 16384 time steps. */
+	static final int GRAIN = 256;
+
+	private final List<String> outputs;
+	/** The simulator of each cone. */
+	private final List<BitParallelSimulator> cones = new ArrayList<BitParallelSimulator>();
+	/** For each cone, the index of each of its outputs in outputs. */
+	private final List<int[]> coneOutputs = new ArrayList<int[]>();
+
+	public ParallelSimulator(final FProgram program) {
+		final List<String> outputs = new ArrayList<String>(program.formulas.size());
+		for (final AssignmentStatement f : program.formulas) {
+			outputs.add(f.outputVar.identifier);
+		}
+		this.outputs = Collections.unmodifiableList(outputs);
+		
+		// union the formulas that share a subexpression or an input
+		final int[] parent = new int[program.formulas.size()];
+		final Map<Expr,Integer> exprs = new IdentityHashMap<Expr,Integer>();
+		final Map<String,Integer> vars = new HashMap<String,Integer>();
+		final int[] formula = new int[1];
+		final DagWalker walker = new DagWalker() {
+			@Override
+			protected void visit(final Expr e) {
+				// each cone gets constants of its own
+				if (e instanceof ConstantExpr) return;
+				exprs.put(e, formula[0]);
+				if (e instanceof VarExpr) {
+					final Integer k = vars.put(((VarExpr) e).identifier, formula[0]);
+					if (k != null) union(parent, k, formula[0]);
+				}
+			}
+			@Override
+			protected void revisit(final Expr e) {
+				final Integer j = exprs.get(e);
+				if (j != null) union(parent, j, formula[0]);
+			}
+		};
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+			formula[0] = i;
+			walker.walk(program.formulas.get(i).expr);
+		}
+		
+		// one cone per class, formulas in program order
+		final Map<Integer,List<Integer>> classes = new HashMap<Integer,List<Integer>>();
+		final List<List<Integer>> order = new ArrayList<List<Integer>>();
+		for (int i = 0; i < parent.length; i++) {
+			final int root = find(parent, i);
+			List<Integer> c = classes.get(root);
+			if (c == null) {
+				c = new ArrayList<Integer>();
+				classes.put(root, c);
+				order.add(c);
+			}
+			c.add(i);
+		}
+		for (final List<Integer> c : order) {
+			final List<AssignmentStatement> formulas = new ArrayList<AssignmentStatement>(c.size());
+			final int[] indexes = new int[c.size()];
+			for (int k = 0; k < indexes.length; k++) {
+				indexes[k] = c.get(k);
+				formulas.add(program.formulas.get(indexes[k]));
+			}
+			cones.add(new BitParallelSimulator(new FProgram(formulas)));
+			coneOutputs.add(indexes);
+		}
+	}
+
+	private static int find(final int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(final int[] parent, final int i, final int j) {
+		parent[find(parent, i)] = find(parent, j);
+	}
+
+	public List<String> outputs() { return outputs; }
+
+	/** Number of cones that are simulated apart. */
+	int cones() { return cones.size(); }
+
+	public static WProgram simulate(final FProgram program, final WProgram w) {
+		return new ParallelSimulator(program).simulate(w);
+	}
+
+	/**
+	 * The output waveforms, one per formula, over the time steps of w.
+	 * @throws IllegalArgumentException if an input has no waveform in w,
+	 *         or has a U bit (simulate that with TernarySimulator)
+	 */
+	public WProgram simulate(final WProgram w) {
+		final int timeCount = w.timeCount();
+		final String[][] bits = new String[outputs.size()][timeCount];
+		final List<Window> windows = new ArrayList<Window>(cones.size());
+		for (int c = 0; c < cones.size(); c++) {
+			final BitParallelSimulator cone = cones.get(c);
+			final List<List<String>> in = new ArrayList<List<String>>(cone.inputs().size());
+			for (final String name : cone.inputs()) {
+				in.add(CompiledSimulator.waveform(w, name).bits);
+			}
+			final String[][] out = new String[coneOutputs.get(c).length][];
+			for (int k = 0; k < out.length; k++) {
+				out[k] = bits[coneOutputs.get(c)[k]];
+			}
+			windows.add(new Window(cone, in, out, timeCount, 0, BitParallelSimulator.words(timeCount)));
+		}
+		// invokeAll is for use inside the pool: start from a root task
+		ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(windows);
+			}
+		});
+		return CompiledSimulator.program(outputs, bits);
+	}
+
+	/** Simulates words [from, to) of one cone. */
+	private static final class Window extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final BitParallelSimulator cone;
+		final List<List<String>> in;
+		final String[][] out;
+		final int timeCount;
+		final int from;
+		final int to;
+
+		Window(final BitParallelSimulator cone, final List<List<String>> in, final String[][] out,
+				final int timeCount, final int from, final int to) {
+			this.cone = cone;
+			this.in = in;
+			this.out = out;
+			this.timeCount = timeCount;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > GRAIN) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new Window(cone, in, out, timeCount, from, middle),
+						new Window(cone, in, out, timeCount, middle, to));
+				return;
+			}
+			final int first = from << 6;
+			final int last = Math.min(to << 6, timeCount);
+			final long[][] packedIn = new long[in.size()][to - from];
+			for (int i = 0; i < packedIn.length; i++) {
+				BitParallelSimulator.pack(in.get(i), first, last, packedIn[i]);
+			}
+			final long[][] packedOut = new long[out.length][to - from];
+			cone.evaluate(packedIn, packedOut, 0, to - from);
+			for (int o = 0; o < out.length; o++) {
+				BitParallelSimulator.unpack(packedOut[o], out[o], first, last);
+			}
+		}
+	}
+}
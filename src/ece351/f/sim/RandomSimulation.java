@@ -0,0 +1,137 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import ece351.f.analysis.DetermineInputVars;
+import ece351.f.ast.FProgram;
+
+/**
+ * Looks for an input on which two FPrograms differ by simulating them,
+ * before anyone pays for a BDD or a SAT call. Most non-equivalent pairs
+ * differ on many inputs, so a few thousand vectors find a witness almost
+ * always. Finding none proves nothing: the caller must still decide.
+ * 
+ * The first vectors are corner cases (all zeros, all ones, each input
+ * alone set, each input alone clear); the rest are pseudo-random from a
+ * fixed seed, so that runs are reproducible. Vectors are evaluated 64 at
+ * a time by the BitParallelSimulator, whose netlists are built once.
+ */
+public final class RandomSimulation {
+
+	/** Number of 64-vector batches simulated by default. */
+	public static final int DEFAULT_ROUNDS = 64;
+	public static final long DEFAULT_SEED = 351L;
+
+	private RandomSimulation() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return an assignment of a's and b's inputs on which some output
+	 *   differs, or null if none of the simulated vectors tells them apart
+	 * @throws IllegalArgumentException if b lacks one of a's outputs
+	 */
+	public static SortedMap<String,Boolean> counterexample(final FProgram a, final FProgram b) {
+		return counterexample(a, b, DEFAULT_ROUNDS, DEFAULT_SEED);
+	}
+
+	public static SortedMap<String,Boolean> counterexample(final FProgram a, final FProgram b,
+			final int rounds, final long seed) {
+		final BitParallelSimulator simA = new BitParallelSimulator(a);
+		final BitParallelSimulator simB = new BitParallelSimulator(b);
+		
+		// pair up the outputs: output o of a is output pair[o] of b
+		final int[] pair = new int[simA.outputs().size()];
+		for (int o = 0; o < pair.length; o++) {
+			pair[o] = simB.outputs().indexOf(simA.outputs().get(o));
+			if (pair[o] < 0) throw new IllegalArgumentException("no output " + simA.outputs().get(o) + " in " + b);
+		}
+
+		final Set<String> union = new LinkedHashSet<String>(DetermineInputVars.inputVars(a));
+		union.addAll(DetermineInputVars.inputVars(b));
+		final List<String> vars = new ArrayList<String>(union);
+		final int n = vars.size();
+		final int corners = 2 + 2 * n;
+		final int batches = Math.max(rounds, (corners + 63) / 64);
+		final Random random = new Random(seed);
+
+		for (int batch = 0; batch < batches; batch++) {
+			final Map<String,Long> inputs = new HashMap<String,Long>();
+			for (int v = 0; v < n; v++) {
+				inputs.put(vars.get(v), word(batch, v, n, corners, random));
+			}
+			final long[] x = simA.evaluate(inputs);
+			final long[] y = simB.evaluate(inputs);
+			for (int o = 0; o < pair.length; o++) {
+				final long diff = x[o] ^ y[pair[o]];
+				if (diff != 0L) {
+					final int bit = Long.numberOfTrailingZeros(diff);
+					final SortedMap<String,Boolean> witness = new TreeMap<String,Boolean>();
+					for (final Map.Entry<String,Long> e : inputs.entrySet()) {
+						witness.put(e.getKey(), ((e.getValue() >>> bit) & 1L) != 0L);
+					}
+					return witness;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The 64 values of input v in the given batch. Vector k of the whole
+	 * run is corner case k while k < corners, and random afterwards.
+	 */
+	private static long word(final int batch, final int v, final int n, final int corners, final Random random) {
+		long w = random.nextLong();
+		for (int bit = 0; bit < 64; bit++) {
+			final int k = batch * 64 + bit;
+			if (k >= corners) break;
+			final boolean value;
+			if (k == 0) {
+				value = false;
+			} else if (k == 1) {
+				value = true;
+			} else if (k < 2 + n) {
+				value = (k - 2 == v);
+			} else {
+				value = (k - 2 - n != v);
+			}
+			w = value ? (w | (1L << bit)) : (w & ~(1L << bit));
+		}
+		return w;
+	}
+}
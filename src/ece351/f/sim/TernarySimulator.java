@@ -0,0 +1,179 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import java.util.List;
+
+import ece351.f.ast.FProgram;
+import ece351.w.ast.WProgram;
+
+/**
+ * Simulates an FProgram over the bits 0, 1 and U (unknown) of
+ * Waveform.LEGAL_BITS, 64 time steps at once. Each signal is dual-rail:
+ * one word has the steps at which it is surely 1, the other the steps at
+ * which it is surely 0, and U is in neither. Then an and is 1 where all
+ * its fanins are 1 and 0 where any is 0, and so on, so an unknown only
+ * reaches the outputs whose values it can change (through a single gate:
+ * 'a or not a' is U where a is, as in any gate-level X-propagation).
+ * 
+ * The other simulators are two-valued: they reject a U bit with an
+ * IllegalArgumentException rather than guess a value for it.
+ */
+public final class TernarySimulator {
+
+	private final Netlist netlist;
+
+	public TernarySimulator(final FProgram program) {
+		this.netlist = new Netlist(program);
+	}
+
+	public List<String> inputs() { return netlist.inputs(); }
+	public List<String> outputs() { return netlist.outputs(); }
+
+	public static WProgram simulate(final FProgram program, final WProgram w) {
+		return new TernarySimulator(program).simulate(w);
+	}
+
+	/**
+	 * The output waveforms, one per formula, over the time steps of w.
+	 * @throws IllegalArgumentException if an input has no waveform in w
+	 */
+	public WProgram simulate(final WProgram w) {
+		final int timeCount = w.timeCount();
+		final int words = BitParallelSimulator.words(timeCount);
+		final long[][] in1 = new long[inputs().size()][words];
+		final long[][] in0 = new long[inputs().size()][words];
+		for (int i = 0; i < in1.length; i++) {
+			pack(CompiledSimulator.waveform(w, inputs().get(i)).bits, in1[i], in0[i]);
+		}
+		final long[][] out1 = new long[outputs().size()][words];
+		final long[][] out0 = new long[outputs().size()][words];
+		evaluate(in1, in0, out1, out0, 0, words);
+		final String[][] bits = new String[out1.length][];
+		for (int o = 0; o < out1.length; o++) {
+			bits[o] = unpack(out1[o], out0[o], timeCount);
+		}
+		return CompiledSimulator.program(outputs(), bits);
+	}
+
+	/**
+	 * Evaluate words [from, to) of the packed inputs into the packed
+	 * outputs: the 1 rails and the 0 rails, indexed as inputs() and outputs().
+	 */
+	void evaluate(final long[][] in1, final long[][] in0, final long[][] out1, final long[][] out0,
+			final int from, final int to) {
+		final int[] op = netlist.op;
+		final int[][] fanins = netlist.fanins;
+		final int[] outputNodes = netlist.outputNodes;
+		final long[] v1 = new long[op.length];
+		final long[] v0 = new long[op.length];
+		for (int word = from; word < to; word++) {
+			for (int i = 0; i < in1.length; i++) {
+				v1[i] = in1[i][word];
+				v0[i] = in0[i][word];
+			}
+			for (int n = in1.length; n < op.length; n++) {
+				final int[] f = fanins[n];
+				long x1;
+				long x0;
+				switch (op[n]) {
+				case Netlist.FALSE: x1 = 0L; x0 = -1L; break;
+				case Netlist.TRUE: x1 = -1L; x0 = 0L; break;
+				case Netlist.NOT: x1 = v0[f[0]]; x0 = v1[f[0]]; break;
+				case Netlist.AND:
+				case Netlist.NAND:
+					x1 = -1L;
+					x0 = 0L;
+					for (final int i : f) {
+						x1 &= v1[i];
+						x0 |= v0[i];
+					}
+					break;
+				case Netlist.OR:
+				case Netlist.NOR:
+					x1 = 0L;
+					x0 = -1L;
+					for (final int i : f) {
+						x1 |= v1[i];
+						x0 &= v0[i];
+					}
+					break;
+				case Netlist.XOR:
+				case Netlist.XNOR:
+					x1 = 0L;
+					x0 = -1L;
+					for (final int i : f) {
+						final long y1 = (x1 & v0[i]) | (x0 & v1[i]);
+						x0 = (x1 & v1[i]) | (x0 & v0[i]);
+						x1 = y1;
+					}
+					break;
+				default:
+					throw new IllegalStateException("unknown gate: " + op[n]);
+				}
+				if (op[n] == Netlist.NAND || op[n] == Netlist.NOR || op[n] == Netlist.XNOR) {
+					v1[n] = x0;
+					v0[n] = x1;
+				} else {
+					v1[n] = x1;
+					v0[n] = x0;
+				}
+			}
+			for (int o = 0; o < out1.length; o++) {
+				out1[o][word] = v1[outputNodes[o]];
+				out0[o][word] = v0[outputNodes[o]];
+			}
+		}
+	}
+
+	/** Pack bits into its 1 rail and its 0 rail, as BitParallelSimulator.pack does. */
+	static void pack(final List<String> bits, final long[] ones, final long[] zeros) {
+		for (int t = 0; t < bits.size(); t++) {
+			final String b = bits.get(t);
+			if (b.equals("1")) {
+				ones[t >>> 6] |= 1L << t;
+			} else if (b.equals("0")) {
+				zeros[t >>> 6] |= 1L << t;
+			}
+		}
+	}
+
+	/** The first timeCount bits of a signal: U where neither rail is set. */
+	static String[] unpack(final long[] ones, final long[] zeros, final int timeCount) {
+		final String[] bits = new String[timeCount];
+		for (int t = 0; t < timeCount; t++) {
+			if ((ones[t >>> 6] >>> t & 1L) != 0) {
+				bits[t] = "1";
+			} else if ((zeros[t >>> 6] >>> t & 1L) != 0) {
+				bits[t] = "0";
+			} else {
+				bits[t] = "U";
+			}
+		}
+		return bits;
+	}
+}
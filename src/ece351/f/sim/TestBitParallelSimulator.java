@@ -0,0 +1,109 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.parboiled.common.ImmutableList;
+
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.w.ast.WProgram;
+import ece351.w.ast.Waveform;
+
+public class TestBitParallelSimulator extends BaseTest351 {
+
+	/** Unpacking a packed waveform gives it back, across word boundaries. */
+	@Test
+	public void testPackUnpack() {
+		final Random random = new Random(351);
+		for (final int timeCount : new int[] { 0, 1, 63, 64, 65, 128, 200 }) {
+			final String[] bits = randomBits(timeCount, random);
+			final long[] words = BitParallelSimulator.pack(new Waveform(ImmutableList.of(bits), "a"));
+			assertEquals(BitParallelSimulator.words(timeCount), words.length);
+			assertArrayEquals(bits, BitParallelSimulator.unpack(words, timeCount));
+		}
+	}
+
+	/** Every operator agrees with the compiled simulator. */
+	@Test
+	public void testOperators() {
+		final VarExpr a = new VarExpr("a");
+		final VarExpr b = new VarExpr("b");
+		final VarExpr c = new VarExpr("c");
+		final List<Expr> exprs = Arrays.<Expr>asList(
+				new XOrExpr(a, b), new NAndExpr(a, b), new NOrExpr(b, c), new XNOrExpr(a, c),
+				new EqualExpr(b, c), new NotExpr(new OrExpr(a, ConstantExpr.FalseExpr)),
+				new NaryAndExpr(a, b, new NotExpr(c)), new NaryOrExpr(a, b, c),
+				new NaryAndExpr(a, ConstantExpr.TrueExpr), ConstantExpr.TrueExpr);
+		checkAgainstCompiled(TestCompiledSimulator.program(exprs), 1000);
+	}
+
+	/** Random waveforms of timeCount steps for inputs. */
+	static WProgram randomInputs(final List<String> inputs, final int timeCount, final Random random) {
+		final String[][] bits = new String[inputs.size()][];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = randomBits(timeCount, random);
+		}
+		return CompiledSimulator.program(inputs, bits);
+	}
+
+	private static String[] randomBits(final int timeCount, final Random random) {
+		final String[] bits = new String[timeCount];
+		for (int t = 0; t < timeCount; t++) {
+			bits[t] = random.nextBoolean() ? "1" : "0";
+		}
+		return bits;
+	}
+
+	private static void checkAgainstCompiled(final FProgram p, final int timeCount) {
+		final BitParallelSimulator sim = new BitParallelSimulator(p);
+		final CompiledSimulator compiled = new CompiledSimulator(p);
+		assertEquals(compiled.inputs(), sim.inputs());
+		assertEquals(compiled.outputs(), sim.outputs());
+		final WProgram w = randomInputs(sim.inputs(), timeCount, new Random(timeCount));
+		assertEquals(compiled.simulate(w), sim.simulate(w));
+	}
+}
@@ -0,0 +1,147 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+import ece351.util.TestPrograms351;
+import ece351.util.Utils351;
+import ece351.w.ast.WProgram;
+import ece351.w.ast.Waveform;
+import ece351.w.rdescent.WRecursiveDescentParser;
+
+public class TestCompiledSimulator extends BaseTest351 {
+
+	/** Every operator agrees with the bit-parallel evaluator on every input. */
+	@Test
+	public void testOperators() {
+		final VarExpr a = new VarExpr("a");
+		final VarExpr b = new VarExpr("b");
+		final VarExpr c = new VarExpr("c");
+		final List<Expr> exprs = Arrays.<Expr>asList(
+				new XOrExpr(a, b), new NAndExpr(a, b), new NOrExpr(b, c), new XNOrExpr(a, c),
+				new EqualExpr(b, c), new NotExpr(new OrExpr(a, ConstantExpr.FalseExpr)),
+				new NaryAndExpr(a, b, new NotExpr(c)), new NaryOrExpr(a, b, c),
+				new NaryAndExpr(a, ConstantExpr.TrueExpr));
+		final FProgram p = program(exprs);
+		assertEquals(Arrays.asList("a", "b", "c"), new CompiledSimulator(p).inputs());
+		checkAgainstReference(p);
+	}
+
+	/**
+	 * The f file and the staff simulator output of each formula that has
+	 * one. The staff output has the input waveforms, then the outputs.
+	 */
+	static List<String[]> staffCases() {
+		final List<String[]> cases = new ArrayList<String[]>();
+		for (final File w : Utils351.files("tests/f/staff.out/simulator", "^.*\\.wave$")) {
+			final File f = new File("tests/f", w.getName().replace(".wave", ".f"));
+			if (f.exists()) cases.add(new String[] { f.getPath(), w.getPath() });
+		}
+		return cases;
+	}
+
+	static FProgram formula(final String[] t) {
+		return FRecursiveDescentParser.parse(Utils351.readFile(t[0]));
+	}
+
+	/** The waveforms of the staff output that are not outputs of the formula. */
+	static WProgram staffInputs(final String[] t) {
+		final Set<String> outputs = new HashSet<String>();
+		for (final AssignmentStatement f : formula(t).formulas) {
+			outputs.add(f.outputVar.identifier);
+		}
+		WProgram inputs = new WProgram();
+		for (final Waveform w : WRecursiveDescentParser.parse(Utils351.readFile(t[1])).waveforms) {
+			if (!outputs.contains(w.name)) inputs = inputs.append(w);
+		}
+		return inputs;
+	}
+
+	/** The output waveforms of the staff simulator, in the order of the formulas. */
+	static WProgram staffOutputs(final String[] t) {
+		final WProgram staff = WRecursiveDescentParser.parse(Utils351.readFile(t[1]));
+		WProgram outputs = new WProgram();
+		for (final AssignmentStatement f : formula(t).formulas) {
+			outputs = outputs.append(CompiledSimulator.waveform(staff, f.outputVar.identifier));
+		}
+		return outputs;
+	}
+
+	static FProgram program(final List<Expr> exprs) {
+		final List<AssignmentStatement> formulas = new ArrayList<AssignmentStatement>();
+		for (int i = 0; i < exprs.size(); i++) {
+			formulas.add(new AssignmentStatement(new VarExpr("x" + i), exprs.get(i)));
+		}
+		return new FProgram(formulas);
+	}
+
+	private static void checkAgainstReference(final FProgram p) {
+		final CompiledSimulator sim = new CompiledSimulator(p);
+		final int n = sim.inputs().size();
+		final boolean[] in = new boolean[n];
+		final boolean[] out = new boolean[p.formulas.size()];
+		for (int m = 0; m < 1 << n; m++) {
+			final Map<String,Boolean> values = new HashMap<String,Boolean>();
+			for (int i = 0; i < n; i++) {
+				in[i] = ((m >> i) & 1) != 0;
+				values.put(sim.inputs().get(i), in[i]);
+			}
+			sim.circuit().evaluate(in, out);
+			for (int o = 0; o < out.length; o++) {
+				assertEquals("x" + o, TestPrograms351.value(p.formulas.get(o).expr, values), out[o]);
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.w.ast.WProgram;
+
+public class TestEventDrivenSimulator extends BaseTest351 {
+
+	/**
+	 * On a wide design where one input toggles per step, only its cone is
+	 * evaluated again.
+	 */
+	@Test
+	public void testLowActivity() {
+		final List<Expr> exprs = new ArrayList<Expr>();
+		for (int i = 0; i < 64; i++) {
+			Expr e = new VarExpr("a" + i);
+			for (int k = 0; k < 10; k++) {
+				e = new XOrExpr(new AndExpr(e, new VarExpr("b" + i)), new NotExpr(new VarExpr("c" + i)));
+			}
+			exprs.add(e);
+		}
+		final FProgram p = TestCompiledSimulator.program(exprs);
+		final EventDrivenSimulator sim = new EventDrivenSimulator(p);
+		
+		// random initial values, then one toggle per step
+		final int timeCount = 1000;
+		final Random random = new Random(351);
+		final String[][] bits = new String[sim.inputs().size()][timeCount];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i][0] = random.nextBoolean() ? "1" : "0";
+		}
+		for (int t = 1; t < timeCount; t++) {
+			final int toggled = random.nextInt(bits.length);
+			for (int i = 0; i < bits.length; i++) {
+				final boolean toggle = i == toggled;
+				bits[i][t] = toggle ^ bits[i][t - 1].equals("1") ? "1" : "0";
+			}
+		}
+		final WProgram w = CompiledSimulator.program(sim.inputs(), bits);
+		assertEquals(BitParallelSimulator.simulate(p, w), sim.simulate(w));
+		final long full = (long) sim.gates() * timeCount;
+		assertTrue(sim.evaluations() + " of " + full, sim.evaluations() * 20 < full);
+	}
+}
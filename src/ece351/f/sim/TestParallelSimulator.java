@@ -0,0 +1,84 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.w.ast.WProgram;
+
+public class TestParallelSimulator extends BaseTest351 {
+
+	/**
+	 * Formulas that share an input or a subexpression are in one cone;
+	 * constants are not shared.
+	 */
+	@Test
+	public void testCones() {
+		final Expr ab = new AndExpr(new VarExpr("a"), new VarExpr("b"));
+		final FProgram p = TestCompiledSimulator.program(Arrays.<Expr>asList(
+				ab, new OrExpr(new VarExpr("c"), ConstantExpr.TrueExpr),
+				new XOrExpr(ab, new VarExpr("e")), ConstantExpr.TrueExpr,
+				new NotExpr(new VarExpr("f")), new NaryOrExpr(new VarExpr("d"), new VarExpr("c"))));
+		final ParallelSimulator sim = new ParallelSimulator(p);
+		assertEquals(4, sim.cones());
+		assertEquals(Arrays.asList("x0", "x1", "x2", "x3", "x4", "x5"), sim.outputs());
+		checkAgainstBitParallel(p, 3 * ParallelSimulator.GRAIN * 64 + 17);
+	}
+
+	/** Many windows of one cone, the last of them partial. */
+	@Test
+	public void testWindows() {
+		Expr e = new VarExpr("a");
+		for (int i = 0; i < 50; i++) {
+			e = new XOrExpr(new AndExpr(e, new VarExpr("b" + i % 7)), new OrExpr(e, new VarExpr("c")));
+		}
+		final FProgram p = TestCompiledSimulator.program(Arrays.asList(e, new NotExpr(e)));
+		assertEquals(1, new ParallelSimulator(p).cones());
+		checkAgainstBitParallel(p, 5 * ParallelSimulator.GRAIN * 64 - 1);
+	}
+
+	private static void checkAgainstBitParallel(final FProgram p, final int timeCount) {
+		final BitParallelSimulator expected = new BitParallelSimulator(p);
+		final WProgram w = TestBitParallelSimulator.randomInputs(expected.inputs(), timeCount, new Random(timeCount));
+		assertEquals(expected.simulate(w), ParallelSimulator.simulate(p, w));
+	}
+}
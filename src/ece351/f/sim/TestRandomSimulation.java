@@ -0,0 +1,97 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import ece351.f.ast.FProgram;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.util.BaseTest351;
+import ece351.util.TestInputs351;
+import ece351.util.TestPrograms351;
+
+/**
+ * Checks that random simulation never rejects equivalent programs, and
+ * that its witnesses really distinguish the programs it rejects.
+ */
+public final class TestRandomSimulation extends BaseTest351 {
+
+	@Test
+	public void testFormulaFiles() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final FProgram original = TestPrograms351.parse(f);
+			assertNull(f.getName(), RandomSimulation.counterexample(original, original.simplify()));
+
+			final FProgram negated = TestPrograms351.negateFirstOutput(original);
+			final SortedMap<String,Boolean> witness = RandomSimulation.counterexample(original, negated);
+			assertNotNull(f.getName(), witness);
+			assertTrue(f.getName(), TestPrograms351.distinguishes(witness, original, negated));
+		}
+	}
+
+	@Test
+	public void testCorners() {
+		final StringBuilder and = new StringBuilder("x <= a0");
+		final StringBuilder or = new StringBuilder("x <= a0");
+		final StringBuilder oneHot = new StringBuilder("x <= a0");
+		for (int i = 1; i < 40; i++) {
+			and.append(" and a" + i);
+			or.append(" or a" + i);
+			oneHot.append(" and not a" + i);
+		}
+		// each pair differs on exactly one of 2^40 inputs
+		assertCorner(and + ";", "x <= '0';", true);
+		assertCorner(or + ";", "x <= '1';", false);
+		final SortedMap<String,Boolean> w = RandomSimulation.counterexample(parse(oneHot + ";"), parse("x <= '0';"));
+		assertNotNull(w);
+		assertTrue(w.get("a0"));
+		assertFalse(w.get("a1"));
+	}
+
+	private static void assertCorner(final String a, final String b, final boolean value) {
+		final SortedMap<String,Boolean> w = RandomSimulation.counterexample(parse(a), parse(b));
+		assertNotNull(w);
+		assertEquals(40, w.size());
+		for (final boolean v : w.values()) {
+			assertEquals(value, v);
+		}
+	}
+
+	private static FProgram parse(final String s) {
+		return FRecursiveDescentParser.parse(s);
+	}
+}
@@ -0,0 +1,175 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.util.TestPrograms351;
+import ece351.w.ast.WProgram;
+import ece351.w.rdescent.WRecursiveDescentParser;
+
+/**
+ * What every waveform simulator must do: agree with the staff simulator,
+ * keep shared subexpressions shared, and not guess at unknown bits.
+ */
+@RunWith(Parameterized.class)
+public final class TestSimulators extends BaseTest351 {
+
+	/** A simulator under test. */
+	static abstract class Simulator {
+		abstract WProgram simulate(FProgram p, WProgram w);
+	}
+
+	private final String name;
+	private final Simulator simulator;
+
+	public TestSimulators(final String name, final Simulator simulator) {
+		this.name = name;
+		this.simulator = simulator;
+	}
+
+	@Parameterized.Parameters(name = "{0}")
+	public static Collection<Object[]> simulators() {
+		final List<Object[]> simulators = new ArrayList<Object[]>();
+		simulators.add(new Object[] { "compiled", new Simulator() {
+			@Override
+			WProgram simulate(final FProgram p, final WProgram w) {
+				return CompiledSimulator.simulate(p, w);
+			}
+		} });
+		simulators.add(new Object[] { "bit-parallel", new Simulator() {
+			@Override
+			WProgram simulate(final FProgram p, final WProgram w) {
+				return BitParallelSimulator.simulate(p, w);
+			}
+		} });
+		simulators.add(new Object[] { "parallel", new Simulator() {
+			@Override
+			WProgram simulate(final FProgram p, final WProgram w) {
+				return ParallelSimulator.simulate(p, w);
+			}
+		} });
+		simulators.add(new Object[] { "ternary", new Simulator() {
+			@Override
+			WProgram simulate(final FProgram p, final WProgram w) {
+				return TernarySimulator.simulate(p, w);
+			}
+		} });
+		simulators.add(new Object[] { "event-driven", new Simulator() {
+			@Override
+			WProgram simulate(final FProgram p, final WProgram w) {
+				return EventDrivenSimulator.simulate(p, w);
+			}
+		} });
+		return simulators;
+	}
+
+	/** Agrees with the staff simulator outputs. */
+	@Test
+	public void staffOutputs() {
+		for (final String[] t : TestCompiledSimulator.staffCases()) {
+			final WProgram expected = TestCompiledSimulator.staffOutputs(t);
+			final FProgram f = TestCompiledSimulator.formula(t);
+			assertEquals(t[0], expected, simulator.simulate(f, TestCompiledSimulator.staffInputs(t)));
+		}
+	}
+
+	/**
+	 * Sharing is preserved: each level uses the one below twice, so a tree
+	 * walk would take exponential time.
+	 */
+	@Test
+	public void sharing() {
+		Expr e = new VarExpr("a");
+		for (int i = 0; i < 200; i++) {
+			e = new XOrExpr(new AndExpr(e, new VarExpr("b")), new OrExpr(e, new VarExpr("c")));
+		}
+		final FProgram p = TestCompiledSimulator.program(Arrays.asList(e, new NotExpr(e), new VarExpr("b")));
+		final List<String> inputs = Arrays.asList("a", "b", "c");
+		final WProgram w = TestBitParallelSimulator.randomInputs(inputs, 1000, new Random(1000));
+		assertEquals(evaluate(p, inputs, w), simulator.simulate(p, w));
+	}
+
+	/** Only the ternary simulator takes U: the two-valued ones reject it. */
+	@Test
+	public void unknown() {
+		final FProgram p = TestCompiledSimulator.program(Arrays.<Expr>asList(
+				new AndExpr(new VarExpr("a"), new VarExpr("b"))));
+		final WProgram w = WRecursiveDescentParser.parse("a: 1 U 0; b: 1 1 U;");
+		if (name.equals("ternary")) {
+			assertEquals(WRecursiveDescentParser.parse("x0: 1 U 0;"), simulator.simulate(p, w));
+		} else {
+			try {
+				simulator.simulate(p, w);
+				fail(name + " simulator read an unknown bit");
+			} catch (final IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	/** The outputs of p on w, one time step and one operator at a time. */
+	private static WProgram evaluate(final FProgram p, final List<String> inputs, final WProgram w) {
+		final int timeCount = w.timeCount();
+		final String[][] bits = new String[p.formulas.size()][timeCount];
+		for (int t = 0; t < timeCount; t++) {
+			final Map<String,Boolean> values = new HashMap<String,Boolean>();
+			for (final String name : inputs) {
+				values.put(name, w.valueAtTime(name, t));
+			}
+			for (int o = 0; o < bits.length; o++) {
+				bits[o][t] = TestPrograms351.value(p.formulas.get(o).expr, values) ? "1" : "0";
+			}
+		}
+		final List<String> outputs = new ArrayList<String>();
+		for (int o = 0; o < bits.length; o++) {
+			outputs.add(p.formulas.get(o).outputVar.identifier);
+		}
+		return CompiledSimulator.program(outputs, bits);
+	}
+}
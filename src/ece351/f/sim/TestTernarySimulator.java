@@ -0,0 +1,135 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.sim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.util.TestPrograms351;
+import ece351.w.ast.WProgram;
+import ece351.w.rdescent.WRecursiveDescentParser;
+
+public class TestTernarySimulator extends BaseTest351 {
+
+	private static final String[] BITS = { "0", "1", "U" };
+
+	/**
+	 * Each gate is U exactly where its value depends on an unknown input:
+	 * no input occurs twice, so dual-rail is exact.
+	 */
+	@Test
+	public void testOperators() {
+		final VarExpr a = new VarExpr("a");
+		final VarExpr b = new VarExpr("b");
+		final VarExpr c = new VarExpr("c");
+		final List<Expr> exprs = Arrays.<Expr>asList(
+				new XOrExpr(a, b), new NAndExpr(a, b), new NOrExpr(b, c), new XNOrExpr(a, c),
+				new EqualExpr(b, c), new NotExpr(new OrExpr(a, ConstantExpr.FalseExpr)),
+				new NaryAndExpr(a, b, new NotExpr(c)), new NaryOrExpr(a, b, c),
+				new XOrExpr(new XOrExpr(a, b), c), new NaryAndExpr(a, ConstantExpr.TrueExpr),
+				ConstantExpr.FalseExpr);
+		final FProgram p = TestCompiledSimulator.program(exprs);
+		
+		// every combination of 0, 1 and U, one per time step
+		final String[][] in = new String[3][27];
+		for (int t = 0; t < 27; t++) {
+			in[0][t] = BITS[t % 3];
+			in[1][t] = BITS[t / 3 % 3];
+			in[2][t] = BITS[t / 9];
+		}
+		final WProgram out = TernarySimulator.simulate(p, CompiledSimulator.program(Arrays.asList("a", "b", "c"), in));
+		for (int o = 0; o < exprs.size(); o++) {
+			for (int t = 0; t < 27; t++) {
+				assertEquals("x" + o + " at " + t, expected(exprs.get(o), in, t),
+						out.waveforms.get(o).bits.get(t));
+			}
+		}
+	}
+
+	/** Unknowns are stopped by controlling values, but not by reconvergence. */
+	@Test
+	public void testPropagation() {
+		final WProgram w = WRecursiveDescentParser.parse("a: U 0 1 U; b: 0 U U 1;");
+		final FProgram q = TestCompiledSimulator.program(Arrays.<Expr>asList(
+				new NaryAndExpr(new VarExpr("a"), new VarExpr("b")),
+				new NaryOrExpr(new VarExpr("a"), new NotExpr(new VarExpr("a")))));
+		assertEquals(WRecursiveDescentParser.parse("x0: 0 0 U U; x1: U 1 1 U;"), TernarySimulator.simulate(q, w));
+	}
+
+	/** Without unknowns, agrees with the two-valued simulator. */
+	@Test
+	public void testBinary() {
+		for (final String[] t : TestCompiledSimulator.staffCases()) {
+			final FProgram f = TestCompiledSimulator.formula(t);
+			final TernarySimulator sim = new TernarySimulator(f);
+			if (!sim.inputs().isEmpty()) {
+				final WProgram w = TestBitParallelSimulator.randomInputs(sim.inputs(), 300, new Random(351));
+				assertEquals(t[0], BitParallelSimulator.simulate(f, w), sim.simulate(w));
+			}
+		}
+	}
+
+	/** The value of e at step t: U if its completions of the unknowns disagree. */
+	private static String expected(final Expr e, final String[][] in, final int t) {
+		String result = null;
+		for (int m = 0; m < 8; m++) {
+			final Map<String,Boolean> values = new HashMap<String,Boolean>();
+			for (int i = 0; i < 3; i++) {
+				final String bit = in[i][t].equals("U") ? ((m >> i & 1) != 0 ? "1" : "0") : in[i][t];
+				values.put(String.valueOf((char) ('a' + i)), bit.equals("1"));
+			}
+			final String value = TestPrograms351.value(e, values) ? "1" : "0";
+			if (result == null) {
+				result = value;
+			} else if (!result.equals(value)) {
+				return "U";
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,233 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.simplifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.parboiled.common.ImmutableList;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+
+/**
+ * A sum-of-products formula as a list of Cubes over a shared table of
+ * variables. This is far more compact than a tree of NaryOrExpr and
+ * NaryAndExpr objects, and the two-level rewrites (complements within a
+ * term, duplicate terms, absorption) become bit operations on cubes.
+ * 
+ * Covers are immutable.
+ */
+public final class Cover {
+
+	/** Variable names, in the order of the cube positions. */
+	public final ImmutableList<String> vars;
+
+	/** The product terms. */
+	public final ImmutableList<Cube> cubes;
+
+	public Cover(final List<String> vars, final List<Cube> cubes) {
+		this.vars = ImmutableList.copyOf(vars);
+		this.cubes = ImmutableList.copyOf(cubes);
+		assert repOk();
+	}
+
+	public boolean repOk() {
+		for (final Cube c : cubes) {
+			assert c.width == vars.size() : "cube width does not match variable table";
+		}
+		return true;
+	}
+
+	/**
+	 * Convert a two-level formula (OR of ANDs of literals, in either binary
+	 * or n-ary form) to a cover. Returns null if the formula is not in that
+	 * form, e.g. if it contains XOR or a negated sub-expression.
+	 */
+	public static Cover fromExpr(final Expr e) {
+		// split into products and literals
+		final List<Expr> products = new ArrayList<Expr>();
+		sum(e, products);
+		final List<List<Expr>> terms = new ArrayList<List<Expr>>(products.size());
+		final SortedMap<String,Integer> index = new TreeMap<String,Integer>();
+		for (final Expr p : products) {
+			final List<Expr> literals = new ArrayList<Expr>();
+			if (!product(p, literals)) return null;
+			for (final Expr literal : literals) {
+				if (literal instanceof VarExpr) {
+					index.put(((VarExpr) literal).identifier, 0);
+				} else if (literal instanceof NotExpr) {
+					index.put(((VarExpr) ((NotExpr) literal).expr).identifier, 0);
+				}
+			}
+			terms.add(literals);
+		}
+		
+		// number the variables alphabetically
+		final List<String> vars = new ArrayList<String>(index.keySet());
+		for (int i = 0; i < vars.size(); i++) {
+			index.put(vars.get(i), i);
+		}
+		
+		// encode the terms
+		final List<Cube> cubes = new ArrayList<Cube>(terms.size());
+		terms:
+		for (final List<Expr> literals : terms) {
+			Cube c = Cube.universe(vars.size());
+			for (final Expr literal : literals) {
+				if (literal instanceof VarExpr) {
+					final int v = index.get(((VarExpr) literal).identifier);
+					c = c.with(v, c.get(v) & Cube.ONE);
+				} else if (literal instanceof NotExpr) {
+					final int v = index.get(((VarExpr) ((NotExpr) literal).expr).identifier);
+					c = c.with(v, c.get(v) & Cube.ZERO);
+				} else if (literal.equals(ConstantExpr.FalseExpr)) {
+					// x.0 = 0: contributes nothing to the sum
+					continue terms;
+				}
+				// x.1 = x: nothing to do
+			}
+			cubes.add(c);
+		}
+		return new Cover(vars, cubes);
+	}
+
+	private static void sum(final Expr e, final List<Expr> products) {
+		if (e instanceof OrExpr) {
+			sum(((OrExpr) e).left, products);
+			sum(((OrExpr) e).right, products);
+		} else if (e instanceof NaryOrExpr) {
+			for (final Expr c : ((NaryExpr) e).children) {
+				sum(c, products);
+			}
+		} else {
+			products.add(e);
+		}
+	}
+
+	private static boolean product(final Expr e, final List<Expr> literals) {
+		if (e instanceof AndExpr) {
+			return product(((AndExpr) e).left, literals)
+					&& product(((AndExpr) e).right, literals);
+		} else if (e instanceof NaryAndExpr) {
+			for (final Expr c : ((NaryExpr) e).children) {
+				if (!product(c, literals)) return false;
+			}
+			return true;
+		} else if (e instanceof VarExpr || e instanceof ConstantExpr
+				|| (e instanceof NotExpr && ((NotExpr) e).expr instanceof VarExpr)) {
+			literals.add(e);
+			return true;
+		} else {
+			// not two-level
+			return false;
+		}
+	}
+
+	/**
+	 * Convert back to an expression: an NaryOrExpr of NaryAndExprs, with
+	 * single terms and single literals unwrapped.
+	 */
+	public Expr toExpr() {
+		final List<Expr> sum = new ArrayList<Expr>(cubes.size());
+		for (final Cube c : cubes) {
+			if (c.isEmpty()) continue;
+			if (c.isUniverse()) return ConstantExpr.TrueExpr;
+			final List<Expr> product = new ArrayList<Expr>(c.literals());
+			for (int v = 0; v < c.width; v++) {
+				switch (c.get(v)) {
+				case Cube.ONE:
+					product.add(new VarExpr(vars.get(v)));
+					break;
+				case Cube.ZERO:
+					product.add(new NotExpr(new VarExpr(vars.get(v))));
+					break;
+				default:
+					break;
+				}
+			}
+			sum.add(product.size() == 1 ? product.get(0) : new NaryAndExpr(product));
+		}
+		if (sum.isEmpty()) return ConstantExpr.FalseExpr;
+		if (sum.size() == 1) return sum.get(0);
+		return new NaryOrExpr(sum);
+	}
+
+	/**
+	 * Single-cube containment: remove empty cubes (complements such as
+	 * x.!x), duplicates, and every cube that is contained in another one
+	 * (absorption: x + x.y = x). Larger cubes (fewer literals) are kept
+	 * first, so each cube is only compared against cubes that can contain it.
+	 */
+	public Cover removeContained() {
+		final List<Cube> sorted = new ArrayList<Cube>(cubes.size());
+		for (final Cube c : cubes) {
+			if (!c.isEmpty()) { sorted.add(c); }
+		}
+		Collections.sort(sorted, new Comparator<Cube>() {
+			@Override
+			public int compare(final Cube a, final Cube b) {
+				return Integer.compare(a.literals(), b.literals());
+			}
+		});
+		final Set<Cube> kept = new LinkedHashSet<Cube>(sorted.size());
+		for (final Cube c : sorted) {
+			if (kept.contains(c)) continue;
+			boolean contained = false;
+			for (final Cube k : kept) {
+				if (k.contains(c)) { contained = true; break; }
+			}
+			if (!contained) { kept.add(c); }
+		}
+		if (kept.size() == cubes.size()) return this;
+		return new Cover(vars, new ArrayList<Cube>(kept));
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder b = new StringBuilder();
+		b.append(vars);
+		for (final Cube c : cubes) {
+			b.append(' ');
+			b.append(c);
+		}
+		return b.toString();
+	}
+}
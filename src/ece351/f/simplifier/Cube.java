@@ -0,0 +1,193 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.simplifier;
+
+import java.util.Arrays;
+
+/**
+ * A product term over a fixed, numbered set of variables, in the
+ * positional cube notation used by Espresso. Each variable takes two
+ * bits, packed 32 variables to a long:
+ * 
+ *   01  the variable must be 0   (literal !x)
+ *   10  the variable must be 1   (literal x)
+ *   11  don't care               (x does not occur)
+ *   00  no value possible        (the cube is empty, e.g. x.!x)
+ * 
+ * A cube is then the set of minterms it covers, and the usual set
+ * operations become word-parallel bit operations: intersection is AND,
+ * containment is a masked comparison, and emptiness is a search for a
+ * 00 field. Unused fields of the last word are kept at 11 so that they
+ * never look empty or distinguish two cubes.
+ * 
+ * Cubes are immutable.
+ */
+public final class Cube {
+
+	public static final int EMPTY = 0;
+	public static final int ZERO = 1;
+	public static final int ONE = 2;
+	public static final int DASH = 3;
+
+	/** Low bit of every two-bit field. */
+	private static final long LOW = 0x5555555555555555L;
+
+	private static final int FIELDS_PER_WORD = 32;
+
+	/** Number of variables. */
+	public final int width;
+
+	private final long[] words;
+
+	private final int hash;
+
+	private Cube(final int width, final long[] words) {
+		this.width = width;
+		this.words = words;
+		this.hash = 31 * width + Arrays.hashCode(words);
+	}
+
+	/** The cube that covers every minterm: all variables are don't care. */
+	public static Cube universe(final int width) {
+		final long[] w = new long[(width + FIELDS_PER_WORD - 1) / FIELDS_PER_WORD];
+		Arrays.fill(w, -1L);
+		return new Cube(width, w);
+	}
+
+	/** The value of a variable: EMPTY, ZERO, ONE or DASH. */
+	public int get(final int var) {
+		assert var >= 0 && var < width;
+		return (int) (words[var / FIELDS_PER_WORD] >>> shift(var)) & 3;
+	}
+
+	/** A copy of this cube with one variable set to the given value. */
+	public Cube with(final int var, final int value) {
+		assert var >= 0 && var < width;
+		assert value >= EMPTY && value <= DASH;
+		final long[] w = words.clone();
+		final int i = var / FIELDS_PER_WORD;
+		w[i] = (w[i] & ~(3L << shift(var))) | ((long) value << shift(var));
+		return new Cube(width, w);
+	}
+
+	/** Does this cube cover every minterm of c? */
+	public boolean contains(final Cube c) {
+		assert c.width == width;
+		for (int i = 0; i < words.length; i++) {
+			if ((c.words[i] & ~words[i]) != 0) return false;
+		}
+		return true;
+	}
+
+	/** The minterms covered by both cubes. */
+	public Cube intersect(final Cube c) {
+		assert c.width == width;
+		final long[] w = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			w[i] = words[i] & c.words[i];
+		}
+		return new Cube(width, w);
+	}
+
+	/** The smallest cube that contains both cubes. */
+	public Cube supercube(final Cube c) {
+		assert c.width == width;
+		final long[] w = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			w[i] = words[i] | c.words[i];
+		}
+		return new Cube(width, w);
+	}
+
+	/**
+	 * The cofactor of this cube with respect to p, or null if they do not
+	 * intersect. Every variable that p fixes becomes don't care.
+	 */
+	public Cube cofactor(final Cube p) {
+		assert p.width == width;
+		final long[] w = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			final long x = words[i] & p.words[i];
+			if ((~x & ~(x >>> 1) & LOW) != 0) return null;
+			w[i] = words[i] | ~p.words[i];
+		}
+		return new Cube(width, w);
+	}
+
+	/** Does this cube cover no minterms at all, i.e., has some 00 field? */
+	public boolean isEmpty() {
+		for (final long w : words) {
+			if ((~w & ~(w >>> 1) & LOW) != 0) return true;
+		}
+		return false;
+	}
+
+	/** Does this cube cover every minterm? */
+	public boolean isUniverse() {
+		for (final long w : words) {
+			if (w != -1L) return false;
+		}
+		return true;
+	}
+
+	/** Number of variables that are not don't care. */
+	public int literals() {
+		int count = 0;
+		for (final long w : words) {
+			count += Long.bitCount(~(w & (w >>> 1)) & LOW);
+		}
+		return count;
+	}
+
+	private static int shift(final int var) {
+		return 2 * (var % FIELDS_PER_WORD);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof Cube)) return false;
+		final Cube that = (Cube) obj;
+		return this.width == that.width
+				&& this.hash == that.hash
+				&& Arrays.equals(this.words, that.words);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder b = new StringBuilder(width);
+		for (int v = 0; v < width; v++) {
+			b.append("@01-".charAt(get(v)));
+		}
+		return b.toString();
+	}
+}
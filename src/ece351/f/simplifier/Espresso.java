@@ -0,0 +1,230 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.simplifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Heuristic two-level minimization in the style of Espresso.
+ * 
+ * Starting from a cover F, repeat until the cost stops improving or the
+ * budget runs out:
+ * 
+ *   reduce       shrink each cube as far as the other cubes allow,
+ *                so that the following expand can move in a new direction
+ *   expand       raise literals of each cube to don't care while it still
+ *                implies F, and drop the cubes that it then contains
+ *   irredundant  drop every cube that is covered by the remaining cubes
+ * 
+ * Each step asks whether a cube c is covered by a cover G, which is the
+ * case exactly when the cofactor of G with respect to c is a tautology.
+ * Tautology is decided by Shannon expansion on the most binate variable,
+ * with the usual unate shortcut. No complement of F is ever built.
+ * 
+ * Every step preserves the function of F, so stopping early (budget
+ * exhausted) always yields a correct, if less minimal, cover.
+ */
+public final class Espresso {
+
+	/** Default number of reduce/expand/irredundant rounds. */
+	public static final int DEFAULT_ITERATIONS = 20;
+
+	/** Default wall-clock budget per cover, in milliseconds. */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 2000;
+
+	private final int width;
+	private final long deadline;
+
+	private Espresso(final int width, final long timeoutMillis) {
+		this.width = width;
+		this.deadline = System.nanoTime() + timeoutMillis * 1000000L;
+	}
+
+	public static Cover minimize(final Cover f) {
+		return minimize(f, DEFAULT_ITERATIONS, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Minimize a cover within the given budget.
+	 * @param f the cover to minimize
+	 * @param iterations maximum number of reduce/expand/irredundant rounds
+	 * @param timeoutMillis wall-clock budget
+	 * @return an equivalent cover whose cost is no greater than that of f
+	 */
+	public static Cover minimize(final Cover f, final int iterations, final long timeoutMillis) {
+		final Espresso e = new Espresso(f.vars.size(), timeoutMillis);
+		final Cover start = f.removeContained();
+		List<Cube> best = new ArrayList<Cube>(start.cubes);
+		List<Cube> current = e.irredundant(e.expand(best));
+		if (cost(current) < cost(best)) { best = current; }
+		for (int i = 0; i < iterations && !e.expired(); i++) {
+			current = e.irredundant(e.expand(e.reduce(current)));
+			if (cost(current) < cost(best)) {
+				best = current;
+			} else {
+				break;
+			}
+		}
+		return best.equals(start.cubes) ? start : new Cover(f.vars, best);
+	}
+
+	/** Number of cubes, then number of literals. */
+	static long cost(final List<Cube> cubes) {
+		long literals = 0;
+		for (final Cube c : cubes) {
+			literals += c.literals();
+		}
+		return ((long) cubes.size() << 32) + literals;
+	}
+
+	private boolean expired() {
+		return System.nanoTime() - deadline > 0;
+	}
+
+	/**
+	 * Raise each cube to a prime implicant, largest cubes first, and drop
+	 * the cubes that are contained in the expanded ones.
+	 */
+	private List<Cube> expand(final List<Cube> f) {
+		final List<Cube> order = new ArrayList<Cube>(f);
+		Collections.sort(order, BY_LITERALS);
+		final List<Cube> result = new ArrayList<Cube>(f.size());
+		for (final Cube c : order) {
+			boolean covered = false;
+			for (final Cube r : result) {
+				if (r.contains(c)) { covered = true; break; }
+			}
+			if (covered) continue;
+			Cube e = c;
+			for (int v = 0; v < width && !expired(); v++) {
+				if (e.get(v) == Cube.DASH) continue;
+				final Cube raised = e.with(v, Cube.DASH);
+				if (covers(f, raised)) {
+					e = raised;
+				}
+			}
+			result.add(e);
+		}
+		return result;
+	}
+
+	/** Remove cubes that are covered by the rest, smallest first. */
+	private List<Cube> irredundant(final List<Cube> f) {
+		final List<Cube> result = new ArrayList<Cube>(f);
+		Collections.sort(result, Collections.reverseOrder(BY_LITERALS));
+		for (int i = 0; i < result.size() && !expired(); ) {
+			final Cube c = result.remove(i);
+			if (!covers(result, c)) {
+				result.add(i, c);
+				i++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Shrink each cube: fix a don't care variable to one value whenever the
+	 * other half of the cube is covered by the other cubes.
+	 */
+	private List<Cube> reduce(final List<Cube> f) {
+		final List<Cube> result = new ArrayList<Cube>(f);
+		Collections.sort(result, BY_LITERALS);
+		for (int i = 0; i < result.size() && !expired(); i++) {
+			Cube c = result.get(i);
+			final List<Cube> others = new ArrayList<Cube>(result);
+			others.remove(i);
+			for (int v = 0; v < width; v++) {
+				if (c.get(v) != Cube.DASH) continue;
+				if (covers(others, c.with(v, Cube.ONE))) {
+					c = c.with(v, Cube.ZERO);
+				} else if (covers(others, c.with(v, Cube.ZERO))) {
+					c = c.with(v, Cube.ONE);
+				}
+			}
+			result.set(i, c);
+		}
+		return result;
+	}
+
+	/**
+	 * Is every minterm of c covered by g? Answers false if the budget
+	 * runs out, which only ever makes the caller more conservative.
+	 */
+	private boolean covers(final List<Cube> g, final Cube c) {
+		final List<Cube> cofactor = new ArrayList<Cube>(g.size());
+		for (final Cube x : g) {
+			final Cube y = x.cofactor(c);
+			if (y != null) { cofactor.add(y); }
+		}
+		return tautology(cofactor);
+	}
+
+	private boolean tautology(final List<Cube> f) {
+		if (f.isEmpty()) return false;
+		for (final Cube c : f) {
+			if (c.isUniverse()) return true;
+		}
+		if (expired()) return false;
+		
+		// find the most binate variable
+		int split = -1;
+		int best = 0;
+		for (int v = 0; v < width; v++) {
+			int zeros = 0;
+			int ones = 0;
+			for (final Cube c : f) {
+				final int x = c.get(v);
+				if (x == Cube.ZERO) {
+					zeros++;
+				} else if (x == Cube.ONE) {
+					ones++;
+				}
+			}
+			if (zeros > 0 && ones > 0 && zeros + ones > best) {
+				best = zeros + ones;
+				split = v;
+			}
+		}
+		// unate cover without a universe cube: not a tautology
+		if (split < 0) return false;
+		
+		final Cube u = Cube.universe(width);
+		return covers(f, u.with(split, Cube.ZERO))
+				&& covers(f, u.with(split, Cube.ONE));
+	}
+
+	/** Fewest literals (i.e., largest cubes) first. */
+	private static final Comparator<Cube> BY_LITERALS = new Comparator<Cube>() {
+		@Override
+		public int compare(final Cube a, final Cube b) {
+			return Integer.compare(a.literals(), b.literals());
+		}
+	};
+}
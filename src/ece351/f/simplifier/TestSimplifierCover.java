@@ -0,0 +1,100 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.simplifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.util.BaseTest351;
+
+public class TestSimplifierCover extends BaseTest351 {
+
+	private static final VarExpr a = new VarExpr("a");
+	private static final VarExpr b = new VarExpr("b");
+	private static final VarExpr c = new VarExpr("c");
+
+	@Test
+	public void testCubeOperations() {
+		// 40 variables, so that the cube spans two words
+		final Cube u = Cube.universe(40);
+		assertTrue(u.isUniverse());
+		assertEquals(0, u.literals());
+		final Cube x = u.with(3, Cube.ONE).with(35, Cube.ZERO);
+		assertEquals(2, x.literals());
+		assertEquals(Cube.ONE, x.get(3));
+		assertEquals(Cube.ZERO, x.get(35));
+		assertEquals(Cube.DASH, x.get(34));
+		assertTrue(u.contains(x));
+		assertFalse(x.contains(u));
+		assertFalse(x.isEmpty());
+		assertTrue(x.intersect(u.with(35, Cube.ONE)).isEmpty());
+		assertEquals(x, u.with(35, Cube.ZERO).with(3, Cube.ONE));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		final Expr e = new NaryOrExpr(new NaryAndExpr(a, new NotExpr(b)), new NaryAndExpr(b, c));
+		final Cover cover = Cover.fromExpr(e);
+		assertEquals(2, cover.cubes.size());
+		assertEquals(e, cover.toExpr());
+	}
+
+	@Test
+	public void testRemoveContained() {
+		// a + a.b + b.!b.c + a.b = a
+		final Expr e = new NaryOrExpr(a, new NaryAndExpr(a, b),
+				new NaryAndExpr(b, new NotExpr(b), c), new NaryAndExpr(b, a));
+		final Cover cover = Cover.fromExpr(e).removeContained();
+		assertEquals(1, cover.cubes.size());
+		assertEquals(a, cover.toExpr());
+	}
+
+	@Test
+	public void testConstants() {
+		assertEquals(ConstantExpr.TrueExpr, Cover.fromExpr(new NaryOrExpr(a, ConstantExpr.TrueExpr)).toExpr());
+		assertEquals(ConstantExpr.FalseExpr, Cover.fromExpr(new NaryAndExpr(a, ConstantExpr.FalseExpr)).toExpr());
+		assertEquals(ConstantExpr.FalseExpr, Cover.fromExpr(new NaryAndExpr(a, new NotExpr(a))).toExpr());
+	}
+
+	@Test
+	public void testNotTwoLevel() {
+		assertNull(Cover.fromExpr(new XOrExpr(a, b)));
+		assertNull(Cover.fromExpr(new NotExpr(new NaryAndExpr(a, b))));
+		assertNull(Cover.fromExpr(new NaryAndExpr(a, new NaryOrExpr(b, c))));
+	}
+}
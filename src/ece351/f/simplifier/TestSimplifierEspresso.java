@@ -0,0 +1,130 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.simplifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.VarExpr;
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.util.CommandLine;
+
+public class TestSimplifierEspresso extends BaseTest351 {
+
+	private static final VarExpr a = new VarExpr("a");
+	private static final VarExpr b = new VarExpr("b");
+	private static final VarExpr c = new VarExpr("c");
+
+	private static Expr minimize(final Expr e) {
+		return Espresso.minimize(Cover.fromExpr(e)).toExpr().simplify();
+	}
+
+	@Test
+	public void testAdjacent() {
+		// a.b + a.!b = a
+		assertEquals(a, minimize(new NaryOrExpr(new NaryAndExpr(a, b), new NaryAndExpr(a, new NotExpr(b)))));
+	}
+
+	@Test
+	public void testConsensus() {
+		// a.b + !a.c + b.c = a.b + !a.c
+		final Expr e = new NaryOrExpr(new NaryAndExpr(a, b), new NaryAndExpr(new NotExpr(a), c), new NaryAndExpr(b, c));
+		assertEquals(new NaryOrExpr(new NaryAndExpr(a, b), new NaryAndExpr(new NotExpr(a), c)), minimize(e));
+	}
+
+	@Test
+	public void testTautology() {
+		// a + !a.b + !a.!b = 1
+		final Expr e = new NaryOrExpr(a, new NaryAndExpr(new NotExpr(a), b), new NaryAndExpr(new NotExpr(a), new NotExpr(b)));
+		assertEquals(ConstantExpr.TrueExpr, minimize(e));
+	}
+
+	@Test
+	public void testRandomCoversKeepFunction() {
+		final int width = 6;
+		final Random random = new Random(351);
+		final List<String> vars = new ArrayList<String>();
+		for (int v = 0; v < width; v++) { vars.add("x" + v); }
+		for (int trial = 0; trial < 200; trial++) {
+			final List<Cube> cubes = new ArrayList<Cube>();
+			final int k = 1 + random.nextInt(12);
+			for (int i = 0; i < k; i++) {
+				Cube cube = Cube.universe(width);
+				for (int v = 0; v < width; v++) {
+					cube = cube.with(v, 1 + random.nextInt(3));
+				}
+				cubes.add(cube);
+			}
+			final Cover f = new Cover(vars, cubes);
+			final Cover g = Espresso.minimize(f);
+			assertTrue(Espresso.cost(g.cubes) <= Espresso.cost(f.cubes));
+			for (int m = 0; m < (1 << width); m++) {
+				Cube minterm = Cube.universe(width);
+				for (int v = 0; v < width; v++) {
+					minterm = minterm.with(v, ((m >> v) & 1) == 0 ? Cube.ZERO : Cube.ONE);
+				}
+				assertEquals(f + " at " + minterm, covers(f, minterm), covers(g, minterm));
+			}
+		}
+	}
+
+	private static boolean covers(final Cover f, final Cube minterm) {
+		for (final Cube c : f.cubes) {
+			if (c.contains(minterm)) return true;
+		}
+		return false;
+	}
+
+	@Test
+	public void testOptimizationLevel() {
+		final CommandLine c5 = new CommandLine("-o5", "x");
+		assertTrue(c5.simplifierOpts.contains(CommandLine.FSimplifierOptions.MINIMIZATION));
+		assertTrue(c5.simplifierOpts.contains(CommandLine.FSimplifierOptions.ABSORPTION));
+		final CommandLine c4 = new CommandLine("-o4", "x");
+		assertTrue(!c4.simplifierOpts.contains(CommandLine.FSimplifierOptions.MINIMIZATION));
+
+		final List<AssignmentStatement> formulas = new ArrayList<AssignmentStatement>();
+		formulas.add(new AssignmentStatement(new VarExpr("y"),
+				new NaryOrExpr(new NaryAndExpr(a, b), new NaryAndExpr(a, new NotExpr(b)))));
+		final FProgram p = new FProgram(formulas);
+		assertEquals(a, p.simplify(c5.simplifierOpts).formulas.get(0).expr);
+		assertEquals(p.simplify(), p.simplify(c4.simplifierOpts));
+	}
+}
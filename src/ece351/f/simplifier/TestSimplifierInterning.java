@@ -0,0 +1,126 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.simplifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.util.BaseTest351;
+
+public class TestSimplifierInterning extends BaseTest351 {
+
+	@Test
+	public void testStructurallyEqualAreSame() {
+		final Expr e1 = new NaryOrExpr(new VarExpr("a"), new NotExpr(new VarExpr("b")));
+		final Expr e2 = new NaryOrExpr(new NotExpr(new VarExpr("b")), new VarExpr("a"));
+		assertNotSame(e1, e2);
+		assertEquals(e1, e2);
+		assertSame(e1.intern(), e2.intern());
+	}
+
+	@Test
+	public void testDifferentAreNotEqual() {
+		final Expr e1 = new NaryAndExpr(new VarExpr("a"), new VarExpr("b")).intern();
+		final Expr e2 = new NaryOrExpr(new VarExpr("a"), new VarExpr("b")).intern();
+		assertTrue(!e1.equals(e2));
+		assertTrue(!e2.equals(e1));
+	}
+
+	/** The unique table key is the operator and the children, not just the children. */
+	@Test
+	public void testOperatorInHash() {
+		final VarExpr a = new VarExpr("a");
+		final VarExpr b = new VarExpr("b");
+		final Expr[] es = {
+				new AndExpr(a, b), new OrExpr(a, b), new XOrExpr(a, b), new NAndExpr(a, b),
+				new NOrExpr(a, b), new XNOrExpr(a, b), new EqualExpr(a, b),
+				new NaryAndExpr(a, b), new NaryOrExpr(a, b),
+		};
+		for (int i = 0; i < es.length; i++) {
+			for (int j = i + 1; j < es.length; j++) {
+				assertTrue(es[i] + " vs " + es[j], es[i].hashCode() != es[j].hashCode());
+			}
+		}
+	}
+
+	@Test
+	public void testSharedSubterms() {
+		final Expr e = new OrExpr(
+				new AndExpr(new VarExpr("a"), new VarExpr("b")),
+				new NotExpr(new AndExpr(new VarExpr("a"), new VarExpr("b")))).intern();
+		final AndExpr left = (AndExpr) ((OrExpr) e).left;
+		final NotExpr right = (NotExpr) ((OrExpr) e).right;
+		assertSame(left, right.expr);
+		assertSame(left.left, ((AndExpr) right.expr).left);
+	}
+
+	@Test
+	public void testSimplifyReturnsCanonical() {
+		final Expr e1 = new AndExpr(new VarExpr("a"), new AndExpr(new VarExpr("b"), new VarExpr("c")));
+		final Expr e2 = new AndExpr(new AndExpr(new VarExpr("c"), new VarExpr("a")), new VarExpr("b"));
+		assertSame(e1.simplify(), e2.simplify());
+		assertSame(e1.simplify(), e1.simplify().simplify());
+	}
+
+	@Test
+	public void testOrderingConsistentWithEquals() {
+		final Expr[] es = {
+				new VarExpr("a"), new VarExpr("b"),
+				new NotExpr(new VarExpr("a")), new NotExpr(new VarExpr("b")),
+				new NaryAndExpr(new VarExpr("a"), new VarExpr("b")),
+				new NaryAndExpr(new VarExpr("b"), new VarExpr("a")),
+				new NaryOrExpr(new VarExpr("a"), new VarExpr("b")),
+				new NaryOrExpr(new VarExpr("a"), new NotExpr(new VarExpr("b"))),
+				new AndExpr(new VarExpr("a"), new VarExpr("b")),
+				new AndExpr(new VarExpr("b"), new VarExpr("a")),
+		};
+		for (final Expr x : es) {
+			for (final Expr y : es) {
+				final int c = x.compareTo(y);
+				assertEquals(x + " vs " + y, x.equals(y), c == 0);
+				assertEquals(x + " vs " + y, Integer.signum(c), -Integer.signum(y.compareTo(x)));
+			}
+		}
+		assertTrue(new VarExpr("a").compareTo(new VarExpr("b")) < 0);
+	}
+}
@@ -0,0 +1,158 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.simplifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.VarExpr;
+import ece351.f.aig.AIG;
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.util.CommandLine;
+
+/**
+ * Simplification of n-ary expressions with very many children.
+ * Each of these would take minutes if complement or duplicate
+ * detection were quadratic.
+ */
+public class TestSimplifierWide extends BaseTest351 {
+
+	private static final int WIDTH = 10000;
+
+	private static List<Expr> vars(final int n) {
+		final List<Expr> list = new ArrayList<Expr>(n);
+		for (int i = 0; i < n; i++) {
+			list.add(new VarExpr("v" + i));
+		}
+		return list;
+	}
+
+	@Test(timeout = 10000)
+	public void testDuplicates() {
+		final List<Expr> list = vars(WIDTH / 2);
+		list.addAll(vars(WIDTH / 2));
+		final NaryExpr e = new NaryOrExpr(list);
+		assertEquals(WIDTH, e.children.size());
+		final Expr result = e.simplify();
+		assertTrue(result.repOk());
+		assertEquals(new NaryOrExpr(vars(WIDTH / 2)), result);
+	}
+
+	@Test(timeout = 10000)
+	public void testComplement() {
+		final List<Expr> list = vars(WIDTH - 1);
+		list.add(new NotExpr(new VarExpr("v" + (WIDTH / 2))));
+		assertEquals(ConstantExpr.TrueExpr, new NaryOrExpr(list).simplify());
+		assertEquals(ConstantExpr.FalseExpr, new NaryAndExpr(list).simplify());
+	}
+
+	@Test(timeout = 10000)
+	public void testNoComplement() {
+		final List<Expr> list = vars(WIDTH - 1);
+		list.add(new NotExpr(new VarExpr("w")));
+		final Expr result = new NaryAndExpr(list).simplify();
+		assertTrue(result.repOk());
+		assertEquals(WIDTH, ((NaryExpr) result).children.size());
+	}
+
+	@Test(timeout = 10000)
+	public void testIdentityElements() {
+		final List<Expr> list = vars(WIDTH / 2);
+		for (int i = 0; i < WIDTH / 2; i++) {
+			list.add(ConstantExpr.TrueExpr);
+		}
+		assertEquals(new NaryAndExpr(vars(WIDTH / 2)), new NaryAndExpr(list).simplify());
+	}
+
+	@Test(timeout = 10000)
+	public void testAbsorption() {
+		// x + x.y_i = x, for many y_i
+		final VarExpr x = new VarExpr("x");
+		final List<Expr> list = new ArrayList<Expr>();
+		list.add(x);
+		for (final Expr y : vars(WIDTH)) {
+			list.add(new NaryAndExpr(x, y));
+		}
+		assertEquals(x, new NaryOrExpr(list).simplify());
+	}
+
+	/** The and of WIDTH variables: a chain of WIDTH and nodes in the AIG. */
+	private static FProgram wideAnd() {
+		return new FProgram(Arrays.asList(new AssignmentStatement("f", new NaryAndExpr(vars(WIDTH)))));
+	}
+
+	@Test(timeout = 10000)
+	public void testRewritingWide() {
+		final FProgram p = wideAnd();
+		final FProgram result = p.simplify(new CommandLine("-o6").simplifierOpts);
+		assertTrue(result.repOk());
+		assertEquals(p.simplify(), result);
+	}
+
+	@Test(timeout = 10000)
+	public void testBalancingWide() {
+		final FProgram result = wideAnd().simplify(new CommandLine("-o7").simplifierOpts);
+		assertTrue(result.repOk());
+		// a tree of two-input ands: ceil(log2(WIDTH)) levels
+		assertEquals(14, AIG.fromFProgram(result).depth());
+	}
+
+	@Test(timeout = 10000)
+	public void testSubsetAbsorption() {
+		// x.y_i + x.y_i.z_i + x.y_i.z_i.w = x.y_i, for many i
+		final VarExpr x = new VarExpr("x");
+		final VarExpr w = new VarExpr("w");
+		final List<Expr> list = new ArrayList<Expr>();
+		final List<Expr> expected = new ArrayList<Expr>();
+		for (int i = 0; i < WIDTH / 3; i++) {
+			final VarExpr y = new VarExpr("y" + i);
+			final VarExpr z = new VarExpr("z" + i);
+			final Expr kept = new NaryAndExpr(x, y);
+			list.add(kept);
+			list.add(new NaryAndExpr(x, y, z));
+			list.add(new NaryAndExpr(x, y, z, w));
+			expected.add(kept);
+		}
+		final Expr result = new NaryOrExpr(list).simplify();
+		assertTrue(result.repOk());
+		assertEquals(new NaryOrExpr(expected), result);
+	}
+}
@@ -0,0 +1,210 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.techmapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ece351.common.ast.Expr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.f.aig.Cuts;
+
+/**
+ * The gates a circuit can be built from, with the area and delay of each.
+ * 
+ * Every cell computes a symmetric function of its inputs: and, or, nand,
+ * nor, xor or xnor of two to four inputs, or not of one. Symmetry is what
+ * makes matching cheap: the order of the leaves of a cut never matters,
+ * so a cut matches a cell if their truth tables agree once some of the
+ * inputs are inverted. The library keeps a table from truth table to the
+ * (cell, inverted inputs) pairs that compute it.
+ * 
+ * The default library is in the style of the generic libraries used for
+ * academic mapping experiments: inverting gates are the smallest and
+ * fastest, and and/or cost an extra inverter stage.
+ */
+public final class CellLibrary {
+
+	/** The functions a cell can compute. */
+	public static final List<String> FUNCTIONS = Collections.unmodifiableList(
+			Arrays.asList("not", "and", "or", "nand", "nor", "xor", "xnor"));
+
+	public static final class Cell {
+		/** Name of the cell, such as nand3. */
+		public final String name;
+		/** One of FUNCTIONS. */
+		public final String function;
+		public final int inputs;
+		public final double area;
+		public final double delay;
+		/** Picture of the gate for Graphviz, or null to draw a box. */
+		public final String image;
+		/** Function of the cell over the first inputs cut variables. */
+		final int truth;
+
+		public Cell(final String name, final String function, final int inputs,
+				final double area, final double delay, final String image) {
+			if (!FUNCTIONS.contains(function)) {
+				throw new IllegalArgumentException("unknown function " + function + " for cell " + name);
+			}
+			final int max = function.equals("not") ? 1 : function.startsWith("x") ? 2 : Cuts.VARS.length;
+			final int min = function.equals("not") ? 1 : 2;
+			if (inputs < min || inputs > max) {
+				throw new IllegalArgumentException("cell " + name + " cannot have " + inputs + " inputs");
+			}
+			this.name = name;
+			this.function = function;
+			this.inputs = inputs;
+			this.area = area;
+			this.delay = delay;
+			this.image = image;
+			this.truth = truth(function, inputs, 0);
+		}
+
+		/** The expression this cell computes of its inputs. */
+		public Expr expr(final List<Expr> inputs) {
+			return CellLibrary.expr(function, inputs);
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/** A cell that computes a truth table when some of its inputs are inverted. */
+	static final class Match {
+		final Cell cell;
+		/** Bit i is set if input i is inverted. */
+		final int inverted;
+
+		Match(final Cell cell, final int inverted) {
+			this.cell = cell;
+			this.inverted = inverted;
+		}
+	}
+
+	private static final String GATES = "../../gates/";
+
+	public static final CellLibrary DEFAULT = new CellLibrary(Arrays.asList(
+			new Cell("inv", "not", 1, 1, 1.0, GATES + "not_noleads.png"),
+			new Cell("nand2", "nand", 2, 2, 1.0, null),
+			new Cell("nand3", "nand", 3, 3, 1.2, null),
+			new Cell("nand4", "nand", 4, 4, 1.4, null),
+			new Cell("nor2", "nor", 2, 2, 1.2, null),
+			new Cell("nor3", "nor", 3, 3, 1.6, null),
+			new Cell("nor4", "nor", 4, 4, 2.0, null),
+			new Cell("and2", "and", 2, 3, 1.8, GATES + "and_noleads.png"),
+			new Cell("and3", "and", 3, 4, 2.0, GATES + "and_noleads.png"),
+			new Cell("and4", "and", 4, 5, 2.2, GATES + "and_noleads.png"),
+			new Cell("or2", "or", 2, 3, 2.0, GATES + "or_noleads.png"),
+			new Cell("or3", "or", 3, 4, 2.2, GATES + "or_noleads.png"),
+			new Cell("or4", "or", 4, 5, 2.4, GATES + "or_noleads.png"),
+			new Cell("xor2", "xor", 2, 5, 2.0, null),
+			new Cell("xnor2", "xnor", 2, 5, 2.0, null)));
+
+	private final List<Cell> cells;
+	private final Cell inverter;
+	private final int maxInputs;
+	private final Map<Integer,List<Match>> matches = new HashMap<Integer,List<Match>>();
+
+	public CellLibrary(final List<Cell> cells) {
+		this.cells = Collections.unmodifiableList(new ArrayList<Cell>(cells));
+		Cell inverter = null;
+		int maxInputs = 1;
+		for (final Cell c : cells) {
+			if (c.function.equals("not") && (inverter == null || c.area < inverter.area)) inverter = c;
+			maxInputs = Math.max(maxInputs, c.inputs);
+			for (int inverted = 0; inverted < 1 << c.inputs; inverted++) {
+				final int t = truth(c.function, c.inputs, inverted);
+				if (!matches.containsKey(t)) matches.put(t, new ArrayList<Match>());
+				matches.get(t).add(new Match(c, inverted));
+			}
+		}
+		if (inverter == null || maxInputs < 2) {
+			throw new IllegalArgumentException("a cell library needs an inverter and a two-input gate");
+		}
+		this.inverter = inverter;
+		this.maxInputs = maxInputs;
+	}
+
+	public List<Cell> cells() { return cells; }
+	/** The smallest inverter. */
+	public Cell inverter() { return inverter; }
+	public int maxInputs() { return maxInputs; }
+
+	/** The cells that compute truth, with their inverted inputs. */
+	List<Match> matches(final int truth) {
+		final List<Match> result = matches.get(truth);
+		return result == null ? Collections.<Match>emptyList() : result;
+	}
+
+	/** Truth table of function over the first n cut variables, some of them inverted. */
+	private static int truth(final String function, final int n, final int inverted) {
+		int and = 0xFFFF, or = 0, xor = 0;
+		for (int i = 0; i < n; i++) {
+			final int v = ((inverted >> i) & 1) != 0 ? ~Cuts.VARS[i] & 0xFFFF : Cuts.VARS[i];
+			and &= v;
+			or |= v;
+			xor ^= v;
+		}
+		if (function.equals("and")) return and;
+		if (function.equals("or")) return or;
+		if (function.equals("xor")) return xor;
+		if (function.equals("nand")) return ~and & 0xFFFF;
+		if (function.equals("nor") || function.equals("not")) return ~or & 0xFFFF;
+		if (function.equals("xnor")) return ~xor & 0xFFFF;
+		throw new IllegalArgumentException("unknown function " + function);
+	}
+
+	/**
+	 * The expression computed by a gate with the given function. Only
+	 * and, or and not are used, so the result can go through the
+	 * simplifier like any other formula.
+	 */
+	public static Expr expr(final String function, final List<Expr> inputs) {
+		if (function.equals("not")) return new NotExpr(inputs.get(0));
+		if (function.equals("and")) return new NaryAndExpr(inputs);
+		if (function.equals("or")) return new NaryOrExpr(inputs);
+		if (function.equals("nand")) return new NotExpr(new NaryAndExpr(inputs));
+		if (function.equals("nor")) return new NotExpr(new NaryOrExpr(inputs));
+		if (function.equals("xor") || function.equals("xnor")) {
+			// a xor b = (a and not b) or (not a and b)
+			final Expr a = inputs.get(0);
+			final Expr b = inputs.get(1);
+			final Expr xor = new NaryOrExpr(new NaryAndExpr(a, new NotExpr(b)), new NaryAndExpr(new NotExpr(a), b));
+			return function.equals("xor") ? xor : new NotExpr(xor);
+		}
+		throw new IllegalArgumentException("unknown function " + function);
+	}
+}
@@ -0,0 +1,439 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.techmapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.VarExpr;
+import ece351.f.aig.AIG;
+import ece351.f.aig.Cuts;
+import ece351.f.ast.FProgram;
+import ece351.f.techmapper.CellLibrary.Cell;
+
+/**
+ * Cut-based technology mapping of an AIG onto the cells of a library.
+ * 
+ * Both phases of every node are mapped: the literal 2n and its complement
+ * 2n+1 each get a gate. The candidate gates for a literal come from the
+ * k-feasible cuts of its node (see Cuts), with k the widest cell of the
+ * library: a cut matches a cell if the cell computes the function of the
+ * cut, or its complement for the negative phase, with some of the leaves
+ * taken in the negative phase. The other way to get a phase is an
+ * inverter on the opposite one.
+ * 
+ * The first pass visits the nodes in topological order and picks, for
+ * each literal, the fastest candidate (for Goal.DELAY) or the one with
+ * the least area flow (for Goal.AREA). Area flow is the area of the gate
+ * plus the area flow of its inputs shared among their expected fanouts,
+ * so logic that is used several times is not paid for several times.
+ * The cover is the set of gates reached from the outputs.
+ * 
+ * Area recovery then revisits the choices without making the circuit
+ * slower than the first cover (for Goal.DELAY; for Goal.AREA, delay is
+ * free). Required times are propagated back from the outputs through the
+ * cover, and each literal takes the smallest candidate that arrives in
+ * time: first by area flow, then by exact area, which is the area that
+ * the candidate actually adds to the current cover, counted by
+ * referencing its inputs recursively. A pass that does not help is
+ * undone.
+ */
+public final class CutMapper {
+
+	public enum Goal { AREA, DELAY }
+
+	/** Cuts kept per node, besides the trivial one. */
+	public static final int MAX_CUTS = 10;
+	public static final int FLOW_PASSES = 1;
+	public static final int EXACT_PASSES = 2;
+
+	private static final double EPSILON = 1e-6;
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+
+	/** A cell instance: it computes one AIG literal from others. */
+	public static final class Gate {
+		public final Cell cell;
+		public final int output;
+		public final int[] inputs;
+
+		Gate(final Cell cell, final int output, final int[] inputs) {
+			this.cell = cell;
+			this.output = output;
+			this.inputs = inputs;
+		}
+
+		@Override
+		public String toString() {
+			return output + " = " + cell + Arrays.toString(inputs);
+		}
+	}
+
+	private enum Pass { DELAY, FLOW, EXACT }
+
+	private final AIG aig;
+	private final Cell inverter;
+	/** Candidate gates of each literal, from the cuts of its node. */
+	private final List<List<Gate>> candidates;
+	/** The inverter from the opposite phase, for each literal. */
+	private final Gate[] inverters;
+	/** Chosen gate of each literal: null for the constants and the inputs. */
+	private Gate[] chosen;
+	private final double[] arrival;
+	private final double[] required;
+	private final double[] flow;
+	/** Expected number of fanouts of each literal, for area flow. */
+	private final double[] estimate;
+	/** Number of gates of the cover and outputs that use each literal. */
+	private final int[] refs;
+
+	private List<Gate> gates;
+	private double area;
+	private double delay;
+
+	public CutMapper(final AIG aig) {
+		this(aig, CellLibrary.DEFAULT, Goal.AREA);
+	}
+
+	public CutMapper(final AIG aig, final CellLibrary library, final Goal goal) {
+		this.aig = aig;
+		this.inverter = library.inverter();
+		final int literals = 2 * aig.size();
+		this.candidates = new ArrayList<List<Gate>>(literals);
+		this.inverters = new Gate[literals];
+		this.chosen = new Gate[literals];
+		this.arrival = new double[literals];
+		this.required = new double[literals];
+		this.flow = new double[literals];
+		this.estimate = new double[literals];
+		this.refs = new int[literals];
+		final Cuts cuts = new Cuts(aig, library.maxInputs(), MAX_CUTS);
+		for (int lit = 0; lit < literals; lit++) {
+			candidates.add(new ArrayList<Gate>());
+			inverters[lit] = new Gate(inverter, lit, new int[] { AIG.not(lit) });
+			estimate[lit] = Math.max(1, aig.fanout(AIG.node(lit)));
+		}
+		for (int n = 1; n < aig.size(); n++) {
+			if (aig.isInput(n)) {
+				set(2 * n + 1, inverters[2 * n + 1]);
+			} else {
+				match(library, n, cuts);
+			}
+		}
+		map(goal);
+	}
+
+	/** The gates of the cover, in topological order. */
+	public List<Gate> gates() { return gates; }
+	public double area() { return area; }
+	/** Arrival time of the latest output. */
+	public double delay() { return delay; }
+	public AIG aig() { return aig; }
+
+	/** The mapped circuit, one formula per output, in terms of the gates. */
+	public FProgram toFProgram() {
+		final Expr[] memo = new Expr[chosen.length];
+		final List<AssignmentStatement> formulas = new ArrayList<AssignmentStatement>(aig.outputCount());
+		for (int i = 0; i < aig.outputCount(); i++) {
+			formulas.add(new AssignmentStatement(new VarExpr(aig.outputName(i)), expr(aig.output(i), memo)));
+		}
+		return new FProgram(formulas);
+	}
+
+	private Expr expr(final int lit, final Expr[] memo) {
+		if (memo[lit] != null) return memo[lit];
+		final Gate g = chosen[lit];
+		final Expr e;
+		if (AIG.node(lit) == 0) {
+			e = lit == AIG.TRUE ? ConstantExpr.TrueExpr : ConstantExpr.FalseExpr;
+		} else if (g == null) {
+			e = new VarExpr(aig.inputName(AIG.node(lit)));
+		} else {
+			final List<Expr> inputs = new ArrayList<Expr>(g.inputs.length);
+			for (final int in : g.inputs) {
+				inputs.add(expr(in, memo));
+			}
+			e = g.cell.expr(inputs);
+		}
+		memo[lit] = e;
+		return e;
+	}
+
+	/** Find the candidate gates of and node n. */
+	private void match(final CellLibrary library, final int n, final Cuts cuts) {
+		// the cut made of the fanins, which need not have survived enumeration
+		final int f0 = aig.fanin0(n);
+		final int f1 = aig.fanin1(n);
+		final boolean ordered = AIG.node(f0) < AIG.node(f1);
+		final int t0 = Cuts.VARS[ordered ? 0 : 1] ^ (AIG.isComplemented(f0) ? 0xFFFF : 0);
+		final int t1 = Cuts.VARS[ordered ? 1 : 0] ^ (AIG.isComplemented(f1) ? 0xFFFF : 0);
+		final int[] fanins = ordered ? new int[] { AIG.node(f0), AIG.node(f1) } : new int[] { AIG.node(f1), AIG.node(f0) };
+		match(library, n, fanins, t0 & t1);
+		for (final Cuts.Cut c : cuts.of(n)) {
+			final Cuts.Cut s = c.support();
+			// cuts on which n is constant or a wire are covered by other cuts
+			if (s.leaves.length > 1) match(library, n, s.leaves, s.truth);
+		}
+		if (candidates.get(2 * n).isEmpty() && candidates.get(2 * n + 1).isEmpty()) {
+			throw new IllegalArgumentException("the cell library cannot implement a two-input and");
+		}
+	}
+
+	private void match(final CellLibrary library, final int n, final int[] leaves, final int truth) {
+		for (int phase = 0; phase < 2; phase++) {
+			final int t = phase == 0 ? truth : ~truth & 0xFFFF;
+			for (final CellLibrary.Match m : library.matches(t)) {
+				final int[] inputs = new int[leaves.length];
+				for (int i = 0; i < leaves.length; i++) {
+					inputs[i] = AIG.literal(leaves[i], ((m.inverted >> i) & 1) != 0);
+				}
+				candidates.get(2 * n + phase).add(new Gate(m.cell, 2 * n + phase, inputs));
+			}
+		}
+	}
+
+	private void map(final Goal goal) {
+		Arrays.fill(required, INFINITY);
+		select(goal == Goal.DELAY ? Pass.DELAY : Pass.FLOW);
+		cover();
+		final double target = goal == Goal.DELAY ? delay : INFINITY;
+		for (int i = 0; i < FLOW_PASSES + EXACT_PASSES; i++) {
+			final Gate[] saved = chosen.clone();
+			final double before = area;
+			required(target);
+			select(i < FLOW_PASSES ? Pass.FLOW : Pass.EXACT);
+			cover();
+			if (area > before - EPSILON || delay > target + EPSILON) {
+				chosen = saved;
+				cover();
+				if (i >= FLOW_PASSES) break;
+			}
+		}
+	}
+
+	/** Choose a gate for both phases of every and node. */
+	private void select(final Pass pass) {
+		for (int n = 1; n < aig.size(); n++) {
+			if (!aig.isAnd(n)) continue;
+			if (pass == Pass.EXACT) {
+				exact(n);
+			} else {
+				choose(n, pass);
+			}
+		}
+	}
+
+	private void choose(final int n, final Pass pass) {
+		final int p = 2 * n;
+		final int q = p + 1;
+		final Gate d0 = best(p, pass);
+		final Gate d1 = best(q, pass);
+		set(p, d0);
+		set(q, d1);
+		// at most one phase can be an inverter of the other
+		if (d0 == null || better(pass, inverters[p], arrival[p], flow[p], required[p])) {
+			set(p, inverters[p]);
+		} else if (d1 == null || better(pass, inverters[q], arrival[q], flow[q], required[q])) {
+			set(q, inverters[q]);
+		}
+	}
+
+	private Gate best(final int lit, final Pass pass) {
+		Gate best = null;
+		double a = INFINITY;
+		double c = INFINITY;
+		for (final Gate g : candidates.get(lit)) {
+			if (best == null || better(pass, g, a, c, required[lit])) {
+				best = g;
+				a = arrivalOf(g);
+				c = flowOf(g);
+			}
+		}
+		return best;
+	}
+
+	private void set(final int lit, final Gate g) {
+		chosen[lit] = g;
+		arrival[lit] = arrivalOf(g);
+		flow[lit] = flowOf(g);
+	}
+
+	/** Is g better than a gate with arrival a and area flow c? */
+	private boolean better(final Pass pass, final Gate g, final double a, final double c, final double req) {
+		return better(pass, arrivalOf(g), flowOf(g), a, c, req);
+	}
+
+	/** Is (a, c) better than (aBest, cBest), in arrival and cost? */
+	private static boolean better(final Pass pass, final double a, final double c,
+			final double aBest, final double cBest, final double req) {
+		if (pass == Pass.DELAY) {
+			return a < aBest - EPSILON || (a < aBest + EPSILON && c < cBest - EPSILON);
+		}
+		final boolean meets = a <= req + EPSILON;
+		final boolean bestMeets = aBest <= req + EPSILON;
+		if (meets != bestMeets) return meets;
+		if (!meets) return a < aBest - EPSILON;
+		return c < cBest - EPSILON || (c < cBest + EPSILON && a < aBest - EPSILON);
+	}
+
+	private double arrivalOf(final Gate g) {
+		if (g == null) return INFINITY;
+		double a = 0;
+		for (final int in : g.inputs) {
+			a = Math.max(a, arrival[in]);
+		}
+		return a + g.cell.delay;
+	}
+
+	private double flowOf(final Gate g) {
+		if (g == null) return INFINITY;
+		double f = g.cell.area;
+		for (final int in : g.inputs) {
+			f += flow[in] / estimate[in];
+		}
+		return f;
+	}
+
+	/** Re-choose the gates of the phases of n that are in the cover, by exact area. */
+	private void exact(final int n) {
+		for (final int lit : order(n)) {
+			arrival[lit] = arrivalOf(chosen[lit]);
+		}
+		for (final int lit : order(n)) {
+			if (refs[lit] == 0) continue;
+			derefGate(chosen[lit]);
+			Gate best = null;
+			double a = INFINITY;
+			double c = INFINITY;
+			final List<Gate> options = new ArrayList<Gate>(candidates.get(lit));
+			if (!isInverter(chosen[AIG.not(lit)])) options.add(inverters[lit]);
+			for (final Gate g : options) {
+				final double ga = arrivalOf(g);
+				final double gc = refGate(g);
+				derefGate(g);
+				if (best == null || better(Pass.EXACT, ga, gc, a, c, required[lit])) {
+					best = g;
+					a = ga;
+					c = gc;
+				}
+			}
+			chosen[lit] = best;
+			arrival[lit] = a;
+			refGate(best);
+		}
+		for (final int lit : order(n)) {
+			arrival[lit] = arrivalOf(chosen[lit]);
+		}
+	}
+
+	/** Is g the inverter of the other phase of its own node? */
+	private static boolean isInverter(final Gate g) {
+		return g != null && g.inputs.length == 1 && AIG.node(g.inputs[0]) == AIG.node(g.output);
+	}
+
+	/** The literals of node n, the one that inverts the other last. */
+	private int[] order(final int n) {
+		return isInverter(chosen[2 * n]) ? new int[] { 2 * n + 1, 2 * n } : new int[] { 2 * n, 2 * n + 1 };
+	}
+
+	/** Compute the cover from the outputs, with its arrival times, area and delay. */
+	private void cover() {
+		Arrays.fill(refs, 0);
+		for (int n = 1; n < aig.size(); n++) {
+			for (final int lit : order(n)) {
+				arrival[lit] = chosen[lit] == null ? 0 : arrivalOf(chosen[lit]);
+			}
+		}
+		area = 0;
+		delay = 0;
+		for (int i = 0; i < aig.outputCount(); i++) {
+			area += ref(aig.output(i));
+			delay = Math.max(delay, arrival[aig.output(i)]);
+		}
+		final List<Gate> result = new ArrayList<Gate>();
+		for (int n = 1; n < aig.size(); n++) {
+			for (final int lit : order(n)) {
+				if (refs[lit] > 0 && chosen[lit] != null) result.add(chosen[lit]);
+			}
+		}
+		gates = Collections.unmodifiableList(result);
+		for (int lit = 0; lit < refs.length; lit++) {
+			estimate[lit] = (2 * estimate[lit] + Math.max(1, refs[lit])) / 3;
+		}
+	}
+
+	/** Propagate required times back from the outputs through the cover. */
+	private void required(final double target) {
+		Arrays.fill(required, INFINITY);
+		for (int i = 0; i < aig.outputCount(); i++) {
+			required[aig.output(i)] = target;
+		}
+		for (int n = aig.size() - 1; n > 0; n--) {
+			final int[] order = order(n);
+			for (int k = order.length - 1; k >= 0; k--) {
+				final int lit = order[k];
+				final Gate g = chosen[lit];
+				if (refs[lit] == 0 || g == null) continue;
+				for (final int in : g.inputs) {
+					required[in] = Math.min(required[in], required[lit] - g.cell.delay);
+				}
+			}
+		}
+	}
+
+	/** Reference lit; the area of the gates that enter the cover. */
+	private double ref(final int lit) {
+		if (refs[lit]++ > 0 || chosen[lit] == null) return 0;
+		return refGate(chosen[lit]);
+	}
+
+	private double refGate(final Gate g) {
+		double a = g.cell.area;
+		for (final int in : g.inputs) {
+			a += ref(in);
+		}
+		return a;
+	}
+
+	/** Dereference lit; the area of the gates that leave the cover. */
+	private double deref(final int lit) {
+		if (--refs[lit] > 0 || chosen[lit] == null) return 0;
+		return derefGate(chosen[lit]);
+	}
+
+	private double derefGate(final Gate g) {
+		double a = g.cell.area;
+		for (final int in : g.inputs) {
+			a += deref(in);
+		}
+		return a;
+	}
+}
@@ -40,9 +40,6 @@ import org.parboiled.common.ImmutableList;
 import ece351.common.ast.AssignmentStatement;
 import ece351.common.ast.ConstantExpr;
 import ece351.common.ast.Expr;
-import ece351.common.ast.NaryAndExpr;
-import ece351.common.ast.NaryOrExpr;
-import ece351.common.ast.NotExpr;
 import ece351.common.ast.VarExpr;
 import ece351.f.ast.FProgram;
 import ece351.util.Tuple;
@@ -129,14 +126,10 @@ public final class GraphvizToF {
 				// new formula
 				children.add(exprMap.get(source));
 			} else {
-				if(previousTarget.startsWith("or")) {
-					exprMap.put(previousTarget, new NaryOrExpr(children));
-					gates++;
-				} else if (previousTarget.startsWith("and")) {
-					exprMap.put(previousTarget, new NaryAndExpr(children));
-					gates++;
-				} else if (previousTarget.startsWith("not")) {
-					exprMap.put(previousTarget, new NotExpr(children.get(0)));
+				if (!previousTarget.isEmpty() && !previousTarget.startsWith("var")) {
+					// a gate is named after its function, followed by a number
+					final String function = previousTarget.replaceAll("[0-9]+$", "");
+					exprMap.put(previousTarget, CellLibrary.expr(function, children));
 					gates++;
 				}
 
@@ -27,72 +27,68 @@
 package ece351.f.techmapper;
 
 import java.io.PrintWriter;
-import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
-import kodkod.util.collections.IdentityHashSet;
-import ece351.common.ast.AndExpr;
-import ece351.common.ast.AssignmentStatement;
 import ece351.common.ast.ConstantExpr;
-import ece351.common.ast.EqualExpr;
-import ece351.common.ast.Expr;
-import ece351.common.ast.NAndExpr;
-import ece351.common.ast.NOrExpr;
-import ece351.common.ast.NaryAndExpr;
-import ece351.common.ast.NaryOrExpr;
-import ece351.common.ast.NotExpr;
-import ece351.common.ast.OrExpr;
-import ece351.common.ast.VarExpr;
-import ece351.common.ast.XNOrExpr;
-import ece351.common.ast.XOrExpr;
-import ece351.common.visitor.PostOrderExprVisitor;
 import ece351.f.FParser;
-import ece351.f.analysis.ExtractAllExprs;
+import ece351.f.aig.AIG;
 import ece351.f.ast.FProgram;
-import ece351.util.Examiner;
+import ece351.f.techmapper.CellLibrary.Cell;
+import ece351.f.techmapper.CutMapper.Gate;
 
-public final class TechnologyMapper extends PostOrderExprVisitor {
+/**
+ * Draws an FProgram as a circuit of library cells, in Graphviz format.
+ * 
+ * The program is turned into an AIG, which shares common subexpressions
+ * by construction, and mapped onto the cells of a library by CutMapper,
+ * so a gate may cover several operators of the program and any of the
+ * library's functions (nand, nor, xor, ...) can appear. A gate node is
+ * named after its function followed by a number, which is how
+ * GraphvizToF reads the circuit back.
+ */
+public final class TechnologyMapper {
 
 	/** Where we will write the output to. */
 	private final PrintWriter out;
-	
-	/**
-	 * Table of substitutions for common subexpression elimination. Note that
-	 * this IdentityHashMap has non-deterministic iteration ordering. The staff
-	 * solution iterates over substitutions.values(), but does not print those
-	 * results directly: instead it stores those results in the nodes TreeSet
-	 * (below) which sorts them before they are printed. When computing edges
-	 * the staff solution uses this table only for lookups and does not iterate
-	 * over the contents.
-	 */
-	private final IdentityHashMap<Expr,Expr> substitutions = new IdentityHashMap<Expr,Expr>();
+
+	private final CellLibrary library;
+	private final CutMapper.Goal goal;
 
 	/**
-	 * The set of nodes in our circuit diagram. (We'll produce a node for each
-	 * .) We could just print the nodes directly to the output stream instead of
-	 * building up this set, but then we might output the same node twice, and
-	 * we might get a nonsensical order. The set uniqueness property ensure that
-	 * we will ultimately print each node exactly once. TreeSet gives us
-	 * deterministic iteration order: alphabetical.
+	 * The set of nodes in our circuit diagram. We could just print the nodes
+	 * directly to the output stream instead of building up this set, but then
+	 * we might output the same node twice, and we might get a nonsensical
+	 * order. The set uniqueness property ensure that we will ultimately print
+	 * each node exactly once. TreeSet gives us deterministic iteration order:
+	 * alphabetical.
 	 */
 	private final SortedSet<String> nodes = new TreeSet<String>();
 	
 	/**
-	 * The set of edges in our circuit diagram. We could just print the edges
-	 * directly to the output stream instead of building up this set, but then
-	 * we might output the same edge twice. The set uniqueness property ensure
-	 * that we will ultimately print each edge exactly once. LinkedHashSet gives
-	 * us deterministic iteration order: insertion order. We need insertion
-	 * order here because the elements will be inserted into this set by the
-	 * post order traversal of the AST.
+	 * The set of edges in our circuit diagram. LinkedHashSet gives us
+	 * deterministic iteration order: insertion order. We need insertion
+	 * order here because GraphvizToF expects the edges into a gate to be
+	 * together, and after the edges into the gates that drive it: the
+	 * gates are visited in topological order.
 	 */
 	private final Set<String> edges = new LinkedHashSet<String>();
+
+	/** Name of the Graphviz node of each AIG literal that has been drawn. */
+	private String[] names;
+	/** For making node names unique. */
+	private int serial;
 	
-	public TechnologyMapper(final PrintWriter out) {
+	public TechnologyMapper(final PrintWriter out, final CellLibrary library, final CutMapper.Goal goal) {
 		this.out = out;
+		this.library = library;
+		this.goal = goal;
+	}
+
+	public TechnologyMapper(final PrintWriter out) {
+		this(out, CellLibrary.DEFAULT, CutMapper.Goal.AREA);
 	}
 	
 	public TechnologyMapper() {
@@ -115,45 +111,32 @@ public final class TechnologyMapper extends PostOrderExprVisitor {
 	}
 
 	public void render(final FProgram program) {
-		render(program, Examiner.Isomorphic);
+		render(new CutMapper(AIG.fromFProgram(program), library, goal));
 	}
 
 	/** Where the real work happens. */
-	public void render(final FProgram program, final Examiner examiner) {
+	public void render(final CutMapper mapping) {
 		header(out);
-		
-		// build a set of all of the exprs in the program
-		IdentityHashSet<Expr> exprs = ExtractAllExprs.allExprs(program);
-		// build substitutions by determining equivalences of exprs
-		for (Expr expr : exprs) {
-			
-			boolean exists = false;
-			for (Expr out: substitutions.values()) {
-				if(examiner.examine(expr, out)) {
-					substitutions.put(expr, out);
-					exists = true;
-					break;
-				}
-			}
-			
-			// if it does exist add it to the substitution
-			if (!exists) {
-				substitutions.put(expr, expr);
+		final AIG aig = mapping.aig();
+		names = new String[2 * aig.size()];
+		serial = 0;
+
+		// gates, in topological order
+		for (final Gate g : mapping.gates()) {
+			final String name = g.cell.function + serial++;
+			node(name, g.cell);
+			for (final int in : g.inputs) {
+				edge(source(aig, in), name);
 			}
+			names[g.output] = name;
 		}
-		
-		for(AssignmentStatement expr : program.formulas) {
-			traverseExpr(expr.expr);
-			visitVar(expr.outputVar);
-			edge(expr.expr, expr.outputVar);
+		// output vars
+		for (int i = 0; i < aig.outputCount(); i++) {
+			final String name = "var" + serial++;
+			node(name, aig.outputName(i));
+			edge(source(aig, aig.output(i)), name);
 		}
-		
-		// create nodes for output vars
-		// attach images to gates
-		// ../../gates/not_noleads.png
-		// ../../gates/or_noleads.png
-		// ../../gates/and_noleads.png
-		// compute edges
+
 		// print nodes
 		for (String node : nodes) {
 			out.println(node);
@@ -163,16 +146,14 @@ public final class TechnologyMapper extends PostOrderExprVisitor {
 			out.println(edge);
 		}
 		
-// TODO: longer code snippet
-//throw new ece351.util.Todo351Exception();
 		// print footer
 		footer(out);
 		out.flush();
 		
 		// release memory
-		substitutions.clear();
 		nodes.clear();
 		edges.clear();
+		names = null;
 	}
 
 	
@@ -190,96 +171,39 @@ public final class TechnologyMapper extends PostOrderExprVisitor {
 		out.println("}");
 	}
 
-    /**
-     * ConstantExpr follows the Singleton pattern, so we don't need
-     * to look in the substitution table: we already know there are
-     * only ConstantExpr objects in existence, one for True and one
-     * for False.
-     */
-	@Override
-	public Expr visitConstant(final ConstantExpr e) {
-		node(e.serialNumber(), e.toString());
-		return e;
-	}
-
-	@Override
-	public Expr visitVar(final VarExpr e) {
-		final Expr e2 = substitutions.get(e);
-		assert e2 != null : "no substitution for " + e + " " + e.serialNumber();
-		node(e2.serialNumber(), e2.toString());
-		return e;
-	}
-
-	@Override
-	public Expr visitNot(final NotExpr e) {
-		edge(e.expr, e);
-		return e;
-	}
-
-	@Override
-	public Expr visitAnd(final AndExpr e) {
-// TODO: short code snippet
-//throw new ece351.util.Todo351Exception();
-		node(substitutions.get(e).serialNumber(), substitutions.get(e).serialNumber(), "../../gates/and_noleads.png");
-		edge(e.left, e);
-		edge(e.right, e);
-		
-		return e;
-	}
-
-	@Override
-	public Expr visitOr(final OrExpr e) {
-// TODO: short code snippet
-//throw new ece351.util.Todo351Exception();
-		node(substitutions.get(e).serialNumber(), substitutions.get(e).serialNumber(), "../../gates/or_noleads.png");
-		edge(e.left, e);
-		edge(e.right, e);
-		return e;
-	}
-	
-	@Override public Expr visitNaryAnd(final NaryAndExpr e) {
-// TODO: short code snippet
-//throw new ece351.util.Todo351Exception();
-		node(substitutions.get(e).serialNumber(), substitutions.get(e).serialNumber(), "../../gates/and_noleads.png");
-		
-		for(Expr child : e.children) {
-			edge(child, e);
-		}
-		return e;
-	}
-
-	@Override public Expr visitNaryOr(final NaryOrExpr e) { 
-// TODO: short code snippet
-//throw new ece351.util.Todo351Exception();
-		node(substitutions.get(e).serialNumber(), substitutions.get(e).serialNumber(), "../../gates/or_noleads.png");
-		
-		for (Expr child : e.children) {
-			edge(child, e);
+	/**
+	 * The node that drives lit: a gate that has already been drawn, or a
+	 * constant or input var, which are drawn on first use.
+	 */
+	private String source(final AIG aig, final int lit) {
+		if (names[lit] == null) {
+			final int n = AIG.node(lit);
+			assert n == 0 || (aig.isInput(n) && !AIG.isComplemented(lit)) : "no gate for literal " + lit;
+			if (n == 0) {
+				final ConstantExpr c = lit == AIG.TRUE ? ConstantExpr.TrueExpr : ConstantExpr.FalseExpr;
+				names[lit] = c.operator() + serial++;
+				node(names[lit], c.toString());
+			} else {
+				names[lit] = "var" + serial++;
+				node(names[lit], aig.inputName(n));
+			}
 		}
-		return e;
+		return names[lit];
 	}
 
-
 	private void node(final String name, final String label) {
 		nodes.add("    " + name + "[label=\"" + label + "\"];");
 	}
 
-	private void node(final String name, final String label, final String image) {
-		nodes.add(String.format("    %s [label=\"%s\", image=\"%s\"];", name, label, image));
+	private void node(final String name, final Cell cell) {
+		if (cell.image != null) {
+			nodes.add(String.format("    %s [label=\"%s\", image=\"%s\"];", name, name, cell.image));
+		} else {
+			nodes.add(String.format("    %s [label=\"%s\", shape=\"box\"];", name, cell.name));
+		}
 	}
 
-	private void edge(final Expr source, final Expr target) {
-		edge(substitutions.get(source).serialNumber(), substitutions.get(target).serialNumber());
-	}
-	
 	private void edge(final String source, final String target) {
 		edges.add("    " + source + " -> " + target + " ;");
 	}
-	
-	@Override public Expr visitXOr(final XOrExpr e) { throw new IllegalStateException("TechnologyMapper does not support " + e.getClass()); }
-	@Override public Expr visitNAnd(final NAndExpr e) { throw new IllegalStateException("TechnologyMapper does not support " + e.getClass()); }
-	@Override public Expr visitNOr(final NOrExpr e) { throw new IllegalStateException("TechnologyMapper does not support " + e.getClass()); }
-	@Override public Expr visitXNOr(final XNOrExpr e) { throw new IllegalStateException("TechnologyMapper does not support " + e.getClass()); }
-	@Override public Expr visitEqual(final EqualExpr e) { throw new IllegalStateException("TechnologyMapper does not support " + e.getClass()); }
-
 }
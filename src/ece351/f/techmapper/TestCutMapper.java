@@ -0,0 +1,159 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.techmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ece351.common.ast.Expr;
+import ece351.common.ast.VarExpr;
+import ece351.f.aig.AIG;
+import ece351.f.aig.Cuts;
+import ece351.f.ast.FProgram;
+import ece351.f.bdd.BDDEquivalence;
+import ece351.f.rdescent.FRecursiveDescentParser;
+import ece351.f.techmapper.CellLibrary.Cell;
+import ece351.util.BaseTest351;
+import ece351.util.CommandLine;
+import ece351.util.TestInputs351;
+import ece351.util.TestPrograms351;
+import ece351.util.Tuple;
+
+public class TestCutMapper extends BaseTest351 {
+
+	/** The expression of every cell computes its truth table. */
+	@Test
+	public void testLibrary() {
+		final List<Expr> vars = new ArrayList<Expr>();
+		for (int i = 0; i < Cuts.VARS.length; i++) {
+			vars.add(new VarExpr("x" + i));
+		}
+		for (final Cell c : CellLibrary.DEFAULT.cells()) {
+			final Expr e = c.expr(vars.subList(0, c.inputs));
+			int truth = 0;
+			for (int row = 0; row < 16; row++) {
+				// row of the truth table: bit row of each VARS[i]
+				final Map<String,Boolean> values = new HashMap<String,Boolean>();
+				for (int i = 0; i < Cuts.VARS.length; i++) {
+					values.put("x" + i, (Cuts.VARS[i] >>> row & 1) != 0);
+				}
+				if (TestPrograms351.value(e, values)) truth |= 1 << row;
+			}
+			assertEquals(c.name, c.truth, truth);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoInverter() {
+		new CellLibrary(Arrays.asList(new Cell("nand2", "nand", 2, 2, 1, null)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWideXor() {
+		new Cell("xor3", "xor", 3, 8, 3, null);
+	}
+
+	@Test
+	public void testXor() {
+		final CutMapper m = map("x <= (a or c) and not (a and c);", CutMapper.Goal.AREA);
+		assertEquals(1, m.gates().size());
+		assertEquals("xor2", m.gates().get(0).cell.name);
+	}
+
+	@Test
+	public void testNand() {
+		final CutMapper m = map("x <= not (a and b and c);", CutMapper.Goal.AREA);
+		assertEquals(1, m.gates().size());
+		assertEquals("nand3", m.gates().get(0).cell.name);
+	}
+
+	/** Both phases of a shared node come from one gate and an inverter. */
+	@Test
+	public void testBothPhases() {
+		final CutMapper m = map("x <= a and b; y <= not (a and b);", CutMapper.Goal.AREA);
+		assertEquals(2, m.gates().size());
+		assertEquals(3, m.area(), 1e-9);
+	}
+
+	/**
+	 * For area, a nor3 of b, c and d feeds a nand2 with a. For delay, the
+	 * slow nor3 is split into a nor2 and an inverter in front of a nand3.
+	 */
+	@Test
+	public void testDelay() {
+		final String f = "x <= b or c or d or not a;";
+		final CutMapper area = map(f, CutMapper.Goal.AREA);
+		final CutMapper delay = map(f, CutMapper.Goal.DELAY);
+		assertEquals(5, area.area(), 1e-9);
+		assertEquals(2.6, area.delay(), 1e-9);
+		assertEquals(6, delay.area(), 1e-9);
+		assertEquals(2.4, delay.delay(), 1e-9);
+	}
+
+	/** The drawing reads back as the same circuit. */
+	@Test
+	public void testRender() throws Exception {
+		final FProgram p = FRecursiveDescentParser.parse("x <= (a or c) and not (a and c); y <= not (b or c);");
+		final StringWriter sw = new StringWriter();
+		new TechnologyMapper(new PrintWriter(sw)).render(p);
+		final Tuple<FProgram,Integer> t = GraphvizToF.graphvizToF(new BufferedReader(new StringReader(sw.toString())));
+		assertEquals(2, t.y.intValue());
+		assertTrue(BDDEquivalence.equivalent(p, t.x));
+	}
+
+	@Test
+	public void testFormulaFiles() {
+		for (final Object[] o : TestInputs351.formulaFiles()) {
+			final File f = (File) o[0];
+			final CommandLine c = new CommandLine("-h", f.getAbsolutePath());
+			final FProgram original = FRecursiveDescentParser.parse(c.readInputSpec());
+			final AIG aig = AIG.fromFProgram(original);
+			final CutMapper area = new CutMapper(aig, CellLibrary.DEFAULT, CutMapper.Goal.AREA);
+			final CutMapper delay = new CutMapper(aig, CellLibrary.DEFAULT, CutMapper.Goal.DELAY);
+			assertTrue(f.getName(), BDDEquivalence.equivalent(original, area.toFProgram()));
+			assertTrue(f.getName(), BDDEquivalence.equivalent(original, delay.toFProgram()));
+			assertTrue(f.getName(), delay.delay() <= area.delay() + 1e-9);
+		}
+	}
+
+	private static CutMapper map(final String f, final CutMapper.Goal goal) {
+		return new CutMapper(AIG.fromFProgram(FRecursiveDescentParser.parse(f)), CellLibrary.DEFAULT, goal);
+	}
+}
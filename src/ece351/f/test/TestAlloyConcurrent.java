@@ -0,0 +1,125 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.f.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ece351.f.ast.AlloyConverter;
+import ece351.f.ast.FProgram;
+import ece351.util.BaseTest351;
+import ece351.util.RunAlloy351;
+import ece351.util.TestInputs351;
+import ece351.util.TestPrograms351;
+import ece351.util.Tuple;
+
+/**
+ * Runs many Alloy equivalence checks at once, to exercise the
+ * thread safety of RunAlloy351, and checks that they really do run in
+ * parallel.
+ */
+public final class TestAlloyConcurrent extends BaseTest351 {
+
+	@After
+	public void shutdown() {
+		RunAlloy351.shutdown();
+	}
+
+	private final List<Tuple<FProgram,FProgram>> pairs = new ArrayList<Tuple<FProgram,FProgram>>();
+	private final List<Boolean> expected = new ArrayList<Boolean>();
+
+	/** Each formula file with its simplification, and with a copy that differs. */
+	@Before
+	public void pairs() {
+		final Collection<Object[]> files = TestInputs351.formulaFiles();
+		for (final Object[] o : files) {
+			final File f = (File) o[0];
+			final FProgram original = TestPrograms351.parse(f);
+			pairs.add(new Tuple<FProgram,FProgram>(original, original.simplify()));
+			expected.add(true);
+			
+			pairs.add(new Tuple<FProgram,FProgram>(original, TestPrograms351.negateFirstOutput(original)));
+			expected.add(false);
+		}
+		assertFalse(pairs.isEmpty());
+	}
+
+	@Test
+	public void concurrent() throws Exception {
+		final List<Future<Boolean>> results = AlloyConverter.equivalentAll(pairs);
+		assertEquals(pairs.size(), results.size());
+		for (int i = 0; i < results.size(); i++) {
+			assertTrue("pair " + i, expected.get(i).equals(results.get(i).get()));
+		}
+	}
+
+	/** With several cores, the pool is faster than checking one model at a time. */
+	@Test
+	public void speedup() throws Exception {
+		assumeTrue(RunAlloy351.THREADS > 1);
+		final List<String> models = new ArrayList<String>(pairs.size());
+		for (final Tuple<FProgram,FProgram> pair : pairs) {
+			models.add(AlloyConverter.convert(pair.x, pair.y));
+		}
+		// warm up: each worker loads its own copy of Alloy on its first check
+		sequential(models);
+		parallel(models);
+		
+		final long start = System.nanoTime();
+		sequential(models);
+		final long sequential = System.nanoTime() - start;
+		final long middle = System.nanoTime();
+		parallel(models);
+		final long parallel = System.nanoTime() - middle;
+		assertTrue("sequential " + sequential / 1000000 + "ms, parallel " + parallel / 1000000 + "ms",
+				parallel < sequential * 3 / 4);
+	}
+
+	private static void sequential(final List<String> models) {
+		for (final String m : models) {
+			RunAlloy351.check(m);
+		}
+	}
+
+	private static void parallel(final List<String> models) throws Exception {
+		for (final Future<Boolean> f : RunAlloy351.checkAll(models)) {
+			f.get();
+		}
+	}
+}
@@ -44,7 +44,10 @@ public final class CommandLine {
 		CONSTANT,
 		COMPLEMENT,
 		DEDUPLICATION,
-		ABSORPTION 
+		ABSORPTION,
+		MINIMIZATION,
+		REWRITING,
+		BALANCING
 	}
 
 	public final int argcount;
@@ -140,6 +143,12 @@ public final class CommandLine {
 		simplifierOptLevel = o;
 		simplifierOpts = EnumSet.noneOf(FSimplifierOptions.class);
 		switch(simplifierOptLevel) {
+			case 7:
+				simplifierOpts.add(FSimplifierOptions.BALANCING);
+			case 6:
+				simplifierOpts.add(FSimplifierOptions.REWRITING);
+			case 5:
+				simplifierOpts.add(FSimplifierOptions.MINIMIZATION);
 			case 4:
 				simplifierOpts.add(FSimplifierOptions.ABSORPTION);
 			case 3:
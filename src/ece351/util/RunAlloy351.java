@@ -42,9 +42,21 @@
 package ece351.util;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.mit.csail.sdg.alloy4.A4Reporter;
 import edu.mit.csail.sdg.alloy4.ErrorWarning;
@@ -56,104 +68,230 @@ import edu.mit.csail.sdg.alloy4compiler.parser.CompUtil;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4Options;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4Solution;
 import edu.mit.csail.sdg.alloy4compiler.translator.TranslateAlloyToKodkod;
+import kodkod.engine.satlab.SATFactory;
 
-/** This class demonstrates how to access Alloy4 via the compiler methods. */
+/**
+ * This class demonstrates how to access Alloy4 via the compiler methods.
+ * 
+ * check() is safe to call from several threads: the model is parsed from
+ * memory rather than from a shared file, and the native library path is
+ * set up only once. Alloy does not document its parser, translator or
+ * solver glue as reentrant, and it keeps state in static fields, so
+ * threads must not share a copy of it. Each thread of the worker pool of
+ * submit() therefore loads its own copy of this class and of Alloy, in a
+ * class loader of its own, and checks run there in parallel. A check()
+ * from any other thread uses the copy of the caller's class loader, and
+ * such checks are serialized on ALLOY_LOCK. Call shutdown() to stop the
+ * workers.
+ */
 
 public final class RunAlloy351 {
 
+	/**
+	 * Guards the calls into this class loader's copy of Alloy, which is not
+	 * documented to be reentrant. Pool workers each have their own copy.
+	 */
+	private static final Object ALLOY_LOCK = new Object();
+
+	private static boolean nativePathReady = false;
+
+	/** Worker pool for submit(); created on first use. */
+	private static ExecutorService pool = null;
+
+	/** Number of worker threads: one per core. */
+	public static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Alloy4 sends diagnostic messages and progress reports to the A4Reporter.
+    // By default, the A4Reporter ignores all these events (but you can extend the A4Reporter to display the event for the user)
+    private static final A4Reporter rep = new A4Reporter() {
+//        @Override public void debug(final String msg) {
+//        	System.out.println("DEBUG: " + msg);
+//        }
+        
+        // For example, here we choose to display each "warning" by printing it to System.out
+        @Override public void warning(ErrorWarning msg) {
+            System.out.println("Relevance Warning:\n"+(msg.toString().trim())+"\n\n");
+            System.out.flush();
+        }
+        @Override public void solve(final int primaryVars, final int totalVars, final int clauses) {
+//            System.out.println("solve->"+totalVars+" vars. "+primaryVars+" primary vars. "+clauses+" clauses.\n");
+        }
+        @Override public void translate(String solver, int bitwidth, int maxseq, int skolemDepth, int symmetry) {
+//            System.out.println("translate->Solver="+solver+" Bitwidth="+bitwidth+" MaxSeq="+maxseq
+//            + (skolemDepth==0?"":" SkolemDepth="+skolemDepth)
+//            + " Symmetry="+(symmetry>0 ? (""+symmetry) : "OFF")+'\n');
+        }
+    };
+
     /*
-     * Execute every command in every file.
-     *
-     * This method parses every file, then execute every command.
+     * Execute the first command in the model.
      *
      * If there are syntax or type errors, it may throw
-     * a ErrorSyntax or ErrorType or ErrorAPI or ErrorFatal exception.
-     * You should catch them and display them,
-     * and they may contain filename/line/column information.
+     * a ErrorSyntax or ErrorType or ErrorAPI or ErrorFatal exception,
+     * wrapped in a RuntimeException.
+     * 
+     * Returns true if the command is satisfiable.
+     * Safe to call from several threads at once; only on the worker pool do
+     * the checks run in parallel.
      */
     public static boolean check(final String content) {
+    	final Thread t = Thread.currentThread();
+    	if (t instanceof Worker) return ((Worker) t).check(content);
+    	synchronized (ALLOY_LOCK) {
+    		return checkHere(content);
+    	}
+    }
 
-    	final File file = new File("RunAlloy351.als");
-		try {
-			final PrintWriter pw = new PrintWriter(new FileWriter(file));
-	    	pw.write(content);
-	    	pw.flush();
-	    	pw.close();
-		} catch (IOException e1) {
-			throw new RuntimeException(e1);
-		}
-    	
-//    	copyFromJAR();
-        final String binary = alloyHome() + fs + "binary";
-//        System.out.println(binary);
-        // Add the new JNI location to the java.library.path
-        try {
-            System.setProperty("java.library.path", binary);
-            // The above line is actually useless on Sun JDK/JRE (see Sun bug ID 4280189)
-            // The following 4 lines should work for Sun JDK/JRE (though they probably will not work for others)
-            String[] newarray = new String[]{binary};
-            java.lang.reflect.Field old = ClassLoader.class.getDeclaredField("usr_paths");
-            old.setAccessible(true);
-            old.set(null,newarray);
-        } catch (Throwable ex) { }
+    /** check() with the copy of Alloy of this class loader. */
+    private static boolean checkHere(final String content) {
+    	setupNativePath();
     	
-        // Alloy4 sends diagnostic messages and progress reports to the A4Reporter.
-        // By default, the A4Reporter ignores all these events (but you can extend the A4Reporter to display the event for the user)
-        A4Reporter rep = new A4Reporter() {
-//            private long lastTime=0;
-
-//            @Override public void debug(final String msg) {
-//            	System.out.println("DEBUG: " + msg);
-//            }
-            
-            // For example, here we choose to display each "warning" by printing it to System.out
-            @Override public void warning(ErrorWarning msg) {
-                System.out.println("Relevance Warning:\n"+(msg.toString().trim())+"\n\n");
-                System.out.flush();
-            }
-            @Override public void solve(final int primaryVars, final int totalVars, final int clauses) {
-//                System.out.println("solve->"+totalVars+" vars. "+primaryVars+" primary vars. "+clauses+" clauses. "+(System.currentTimeMillis()-lastTime)+"ms.\n");
-//                lastTime = System.currentTimeMillis();
-//                System.out.flush();
-            }
-            @Override public void translate(String solver, int bitwidth, int maxseq, int skolemDepth, int symmetry) {
-//                lastTime = System.currentTimeMillis();
-//                System.out.println("translate->Solver="+solver+" Bitwidth="+bitwidth+" MaxSeq="+maxseq
-//                + (skolemDepth==0?"":" SkolemDepth="+skolemDepth)
-//                + " Symmetry="+(symmetry>0 ? (""+symmetry) : "OFF")+'\n');
-//                System.out.flush();
-            }
-            
-        };
-
         // Parse+typecheck the model
-//        System.out.println("=========== Parsing+Typechecking =============");
-        Module world = null;
+        final Module world;
         try {
-        	world = CompUtil.parseEverything_fromFile(rep, null, file.getAbsolutePath());
+        	world = CompUtil.parseEverything_fromString(rep, content);
         } catch (final Exception e) {
         	throw new RuntimeException(e);
         }
         
         // Choose some default options for how you want to execute the commands
-        A4Options options = new A4Options();
+        final A4Options options = new A4Options();
         options.solver = A4Options.SatSolver.SAT4J;//MiniSatJNI;
 
         for (Command command: world.getAllCommands()) {
             // Execute the command
         	try {
-//	            System.out.println("============ Command "+command+": ============");
-	            A4Solution ans = TranslateAlloyToKodkod.execute_command(rep, world.getAllReachableSigs(), command, options);
-	            // Print the outcome
-	            //System.out.println("------------------ans->---------\n"+ans);
-	            // If satisfiable...
-	            return ans.satisfiable();
+            	final A4Solution ans = TranslateAlloyToKodkod.execute_command(rep, world.getAllReachableSigs(), command, options);
+            	// If satisfiable...
+            	return ans.satisfiable();
         	} catch (final Exception e) {
         		throw new RuntimeException(e);
         	}
         }
         throw new RuntimeException("did not find a command to run");
     }
+
+    /**
+     * A thread of the worker pool, with its own copy of this class and of
+     * Alloy: a class loader that does not delegate to ours, over the jars
+     * and directories that they come from.
+     */
+    private static final class Worker extends Thread {
+
+    	private URLClassLoader loader = null;
+    	/** check() of the copy. */
+    	private Method check = null;
+
+    	Worker(final Runnable r, final String name) {
+    		super(r, name);
+    	}
+
+    	boolean check(final String content) {
+    		try {
+    			if (check == null) {
+    				final Set<URL> urls = new LinkedHashSet<URL>();
+    				for (final Class<?> c : new Class<?>[] { RunAlloy351.class, CompUtil.class, SATFactory.class }) {
+    					urls.add(c.getProtectionDomain().getCodeSource().getLocation());
+    				}
+    				// the parent has the JDK but not the class path
+    				loader = new URLClassLoader(urls.toArray(new URL[urls.size()]),
+    						ClassLoader.getSystemClassLoader().getParent());
+    				check = loader.loadClass(RunAlloy351.class.getName()).getMethod("check", String.class);
+    			}
+    			return (Boolean) check.invoke(null, content);
+    		} catch (final InvocationTargetException e) {
+    			final Throwable cause = e.getCause();
+    			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+    			if (cause instanceof Error) throw (Error) cause;
+    			throw new RuntimeException(cause);
+    		} catch (final ReflectiveOperationException e) {
+    			throw new RuntimeException(e);
+    		}
+    	}
+
+    	@Override
+    	public void run() {
+    		try {
+    			super.run();
+    		} finally {
+    			if (loader != null) {
+    				try {
+    					loader.close();
+    				} catch (final IOException e) {
+    					// nothing is left to release
+    				}
+    			}
+    		}
+    	}
+    }
+
+    /** check() on the worker pool. */
+    public static Future<Boolean> submit(final String content) {
+    	return submit(new Callable<Boolean>() {
+    		@Override
+    		public Boolean call() {
+    			return check(content);
+    		}
+    	});
+    }
+
+    /** Run any task (typically one that calls check()) on the worker pool. */
+    public static <T> Future<T> submit(final Callable<T> task) {
+    	return pool().submit(task);
+    }
+
+    /** check() every model on the worker pool; the futures are in the same order. */
+    public static List<Future<Boolean>> checkAll(final List<String> contents) {
+    	final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(contents.size());
+    	for (final String content : contents) {
+    		results.add(submit(content));
+    	}
+    	return results;
+    }
+
+    private static synchronized ExecutorService pool() {
+    	if (pool == null) {
+    		final AtomicInteger count = new AtomicInteger();
+    		pool = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+    			@Override
+    			public Thread newThread(final Runnable r) {
+    				final Thread t = new Worker(r, "RunAlloy351-" + count.incrementAndGet());
+    				// do not keep the JVM alive just for idle workers
+    				t.setDaemon(true);
+    				return t;
+    			}
+    		});
+    	}
+    	return pool;
+    }
+
+    /**
+     * Stop the worker pool once its queued tasks are done. A later submit()
+     * starts a new one.
+     */
+    public static synchronized void shutdown() {
+    	if (pool != null) {
+    		pool.shutdown();
+    		pool = null;
+    	}
+    }
+
+    /** Add the JNI location to the java.library.path, once per JVM. */
+    private static synchronized void setupNativePath() {
+    	if (nativePathReady) return;
+//    	copyFromJAR();
+        final String binary = alloyHome() + fs + "binary";
+        try {
+            System.setProperty("java.library.path", binary);
+            // The above line is actually useless on Sun JDK/JRE (see Sun bug ID 4280189)
+            // The following 4 lines should work for Sun JDK/JRE (though they probably will not work for others)
+            String[] newarray = new String[]{binary};
+            java.lang.reflect.Field old = ClassLoader.class.getDeclaredField("usr_paths");
+            old.setAccessible(true);
+            old.set(null,newarray);
+        } catch (Throwable ex) { }
+        nativePathReady = true;
+    }
     
 //    private static boolean loadLibrary(String library) {
 //        try { System.loadLibrary(library);      return true; } catch(UnsatisfiedLinkError ex) { }
@@ -0,0 +1,149 @@
+/* *********************************************************************
+ * ECE351 
+ * Department of Electrical and Computer Engineering 
+ * University of Waterloo 
+ * Term: Spring 2019 (1195)
+ *
+ * The base version of this file is the intellectual property of the
+ * University of Waterloo. Redistribution is prohibited.
+ *
+ * By pushing changes to this file I affirm that I am the author of
+ * all changes. I affirm that I have complied with the course
+ * collaboration policy and have not plagiarized my work. 
+ *
+ * I understand that redistributing this file might expose me to
+ * disciplinary action under UW Policy 71. I understand that Policy 71
+ * allows for retroactive modification of my final grade in a course.
+ * For example, if I post my solutions to these labs on GitHub after I
+ * finish ECE351, and a future student plagiarizes them, then I too
+ * could be found guilty of plagiarism. Consequently, my final grade
+ * in ECE351 could be retroactively lowered. This might require that I
+ * repeat ECE351, which in turn might delay my graduation.
+ *
+ * https://uwaterloo.ca/secretariat-general-counsel/policies-procedures-guidelines/policy-71
+ * 
+ * ********************************************************************/
+
+package ece351.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ece351.common.ast.AndExpr;
+import ece351.common.ast.AssignmentStatement;
+import ece351.common.ast.BinaryExpr;
+import ece351.common.ast.ConstantExpr;
+import ece351.common.ast.EqualExpr;
+import ece351.common.ast.Expr;
+import ece351.common.ast.NAndExpr;
+import ece351.common.ast.NOrExpr;
+import ece351.common.ast.NaryAndExpr;
+import ece351.common.ast.NaryExpr;
+import ece351.common.ast.NaryOrExpr;
+import ece351.common.ast.NotExpr;
+import ece351.common.ast.OrExpr;
+import ece351.common.ast.VarExpr;
+import ece351.common.ast.XNOrExpr;
+import ece351.common.ast.XOrExpr;
+import ece351.f.ast.FProgram;
+import ece351.f.rdescent.FRecursiveDescentParser;
+
+/**
+ * FPrograms for the tests of the equivalence checkers: the test inputs,
+ * copies of them that are known to differ, and a check of the
+ * counterexamples that the checkers report. Also the reference that the
+ * simulators are tested against: evaluation of one input vector, one
+ * operator at a time.
+ */
+public final class TestPrograms351 {
+
+	private TestPrograms351() {
+		throw new UnsupportedOperationException();
+	}
+
+	/** Parse an F file, with the recursive-descent parser. */
+	public static FProgram parse(final File f) {
+		final CommandLine c = new CommandLine("-h", f.getAbsolutePath());
+		return FRecursiveDescentParser.parse(c.readInputSpec());
+	}
+
+	/** A copy of p with its first output negated: it differs from p on every input. */
+	public static FProgram negateFirstOutput(final FProgram p) {
+		final List<AssignmentStatement> mutated = new ArrayList<AssignmentStatement>(p.formulas);
+		final AssignmentStatement first = mutated.get(0);
+		mutated.set(0, new AssignmentStatement(first.outputVar, new NotExpr(first.expr)));
+		return new FProgram(mutated);
+	}
+
+	/**
+	 * Does some output of a differ from the output of b with the same name
+	 * on the input witness? The witness must give every input of a and b.
+	 */
+	public static boolean distinguishes(final Map<String,Boolean> witness, final FProgram a, final FProgram b) {
+		for (final AssignmentStatement f : a.formulas) {
+			for (final AssignmentStatement g : b.formulas) {
+				if (g.outputVar.equals(f.outputVar) && value(f.expr, witness) != value(g.expr, witness)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The value of e when each variable has its value in inputs.
+	 * @throws IllegalArgumentException if a variable has no value
+	 */
+	public static boolean value(final Expr e, final Map<String,Boolean> inputs) {
+		return value(e, inputs, new IdentityHashMap<Expr,Boolean>());
+	}
+
+	/** Memoized by identity, so that a shared subexpression is evaluated once. */
+	private static boolean value(final Expr e, final Map<String,Boolean> inputs, final Map<Expr,Boolean> memo) {
+		final Boolean cached = memo.get(e);
+		if (cached != null) return cached;
+		final boolean result;
+		if (e instanceof ConstantExpr) {
+			result = ((ConstantExpr) e).b;
+		} else if (e instanceof VarExpr) {
+			final Boolean v = inputs.get(((VarExpr) e).identifier);
+			if (v == null) throw new IllegalArgumentException("no value for " + e);
+			result = v;
+		} else if (e instanceof NotExpr) {
+			result = !value(((NotExpr) e).expr, inputs, memo);
+		} else if (e instanceof BinaryExpr) {
+			final boolean l = value(((BinaryExpr) e).left, inputs, memo);
+			final boolean r = value(((BinaryExpr) e).right, inputs, memo);
+			if (e instanceof AndExpr) {
+				result = l && r;
+			} else if (e instanceof OrExpr) {
+				result = l || r;
+			} else if (e instanceof XOrExpr) {
+				result = l != r;
+			} else if (e instanceof NAndExpr) {
+				result = !(l && r);
+			} else if (e instanceof NOrExpr) {
+				result = !(l || r);
+			} else if (e instanceof XNOrExpr || e instanceof EqualExpr) {
+				result = l == r;
+			} else {
+				throw new IllegalArgumentException("unexpected expression type: " + e.getClass().getName());
+			}
+		} else if (e instanceof NaryAndExpr || e instanceof NaryOrExpr) {
+			final boolean and = e instanceof NaryAndExpr;
+			boolean acc = and;
+			for (final Expr child : ((NaryExpr) e).children) {
+				final boolean c = value(child, inputs, memo);
+				acc = and ? acc && c : acc || c;
+			}
+			result = acc;
+		} else {
+			throw new IllegalArgumentException("unexpected expression type: " + e.getClass().getName());
+		}
+		memo.put(e, result);
+		return result;
+	}
+}
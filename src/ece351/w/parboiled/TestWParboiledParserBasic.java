@@ -59,4 +59,13 @@ public class TestWParboiledParserBasic extends BaseTest351 {
 		ExaminableProperties.checkAllBinary(wp1, wp2);
 	}
 
+	/** U is an unknown bit: see Waveform.LEGAL_BITS. */
+	@Test
+	public void testUnknown() {
+		final Waveform x = new Waveform(ImmutableList.of("U", "0", "U", "1"), "X");
+		final WProgram wp1 = new WProgram(ImmutableList.of(x));
+		final WProgram wp2 = WParboiledParser.parse("X: U 0 U 1;");
+		assertTrue("ASTs not equals", wp1.equals(wp2));
+	}
+
 }
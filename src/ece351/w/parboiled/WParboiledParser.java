@@ -126,7 +126,7 @@ public /*final*/ class WParboiledParser extends BaseParser351 {
     public Rule Bit() {   
 // TODO: short code snippet
 //throw new ece351.util.Todo351Exception();
-    	return Sequence(AnyOf("01"),
+    	return Sequence(AnyOf("01U"),
     			push(((ImmutableList)pop()).append(match())));
     }
 
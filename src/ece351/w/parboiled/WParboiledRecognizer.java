@@ -114,7 +114,7 @@ public /*final*/ class WParboiledRecognizer extends BaseParser351 {
     public Rule Bit() {       
 // TODO: short code snippet
 //throw new ece351.util.Todo351Exception();
-    	return AnyOf("01");
+    	return AnyOf("01U");
     }
 
 }
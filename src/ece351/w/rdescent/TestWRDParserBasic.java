@@ -70,6 +70,20 @@ public class TestWRDParserBasic extends BaseTest351 {
 		check(built, parsed);
 	}
 
+	/** U is an unknown bit: see Waveform.LEGAL_BITS. */
+	@Test
+	public void test4() {
+		WProgram built = new WProgram();
+		built = built.append(new Waveform(ImmutableList.of("U", "0", "U", "1"), "A"));
+		built = built.append(new Waveform(ImmutableList.of("U"), "U"));
+		
+		final String input = "A: U 0 U 1; U: U;";
+		WRecursiveDescentRecognizer.recognize(input);
+		final WProgram parsed = WRecursiveDescentParser.parse(input);
+		
+		check(built, parsed);
+	}
+
 	
 	private void check(WProgram built, final WProgram parsed) {
 		// check that the two ASTs are equals
@@ -26,6 +26,9 @@
 
 package ece351.w.rdescent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.parboiled.common.ImmutableList;
 
 import ece351.util.Lexer;
@@ -51,7 +54,7 @@ public final class WRecursiveDescentParser {
     	
         while (!lexer.inspectEOF()) {
         	String name = "";
-        	ImmutableList<String> bits = ImmutableList.of();
+        	final List<String> bits = new ArrayList<String>();
         	
         	while(lexer.inspectID()) {
         		name += lexer.consumeID();
@@ -61,13 +64,14 @@ public final class WRecursiveDescentParser {
         		lexer.consume(":");
         	}
 
-        	while(lexer.inspect("0", "1")) {
-        		bits = bits.append(lexer.consume("0", "1"));
+        	// U is an unknown value: see Waveform.LEGAL_BITS
+        	while(lexer.inspect("0", "1", "U")) {
+        		bits.add(lexer.consume("0", "1", "U"));
         	}
         	
         	lexer.consume(";");
         	
-        	Waveform waveform = new Waveform(bits, name);
+        	Waveform waveform = new Waveform(ImmutableList.copyOf(bits), name);
     		list = list.append(waveform);
         }
         lexer.consumeEOF();
@@ -69,8 +69,8 @@ public final class WRecursiveDescentRecognizer {
     	if (lexer.inspect(":")) {
     		lexer.consume(":");
     	}
-    	while(lexer.inspect("0", "1")) {
-    		lexer.consume("0", "1");
+    	while(lexer.inspect("0", "1", "U")) {
+    		lexer.consume("0", "1", "U");
     	}
     	
     	lexer.consume(";");
@@ -47,8 +47,10 @@ public final class TestWRegexAccept {
 	/**
 	 * Now you have a fairly general regex. Copy and paste it into this static
 	 * variable and let's try to match it against all of the test wave files.
+	 * Bits may also be U, the unknown bit of Waveform.LEGAL_BITS, as in the
+	 * W parsers.
 	 */
-	final static String REGEX = "(\\s*[A-Za-z]*\\s*:\\s*(0\\s*|1\\s*)*\\s*;\\s*)+"; // TODO: replace this stub
+	final static String REGEX = "(\\s*[A-Za-z]*\\s*:\\s*(0\\s*|1\\s*|U\\s*)*\\s*;\\s*)+";
 
 
 	
@@ -63,6 +63,8 @@ public class TestWRegexSimple {
 			final String file = "tests/wave/r" + (i+1) + ".wave";
 			result.add(new Object[]{file, regex});
 		}
+		// the general regex also takes unknown bits, as the W parsers do
+		result.add(new Object[]{"A: U 0 U 1; U: U;", TestWRegexAccept.REGEX});
 		return result;
 	}
 